@@ -0,0 +1,76 @@
+import java.util.Objects;
+import javafx.beans.property.ReadOnlyStringProperty;
+//observable, read-only view of a string- what the table columns bind to
+import javafx.beans.property.ReadOnlyStringWrapper;
+//used to create observable properties that only the contact itself can change
+
+public class Contact {//blueprint of contact objects
+    //its own class- the store, loaders and journal use contacts without any of the JavaFX application
+    //each contact has a name, phone and email attribute of type string
+    //final- an update replaces the whole contact, so a contact can be shared with background threads safely
+    private final String name;
+    private final String phone;
+    private final String email;
+    private ReadOnlyStringWrapper nameProperty;
+    private ReadOnlyStringWrapper phoneProperty;
+    private ReadOnlyStringWrapper emailProperty;
+    //created the first time a table cell asks for them, then reused- only contacts that are actually shown pay for them
+    public Contact(String name, String phone, String email) {
+        //constructor for contacts
+        this.name = name;
+        this.phone = phone;
+        this.email = email;
+    }
+    //to create JavaFX StringProperty objects to be used  with JavaFX's ObservableList--- to bind UI components- TableView and ObservableList
+    //we create a StringProperty for each property of a Contact
+    //to ensure that any changes to the StringProperty are immediately reflected in the table
+    //the cell value factories call these on every scroll and layout pass, so each property is created once and cached
+    //(a new property per call was pure garbage while scrolling large tables)
+    public ReadOnlyStringProperty nameProperty() {
+        if (nameProperty == null) {
+            nameProperty = new ReadOnlyStringWrapper(this, "name", name);
+        }
+        return nameProperty.getReadOnlyProperty();
+    }//create (once) and return a StringProperty based on the name property of Contact
+
+    public ReadOnlyStringProperty phoneProperty() {
+        if (phoneProperty == null) {
+            phoneProperty = new ReadOnlyStringWrapper(this, "phone", phone);
+        }
+        return phoneProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty emailProperty() {
+        if (emailProperty == null) {
+            emailProperty = new ReadOnlyStringWrapper(this, "email", email);
+        }
+        return emailProperty.getReadOnlyProperty();
+    }
+    //3 getter methods which upon calling, return the value of that particular attribute
+    //for retrieval of that attribute's data from a given contact object
+    public String getName() {
+        return name;
+    }
+    public String getPhone() {
+        return phone;
+    }
+    public String getEmail() {
+        return email;
+    }
+    //two contacts are equal when all three fields are- the same contact read twice from a ContactTable is two objects
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Contact)) {
+            return false;
+        }
+        Contact contact = (Contact) other;
+        return name.equals(contact.name) && phone.equals(contact.phone) && email.equals(contact.email);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, phone, email);
+    }
+}
\ No newline at end of file
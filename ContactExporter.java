@@ -0,0 +1,64 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.*;
+//buffered writer used to stream the export
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public class ContactExporter {
+    //writes contacts to any file as csv (name,phone,email) or, for a .vcf file, as vCard 3.0
+    //contacts are streamed straight from the collection- nothing is copied first, so exporting millions of rows needs no extra memory
+    //============================================= EXPORT ===========================================================================================
+    public static int export(Path file, Collection<Contact> contacts) throws IOException {
+        //returns the number of contacts written
+        //like the contact files, it is written to a temporary file and renamed over the target, so a failed export never leaves half a file
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean vCard = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".vcf");
+        int count = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8), 1 << 16)) {
+            for (Contact contact : contacts) {
+                if (vCard) {
+                    writer.write("BEGIN:VCARD\r\nVERSION:3.0\r\nFN:");
+                    writer.write(escape(contact.getName()));
+                    writer.write("\r\nN:");
+                    writer.write(escape(contact.getName()));
+                    writer.write(";;;;\r\nTEL:");
+                    writer.write(escape(contact.getPhone()));
+                    writer.write("\r\nEMAIL:");
+                    writer.write(escape(contact.getEmail()));
+                    writer.write("\r\nEND:VCARD\r\n");
+                } else {
+                    //same quoting as the contacts file, so an export can be imported or used as contact.csv as it is
+                    writer.write(ContactJournal.csvField(contact.getName()));
+                    writer.write(',');
+                    writer.write(ContactJournal.csvField(contact.getPhone()));
+                    writer.write(',');
+                    writer.write(ContactJournal.csvField(contact.getEmail()));
+                    writer.write('\n');
+                }
+                count++;
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+    private static String escape(String value) {
+        //backslash, comma, semicolon and newline have to be escaped in vCard values
+        if (value.indexOf('\\') < 0 && value.indexOf(',') < 0 && value.indexOf(';') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\n') {
+                out.append("\\n");
+            } else {
+                if (c == '\\' || c == ',' || c == ';') {
+                    out.append('\\');
+                }
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
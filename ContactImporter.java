@@ -0,0 +1,287 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.*;
+//readers for vCard files and the writer for the rejection report
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.DoubleConsumer;
+
+public class ContactImporter {
+    //bulk import of a csv (name,phone,email) or vCard (.vcf) file into a ContactStore
+    //rows flow through in batches: parse -> normalize -> validate -> dedup within the batch -> dedup against the store and commit
+    //every row that is not imported is reported with its line and the reason, the rest of the file still goes in
+    //==========================INITIALIZE===============================================
+    private static final int BATCH_SIZE = 10000;
+    //vCard rows are committed this many at a time- csv rows one piece of the file (about 4MB) at a time
+    //============================================= REPORT ===========================================================================================
+    public static class Report {
+        public int rows;//rows (csv lines or vCards) found in the file
+        public int imported;
+        public final List<String> rejected = new ArrayList<>();//one message per row that was not imported
+        public void write(Path file) throws IOException {
+            //the full list of rejected rows, one per line
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (String message : rejected) {
+                    writer.write(message);
+                    writer.write(System.lineSeparator());
+                }
+            }
+        }
+    }
+    //----------------------------------- rows waiting to be committed ------------------------
+    private static class Batch {
+        final List<Contact> contacts = new ArrayList<>();
+        int[] lines = new int[256];//file line of each contact
+        void add(int line, Contact contact) {
+            if (contacts.size() == lines.length) {
+                lines = Arrays.copyOf(lines, lines.length * 2);
+            }
+            lines[contacts.size()] = line;
+            contacts.add(contact);
+        }
+    }
+    //============================================= IMPORT ===========================================================================================
+    public static Report importFile(ContactStore store, ContactValidator validator, Path file, DoubleConsumer progress) throws IOException {
+        //the format is picked by the extension- .vcf is read as vCard, anything else as csv
+        //validator- the same rules (and canonical phone/email form) as contacts added by hand
+        //progress gets the fraction of the file done (0 to 1)
+        ContactMetrics metrics = store.metrics();
+        long start = System.nanoTime();
+        Report report = new Report();
+        try {
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".vcf")) {
+                importVCard(store, validator, file, progress, report);
+            } else {
+                importCsv(store, validator, file, progress, report);
+            }
+            store.compact();//fold the whole import into the contact files now, instead of replaying it on every start
+        } catch (IOException | RuntimeException e) {
+            metrics.failed(ContactMetrics.Operation.IMPORT, start);
+            throw e;
+        } finally {
+            metrics.count("import.rows", report.rows);
+            metrics.count("import.imported", report.imported);
+            metrics.count("import.rejected", report.rejected.size());
+        }
+        metrics.record(ContactMetrics.Operation.IMPORT, start);
+        return report;
+    }
+    //----------------------------------- csv ------------------------
+    private static void importCsv(ContactStore store, ContactValidator validator, Path file, DoubleConsumer progress, Report report) throws IOException {
+        //same tokenizer as CsvContactLoader, so both read quoting and bad rows the same way
+        int parallel = Runtime.getRuntime().availableProcessors();
+        int lineOffset = 0;
+        try (CsvContactLoader.Pieces pieces = new CsvContactLoader.Pieces(file)) {
+            List<CsvContactLoader.Chunk> chunks;
+            //parse the next few pieces in parallel, then commit them in file order- only these pieces' rows are in memory
+            while (!(chunks = CsvContactLoader.parse(pieces, parallel)).isEmpty()) {
+                for (CsvContactLoader.Chunk chunk : chunks) {
+                    for (int i = 0; i < chunk.errors.size(); i++) {
+                        report.rejected.add("line " + (lineOffset + chunk.errorLines.get(i)) + ": " + chunk.errors.get(i));
+                    }
+                    Batch batch = new Batch();
+                    for (int i = 0; i < chunk.contacts.size(); i++) {
+                        batch.add(lineOffset + chunk.contactLines[i], chunk.contacts.get(i));
+                    }
+                    report.rows += chunk.rows;
+                    commit(store, validator, batch, report);
+                    lineOffset += chunk.lines;
+                }
+                progress.accept(pieces.fraction());
+            }
+        }
+    }
+    //----------------------------------- vCard ------------------------
+    private static void importVCard(ContactStore store, ContactValidator validator, Path file, DoubleConsumer progress, Report report) throws IOException {
+        //reads the file line by line- only the current batch is in memory
+        //takes FN (or N) as the name and the first TEL and EMAIL of each card
+        long size = Math.max(1, Files.size(file));
+        long read = 0;
+        Batch batch = new Batch();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1);//byte order mark
+            }
+            int lineNumber = 0;
+            int cardLine = 0;//line of the current card's BEGIN, 0 outside a card
+            String name = null;
+            String structuredName = null;
+            String phone = null;
+            String email = null;
+            while (line != null) {
+                lineNumber++;
+                read += line.length() + 1;
+                //------------------unfold- a line starting with a space or tab continues the one before it
+                StringBuilder logical = null;
+                String next = reader.readLine();
+                int folded = 0;
+                while (next != null && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                    if (logical == null) {
+                        logical = new StringBuilder(line);
+                    }
+                    logical.append(next, 1, next.length());
+                    read += next.length() + 1;
+                    folded++;
+                    next = reader.readLine();
+                }
+                String property = logical == null ? line : logical.toString();
+                int startLine = lineNumber;
+                lineNumber += folded;
+                line = next;
+                //------------------split "group.NAME;params:value"
+                int colon = property.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = property.substring(0, colon);
+                int semicolon = key.indexOf(';');
+                if (semicolon >= 0) {
+                    key = key.substring(0, semicolon);
+                }
+                key = key.substring(key.lastIndexOf('.') + 1).toUpperCase(Locale.ROOT);
+                String value = property.substring(colon + 1);
+                if (key.equals("BEGIN") && value.trim().equalsIgnoreCase("VCARD")) {
+                    if (cardLine != 0) {
+                        report.rows++;
+                        report.rejected.add("line " + cardLine + ": vCard has no END:VCARD");
+                    }
+                    cardLine = startLine;
+                    name = structuredName = phone = email = null;
+                } else if (cardLine == 0) {
+                    continue;//outside a card
+                } else if (key.equals("END") && value.trim().equalsIgnoreCase("VCARD")) {
+                    report.rows++;
+                    if (name == null || name.isEmpty()) {
+                        name = structuredName;
+                    }
+                    if (name == null || name.isEmpty() || phone == null || email == null) {
+                        report.rejected.add("line " + cardLine + ": missing name, phone or email");
+                    } else {
+                        batch.add(cardLine, new Contact(name, phone, email));
+                    }
+                    cardLine = 0;
+                    if (batch.contacts.size() >= BATCH_SIZE) {
+                        commit(store, validator, batch, report);
+                        batch = new Batch();
+                        progress.accept(Math.min(1.0, (double) read / size));
+                    }
+                } else if (key.equals("FN")) {
+                    name = unescape(value);
+                } else if (key.equals("N") && structuredName == null) {
+                    //Family;Given;Additional;Prefix;Suffix- used as "Given Family" when there is no FN
+                    String[] parts = value.split(";", -1);
+                    String given = parts.length > 1 ? unescape(parts[1]).trim() : "";
+                    String family = unescape(parts[0]).trim();
+                    structuredName = (given + " " + family).trim();
+                } else if (key.equals("TEL") && phone == null) {
+                    phone = unescape(value);
+                    if (phone.regionMatches(true, 0, "tel:", 0, 4)) {
+                        phone = phone.substring(4);//vCard 4 writes phones as tel: uris
+                    }
+                } else if (key.equals("EMAIL") && email == null) {
+                    email = unescape(value);
+                }
+            }
+            if (cardLine != 0) {
+                report.rows++;
+                report.rejected.add("line " + cardLine + ": vCard has no END:VCARD");
+            }
+        }
+        commit(store, validator, batch, report);
+        progress.accept(1);
+    }
+    private static String unescape(String value) {
+        //\\n, \\, , \\; and \\\\ are the escapes vCard uses in values
+        //a name, phone or email is one line- an escaped line break becomes a space
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                out.append(escaped == 'n' || escaped == 'N' ? ' ' : escaped);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+    //============================================= NORMALIZE, VALIDATE, DEDUP, COMMIT ===========================================================================================
+    private static void commit(ContactStore store, ContactValidator validator, Batch batch, Report report) throws IOException {
+        //--------------------normalize and validate- the same rules as the add dialog
+        Batch valid = new Batch();
+        Map<String, Integer> names = new HashMap<>();
+        Map<String, Integer> phones = new HashMap<>();
+        Map<String, Integer> emails = new HashMap<>();
+        //first line of each name/phone/email in this batch- rows repeating one are reported against it
+        for (int i = 0; i < batch.contacts.size(); i++) {
+            Contact row = batch.contacts.get(i);
+            int line = batch.lines[i];
+            String name = row.getName().trim();
+            String phone = row.getPhone().trim();
+            String email = row.getEmail().trim();
+            if (name.isEmpty() || phone.isEmpty() || email.isEmpty()) {
+                report.rejected.add("line " + line + ": empty name, phone or email");
+                continue;
+            }
+            if (!validator.isValidName(name)) {
+                report.rejected.add("line " + line + ": name contains a tab, line break or other control character");
+                continue;
+            }
+            //canonical forms- "(555) 123-4567" and "555.123.4567" are the same number, so they dedup against each other
+            phone = validator.normalizePhoneNumber(phone);
+            if (phone == null) {
+                report.rejected.add("line " + line + ": invalid phone number \"" + row.getPhone() + "\"");
+                continue;
+            }
+            email = validator.normalizeEmail(email);
+            if (email == null) {
+                report.rejected.add("line " + line + ": invalid email address \"" + row.getEmail() + "\"");
+                continue;
+            }
+            //--------------------dedup within the batch
+            Integer first = names.putIfAbsent(name, line);
+            if (first != null) {
+                report.rejected.add("line " + line + ": duplicate name \"" + name + "\" (same as line " + first + ")");
+                continue;
+            }
+            first = phones.putIfAbsent(phone, line);
+            if (first != null) {
+                report.rejected.add("line " + line + ": duplicate phone number " + phone + " (same as line " + first + ")");
+                continue;
+            }
+            first = emails.putIfAbsent(email, line);
+            if (first != null) {
+                report.rejected.add("line " + line + ": duplicate email " + email + " (same as line " + first + ")");
+                continue;
+            }
+            boolean same = name.equals(row.getName()) && phone.equals(row.getPhone()) && email.equals(row.getEmail());
+            valid.add(line, same ? row : new Contact(name, phone, email));
+        }
+        //--------------------dedup against the store and commit
+        //rows repeating an earlier batch are caught here too- that batch is in the store by now
+        ContactStore.Status[] statuses = store.addAll(valid.contacts);
+        for (int i = 0; i < statuses.length; i++) {
+            Contact contact = valid.contacts.get(i);
+            int line = valid.lines[i];
+            switch (statuses[i]) {
+                case OK:
+                    report.imported++;
+                    break;
+                case DUPLICATE_NAME:
+                    report.rejected.add("line " + line + ": a contact named \"" + contact.getName() + "\" already exists");
+                    break;
+                case DUPLICATE_PHONE:
+                    report.rejected.add("line " + line + ": phone number " + contact.getPhone() + " is already used");
+                    break;
+                default:
+                    report.rejected.add("line " + line + ": email " + contact.getEmail() + " is already used");
+                    break;
+            }
+        }
+    }
+}
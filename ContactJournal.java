@@ -0,0 +1,487 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.*;
+//streams used to encode/decode journal records and write snapshots
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+//Path, Files and the open/copy options used for the journal and the atomic snapshot rename
+import java.util.concurrent.*;
+//background threads for group commit and compaction
+import java.util.concurrent.locks.Lock;
+//held by the store's edits- compaction takes it just while the journal moves to a new generation
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+//checksum per record so a half-written record at the end of a journal is detected and ignored
+
+public class ContactJournal {
+    //==========================INITIALIZE===============================================
+    private static final long FLUSH_INTERVAL_MS = 50;
+    //group commit- records appended within this window share one write and one fsync
+    private static final long COMPACT_THRESHOLD_BYTES = 8L * 1024 * 1024;
+    //once this much has been journaled since the last snapshot, the journal should be folded into a new snapshot
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    //record types- PUT carries the whole contact, DELETE only the name, so replaying a record twice changes nothing
+    private static final byte BEGIN = 3;
+    private static final byte COMMIT = 4;
+    //around the records of a transaction- replay applies them only once it reads the COMMIT
+    private final Path snapshotFile;//the contacts csv
+    private final Path binaryFile;//optional binary snapshot written alongside it- null when not used
+    private final Path directory;
+    private final String journalPrefix;//journal files are <snapshot name>.journal.<generation>
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();//records not yet written- guarded by this
+    private FileChannel channel;//journal of the current generation, null until open() and after close()- guarded by this
+    private long generation;
+    private FileChannel retired;//previous generation's journal, closed by the flusher after its last bytes- guarded by this
+    private byte[] retiredBytes;
+    private long bytesSinceCompaction;
+    private volatile IOException failure;//write or fsync error of the last flush- appends are refused until a flush succeeds
+    private volatile IOException compactionFailure;//error of the last snapshot write, reported on the next append
+    private boolean broken;//a write to the current file failed, so it may end in a torn record- guarded by this
+    private Future<?> compaction;//running snapshot write, if any
+    private ScheduledExecutorService flusher;
+    private ExecutorService compactor;
+    private final ContactMetrics metrics;//times flushes and snapshot writes
+    //----------------------------------- constructor ------------------------
+    public ContactJournal(Path snapshotFile) {
+        this(snapshotFile, null);
+    }
+    public ContactJournal(Path snapshotFile, Path binaryFile) {
+        this(snapshotFile, binaryFile, new ContactMetrics());
+    }
+    public ContactJournal(Path snapshotFile, Path binaryFile, ContactMetrics metrics) {
+        this.metrics = metrics;
+        this.snapshotFile = snapshotFile.toAbsolutePath();
+        this.binaryFile = binaryFile;
+        this.directory = this.snapshotFile.getParent();
+        this.journalPrefix = this.snapshotFile.getFileName() + ".journal.";
+    }
+    //============================================= REPLAY ===========================================================================================
+    public int replay(BiConsumer<String, Contact> apply) throws IOException {
+        //applies every journaled change, oldest generation first- contact is null for a delete
+        //returns the number of records replayed
+        int count = 0;
+        for (long gen : generations()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile(gen))))) {
+                List<Map.Entry<String, Contact>> transaction = null;//changes of an open transaction, held back until its COMMIT
+                while (true) {
+                    byte[] payload = readRecord(in);
+                    if (payload == null) {
+                        break;//end of file, or a torn record left by a crash- nothing after it was acknowledged
+                    }
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte type = record.readByte();
+                    if (type == BEGIN) {
+                        transaction = new ArrayList<>();
+                        continue;
+                    }
+                    if (type == COMMIT) {
+                        for (Map.Entry<String, Contact> change : transaction) {
+                            apply.accept(change.getKey(), change.getValue());
+                        }
+                        count += transaction.size();
+                        transaction = null;
+                        continue;
+                    }
+                    String name = record.readUTF();
+                    Contact contact = type == PUT ? new Contact(name, record.readUTF(), record.readUTF()) : null;
+                    if (transaction != null) {
+                        transaction.add(new AbstractMap.SimpleImmutableEntry<>(name, contact));
+                    } else {
+                        apply.accept(name, contact);
+                        count++;
+                    }
+                }
+                //a transaction without its COMMIT was cut off by a crash- none of it is applied
+            }
+        }
+        return count;
+    }
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        //record layout: [int length][int crc32 of payload][payload]
+        int length;
+        long crc;
+        try {
+            length = in.readInt();
+            crc = in.readInt() & 0xFFFFFFFFL;
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > 1 << 20) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 check = new CRC32();
+        check.update(payload);
+        return check.getValue() == crc ? payload : null;
+    }
+    //============================================= OPEN / CLOSE ===========================================================================================
+    public synchronized void open() throws IOException {
+        //starts a fresh generation after every journal already on disk, so a torn tail is never appended to
+        //replay() may run before or after this- the new journal is simply empty (or holds this session's edits)
+        List<Long> existing = generations();
+        generation = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        for (long gen : existing) {
+            if (Files.size(journalFile(gen)) == 0) {
+                Files.deleteIfExists(journalFile(gen));//nothing to replay- don't leave one empty file per session behind
+            }
+        }
+        channel = openJournal(generation);
+        flusher = Executors.newSingleThreadScheduledExecutor(daemon("contact-journal-flush"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        compactor = Executors.newSingleThreadExecutor(daemon("contact-journal-compact"));
+    }
+    public void close() throws IOException {
+        //flushes and fsyncs what is left- no full rewrite of the contacts file on exit
+        //also safe when open() failed or was never called- there is nothing to flush then
+        if (flusher == null) {
+            return;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);//let a running snapshot finish its rename- it still needs the flusher
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+                channel = null;//later appends are refused instead of buffered for a flusher that is gone
+            }
+        }
+        checkFailure();
+    }
+    //============================================= APPEND ===========================================================================================
+    //records are only buffered here- they reach the disk with the next group commit, within FLUSH_INTERVAL_MS, so an
+    //edit acknowledged less than that before a crash or power cut can be lost
+    public void put(Contact contact) throws IOException {
+        append(PUT, contact.getName(), contact.getPhone(), contact.getEmail());
+    }
+    public void delete(String name) throws IOException {
+        append(DELETE, name);
+    }
+    public void transaction(Map<String, Contact> changes) throws IOException {
+        //changes that replay applies all together or not at all- name -> contact, null for a delete
+        //framed by BEGIN and COMMIT and buffered in one go, so the whole transaction goes out in the same flush
+        checkFailure();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        writeRecord(records, BEGIN);
+        for (Map.Entry<String, Contact> change : changes.entrySet()) {
+            Contact contact = change.getValue();
+            if (contact != null) {
+                writeRecord(records, PUT, contact.getName(), contact.getPhone(), contact.getEmail());
+            } else {
+                writeRecord(records, DELETE, change.getKey());
+            }
+        }
+        writeRecord(records, COMMIT);
+        synchronized (this) {
+            checkOpen();
+            records.writeTo(pending);
+            bytesSinceCompaction += records.size();
+        }
+    }
+    private void append(byte type, String... fields) throws IOException {
+        checkFailure();
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        writeRecord(record, type, fields);
+        synchronized (this) {
+            checkOpen();
+            //only buffered here- the flusher thread writes and fsyncs the whole batch
+            record.writeTo(pending);
+            bytesSinceCompaction += record.size();
+        }
+    }
+    private static void writeRecord(ByteArrayOutputStream to, byte type, String... fields) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(type);
+        for (String field : fields) {
+            payload.writeUTF(field);
+        }
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        DataOutputStream out = new DataOutputStream(to);
+        out.writeInt(data.length);
+        out.writeInt((int) crc.getValue());
+        out.write(data);
+    }
+    private void checkOpen() throws IOException {
+        //caller holds this- without an open journal nothing would ever write the record, so the edit must not be acknowledged
+        if (channel == null) {
+            throw new IOException("contact journal is not open");
+        }
+    }
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            //the unwritten records are kept and retried- until they are on disk no new edit is accepted
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            throw new IOException("contact journal cannot be written: " + reason, e);
+        }
+        e = compactionFailure;
+        if (e != null) {
+            compactionFailure = null;//the journals it would have replaced are still there- reported once
+            throw e;
+        }
+    }
+    //============================================= GROUP COMMIT ===========================================================================================
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            //kept in failure by flush(), and retried on the next tick
+        }
+    }
+    private void flush() throws IOException {
+        FileChannel oldChannel;
+        byte[] oldBytes;
+        FileChannel current;
+        byte[] bytes;
+        synchronized (this) {
+            if (broken) {
+                roll();//still failing- the records stay in pending
+            }
+            oldChannel = retired;
+            oldBytes = retiredBytes;
+            retired = null;
+            retiredBytes = null;
+            current = channel;
+            bytes = pending.toByteArray();
+            pending.reset();
+        }
+        //writes and fsyncs happen outside the lock so appends never wait on the disk
+        if (oldChannel == null && bytes.length == 0 && failure == null) {
+            return;//idle tick
+        }
+        long start = System.nanoTime();
+        boolean oldDone = oldChannel == null;
+        try {
+            if (oldChannel != null) {
+                writeFully(oldChannel, oldBytes);
+                oldChannel.force(false);
+                oldChannel.close();
+                oldDone = true;
+            }
+            if (bytes.length > 0) {
+                writeFully(current, bytes);
+                current.force(false);
+            }
+        } catch (IOException e) {
+            metrics.failed(ContactMetrics.Operation.JOURNAL_FLUSH, start);
+            synchronized (this) {
+                //the edits were already acknowledged- keep their records, ahead of anything appended meanwhile, and write
+                //them again to a new generation: replay stops reading a file at a torn record, so nothing may follow one
+                ByteArrayOutputStream kept = new ByteArrayOutputStream(bytes.length + pending.size());
+                if (!oldDone) {
+                    kept.write(oldBytes, 0, oldBytes.length);
+                    closeQuietly(oldChannel);
+                }
+                kept.write(bytes, 0, bytes.length);
+                pending.writeTo(kept);
+                pending = kept;
+                broken = true;
+                failure = e;
+                try {
+                    roll();
+                } catch (IOException again) {
+                    //the disk is still failing- the next flush tries again
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            failure = null;//everything acknowledged so far is on disk again
+        }
+        metrics.record(ContactMetrics.Operation.JOURNAL_FLUSH, start);
+        metrics.count("journal.bytes written", bytes.length + (oldBytes == null ? 0 : oldBytes.length));
+    }
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    private void roll() throws IOException {
+        //moves on to a new generation after a failed write- caller holds this
+        //the old file keeps what reached it; replay reads it up to the tear and then goes on with the next file
+        FileChannel next = openJournal(generation + 1);
+        closeQuietly(channel);
+        channel = next;
+        generation++;
+        broken = false;
+    }
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //nothing more can be written to it anyway
+        }
+    }
+    //============================================= COMPACTION ===========================================================================================
+    public synchronized boolean needsCompaction() {
+        return bytesSinceCompaction >= COMPACT_THRESHOLD_BYTES && (compaction == null || compaction.isDone());
+    }
+    public void compact(Lock edits, Supplier<Collection<Contact>> contacts) {
+        //folds every journal so far into fresh contact files, on the compaction thread- the caller only hands the work over
+        //edits is held there just while the journal moves to a new generation: every edit journaled before that has been
+        //applied, and every later one goes to the new file; contacts then copies every contact with edits going on again
+        synchronized (this) {
+            if (channel == null) {
+                return;//not open- the files on disk stay as they are, and so do the journals replayed on top of them
+            }
+            if (compaction != null && !compaction.isDone()) {
+                return;//one snapshot at a time
+            }
+            bytesSinceCompaction = 0;
+            compaction = compactor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    long lastFolded;
+                    edits.lock();
+                    try {
+                        lastFolded = nextGeneration();
+                    } finally {
+                        edits.unlock();
+                    }
+                    //the copy may already show some edits of the new generation, even part of a transaction- that is harmless
+                    //as long as their records are on disk before the snapshot is: replaying them on top of it ends the same
+                    Collection<Contact> snapshot = contacts.get();
+                    flusher.submit(() -> {
+                        flush();
+                        return null;
+                    }).get();
+                    writeSnapshot(snapshotFile, snapshot);
+                    if (binaryFile != null) {
+                        //written after the csv, so it is never older than the csv it was made with
+                        ContactSnapshot.write(binaryFile, snapshot);
+                    }
+                    for (long gen : generations()) {
+                        if (gen <= lastFolded) {
+                            Files.deleteIfExists(journalFile(gen));
+                        }
+                    }
+                    metrics.record(ContactMetrics.Operation.SNAPSHOT_WRITE, start);
+                } catch (IOException | ExecutionException | RuntimeException e) {
+                    //the journals stay, so nothing is lost- reported once, on the next append
+                    metrics.failed(ContactMetrics.Operation.SNAPSHOT_WRITE, start);
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    compactionFailure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();//closing- the journals stay for the next start to replay
+                }
+                return null;
+            });
+        }
+    }
+    private synchronized long nextGeneration() throws IOException {
+        //moves appends on to a new journal file and returns the last generation the snapshot will hold- caller holds edits
+        //the old file is finished by the next flush, after its last records
+        FileChannel next = openJournal(generation + 1);
+        long lastFolded = generation;
+        if (broken) {
+            //the old file may end in a torn record- its unwritten records go to the new one instead
+            closeQuietly(channel);
+            broken = false;
+        } else {
+            retired = channel;
+            retiredBytes = pending.toByteArray();
+            pending.reset();
+        }
+        generation++;
+        channel = next;
+        return lastFolded;
+    }
+    public static void writeSnapshot(Path file, Collection<Contact> contacts) throws IOException {
+        //writes a temporary file next to the target, fsyncs it and renames it over the target in one step
+        //a crash leaves either the old file or the new one, never a half-written one
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            for (Contact contact : contacts) {
+                writer.write(csvField(contact.getName()));
+                writer.write(',');
+                writer.write(csvField(contact.getPhone()));
+                writer.write(',');
+                writer.write(csvField(contact.getEmail()));
+                writer.write('\n');
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    static String csvField(String value) {
+        //quote only when needed, doubling any quote inside- matches what CsvContactLoader reads
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    //============================================= FILES ===========================================================================================
+    public long size() {
+        //bytes in the journal files on disk plus the batch not yet written, -1 if the directory cannot be read
+        try {
+            long bytes;
+            synchronized (this) {
+                bytes = pending.size();
+            }
+            for (long gen : generations()) {
+                Path file = journalFile(gen);
+                if (Files.exists(file)) {
+                    bytes += Files.size(file);
+                }
+            }
+            return bytes;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    private Path journalFile(long gen) {
+        return directory.resolve(journalPrefix + gen);
+    }
+    private FileChannel openJournal(long gen) throws IOException {
+        return FileChannel.open(journalFile(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    private List<Long> generations() throws IOException {
+        //generation numbers of the journal files on disk, oldest first
+        List<Long> gens = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return gens;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, journalPrefix + "*")) {
+            for (Path file : files) {
+                try {
+                    gens.add(Long.parseLong(file.getFileName().toString().substring(journalPrefix.length())));
+                } catch (NumberFormatException e) {
+                    //not one of ours
+                }
+            }
+        }
+        Collections.sort(gens);
+        return gens;
+    }
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);//never keeps the application alive
+            return thread;
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,321 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import javafx.collections.ObservableListBase;
+//base class for custom observable lists- takes care of listeners and change events
+
+public class ContactListModel extends ObservableListBase<Contact> {
+    //observable list of all contacts in name order, for the TableView
+    //contacts live in a balanced tree where every node knows the size of its subtree,
+    //so the row at an index, the index of a name, inserts and removes are all O(log n)
+    //one edit fires one small change (add/remove/replace at its index) instead of replacing the whole list
+    //with a ContactTable behind the store (COMPACT storage) the list keeps only row numbers in a RowOrder instead-
+    //4 bytes a contact, and Contact objects are made for the rows the TableView shows
+    //the order is a copy of the store's on purpose, not a view of it: the store's order changes on whichever thread edits it,
+    //but a TableView must see its list change only on the FX thread, and only together with the change event that describes it-
+    //so the list follows the store through apply(), run by Platform.runLater, and shows the old order until then
+    //==========================INITIALIZE===============================================
+    private static class Node {
+        Contact contact;
+        Node left;
+        Node right;
+        int height = 1;
+        int size = 1;//number of contacts in this subtree
+        Node(Contact contact) {
+            this.contact = contact;
+        }
+    }
+    private Node root;
+    private ContactTable table;
+    private RowOrder order;
+    //set instead of root when the contacts are rows of a ContactTable
+    private final ContactTable.Row[] recent = new ContactTable.Row[256];
+    //the contacts last made for a row, by row number- scrolling and layout ask for the same few rows again and again
+    //============================================= LIST ===========================================================================================
+    @Override
+    public Contact get(int index) {
+        //the TableView only asks for the rows it shows, so rows are looked up on demand and nothing is copied
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (table != null) {
+            return view(order.get(index));
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.contact;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+    @Override
+    public int size() {
+        return table != null ? order.size() : size(root);
+    }
+    private ContactTable.Row view(int row) {
+        int slot = row & (recent.length - 1);
+        ContactTable.Row contact = recent[slot];
+        if (contact == null || contact.getRow() != row) {
+            contact = table.view(row);
+            recent[slot] = contact;
+        }
+        return contact;
+    }
+    public int indexOfName(String name) {
+        //position of the contact with this name, or -1
+        if (table != null) {
+            int at = order.lowerBound(row -> table.compareName(row, name));
+            return at < order.size() && table.compareName(order.get(at), name) == 0 ? at : -1;
+        }
+        int index = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = name.compareTo(node.contact.getName());
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+    //============================================= EDITS ===========================================================================================
+    public void put(Contact contact) {
+        //adds the contact at its sorted position, or replaces the contact with the same name in place
+        if (table != null) {
+            putRow((ContactTable.Row) contact);//with COMPACT storage the store's listeners get rows of its table
+            return;
+        }
+        int index = indexOfName(contact.getName());
+        beginChange();
+        if (index >= 0) {
+            Contact old = get(index);
+            root = replace(root, contact);
+            nextSet(index, old);
+        } else {
+            root = insert(root, contact);
+            index = indexOfName(contact.getName());
+            nextAdd(index, index + 1);
+        }
+        endChange();
+    }
+    private void putRow(ContactTable.Row contact) {
+        String name = contact.getName();
+        int index = order.lowerBound(row -> table.compareName(row, name));
+        beginChange();
+        if (index < order.size() && table.compareName(order.get(index), name) == 0) {
+            Contact old = get(index);
+            order.set(index, contact.getRow());
+            nextSet(index, old);
+        } else {
+            order.insert(index, contact.getRow());
+            nextAdd(index, index + 1);
+        }
+        endChange();
+    }
+    public void apply(List<ContactStore.Change> changes) {
+        //the changes of one store edit (a whole transaction) as one list change- the TableView relayouts once,
+        //and each change costs O(log n) however many rows there are
+        beginChange();
+        for (ContactStore.Change change : changes) {
+            if (change.getAfter() != null) {
+                put(change.getAfter());//inserted at its sorted row, or replaces the row with the same name
+            } else {
+                remove(change.getName());
+            }
+        }
+        endChange();
+    }
+    public void remove(String name) {
+        int index = indexOfName(name);
+        if (index < 0) {
+            return;
+        }
+        Contact old = get(index);
+        if (table != null) {
+            order.remove(index);
+        } else {
+            root = delete(root, name);
+        }
+        beginChange();
+        nextRemove(index, old);
+        endChange();
+    }
+    public static class Prebuilt {
+        //a tree built off the UI thread, ready to be swapped in by reset()
+        private final Node root;
+        private final ContactTable table;
+        private final RowOrder order;
+        private Prebuilt(Node root, ContactTable table, RowOrder order) {
+            this.root = root;
+            this.table = table;
+            this.order = order;
+        }
+    }
+    public static Prebuilt prebuild(ContactRows rows) {
+        //the rows of a ContactTable are kept as row numbers, anything else as a tree of its contacts
+        if (rows instanceof ContactTable) {
+            ContactTable table = (ContactTable) rows;
+            int[] sorted = table.sortedRows();
+            return new Prebuilt(null, table, new RowOrder(sorted, sorted.length));
+        }
+        return prebuild(rows.values());
+    }
+    public static Prebuilt prebuild(Collection<Contact> sorted) {
+        //builds the tree for contacts that are already in name order (e.g. the treemap's values) in O(n)
+        //touches no listeners, so it can run on a background thread
+        List<Contact> rows = new ArrayList<>(sorted);
+        return new Prebuilt(build(rows, 0, rows.size()), null, null);
+    }
+    public void reset(Prebuilt rows) {
+        //replaces everything with a prebuilt tree- listeners get one change
+        List<Contact> removed;
+        if (table != null) {
+            //the old rows stay readable in their table- listeners that look at them get them one at a time
+            ContactTable oldTable = table;
+            RowOrder oldOrder = order;
+            removed = new AbstractList<Contact>() {
+                @Override
+                public Contact get(int index) {
+                    return oldTable.view(oldOrder.get(index));
+                }
+                @Override
+                public int size() {
+                    return oldOrder.size();
+                }
+            };
+        } else {
+            removed = new ArrayList<>(size());
+            collect(root, removed);
+        }
+        root = rows.root;
+        table = rows.table;
+        order = rows.order;
+        Arrays.fill(recent, null);
+        beginChange();
+        if (!removed.isEmpty()) {
+            nextRemove(0, removed);
+        }
+        if (size() > 0) {
+            nextAdd(0, size());
+        }
+        endChange();
+    }
+    //============================================= TREE ===========================================================================================
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+    private static Node update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+    private static void collect(Node node, List<Contact> out) {
+        //in-order walk- O(n), unlike get(i) for every i
+        if (node != null) {
+            collect(node.left, out);
+            out.add(node.contact);
+            collect(node.right, out);
+        }
+    }
+    private static Node build(List<Contact> rows, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        Node node = new Node(rows.get(mid));
+        node.left = build(rows, from, mid);
+        node.right = build(rows, mid + 1, to);
+        return update(node);
+    }
+    private static Node insert(Node node, Contact contact) {
+        if (node == null) {
+            return new Node(contact);
+        }
+        if (contact.getName().compareTo(node.contact.getName()) < 0) {
+            node.left = insert(node.left, contact);
+        } else {
+            node.right = insert(node.right, contact);
+        }
+        return balance(update(node));
+    }
+    private static Node replace(Node node, Contact contact) {
+        //same name, so the shape of the tree does not change
+        Node current = node;
+        while (current != null) {
+            int cmp = contact.getName().compareTo(current.contact.getName());
+            if (cmp == 0) {
+                current.contact = contact;
+                break;
+            }
+            current = cmp < 0 ? current.left : current.right;
+        }
+        return node;
+    }
+    private static Node delete(Node node, String name) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = name.compareTo(node.contact.getName());
+        if (cmp < 0) {
+            node.left = delete(node.left, name);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, name);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            //two children- take the next contact in order from the right subtree
+            Node next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+            node.contact = next.contact;
+            node.right = delete(node.right, next.contact.getName());
+        }
+        return balance(update(node));
+    }
+    //----------------------------------- AVL rotations ------------------------
+    private static Node balance(Node node) {
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (diff < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = update(node);
+        return update(left);
+    }
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = update(node);
+        return update(right);
+    }
+}
\ No newline at end of file
@@ -15,34 +15,67 @@ import javafx.scene.layout.*;
 //help organize and position GUI elements within a window
 import javafx.stage.Stage;
 //to set up and display main window0
-import javafx.beans.property.SimpleStringProperty;
-//used to create observable properties
-import javafx.beans.property.StringProperty;
-//abstract superclass of SimpleStringProperty
-import java.io.BufferedReader;
-//for reading text from an input stream efficiently
-//by buffering characters into large blocks
-import java.io.FileReader;
-//for reading character files
-import java.io.FileWriter;
-//writing character files
 import java.io.IOException;
 // for exceptions thrown when an I/O operation fails
+import java.nio.file.Path;
+import java.nio.file.Paths;
+//to turn the file names into Paths for the contact store
+import javafx.stage.FileChooser;
+//file dialog for picking the file to import from or export to
+import java.io.File;
 import javafx.geometry.Insets;
 //to define the padding around GUI elements
 import javafx.geometry.Pos;
 //to set the alignment of UI elements in the layout
+import javafx.application.Platform;
+//to hand work from background threads back to the JavaFX Application Thread
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+//file I/O and searches run as Tasks on background threads, reporting progress and results to the UI
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+//timer used to wait until the user stops typing before searching
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+//pool of background threads that run the Tasks
+import javafx.geometry.Side;
+import java.util.function.Consumer;
+import java.util.function.Function;
+//autocomplete- the suggestions pop up below the field being typed in
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+//refreshes the stats window once a second
+import javax.management.JMException;
+//the store's metrics are published over JMX
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+//Ctrl+Z / Ctrl+Y (Cmd on a Mac) for undo and redo
 
 public class ContactManager extends Application {
     //==========================INITIALIZE===============================================
-    private static final String CONTACTS_FILE = "C:\\Users\\MITALEEE\\Desktop\\contact.csv";
-    //finalised path to the file where the contacts will be saved
-    private TreeMap<String, Contact> contacts = new TreeMap<>();
-    //TreeMap that maps strings (names) to Contact objects---each contact is associated with a unique name and sorted by name
+    private static final String CONTACTS_FILE = System.getProperty("contacts.file", "contact.csv");
+    //path to the file where the contacts will be saved- contact.csv in the working directory unless -Dcontacts.file=<path> is given
+    private static final boolean USE_BINARY_SNAPSHOT = true;
+    private static final String SNAPSHOT_FILE = CONTACTS_FILE + ".bin";
+    //optional binary copy of the contacts file- much faster to start from than parsing the csv
+    private static final ContactStore.Storage STORAGE = ContactStore.Storage.MAPS;
+    //COMPACT for address books of millions- a tenth of the memory (under half once fuzzy search or phone completion is used),
+    //but every search scans all contacts
+    private static final ContactValidator.PhoneFormat PHONE_FORMAT = ContactValidator.PhoneFormat.NATIONAL;
+    private static final String COUNTRY_CODE = "1";
+    //phone numbers as 10 digits, or E164 for international numbers (COUNTRY_CODE is added to numbers typed without one)
+    private ContactValidator validator = new ContactValidator(PHONE_FORMAT, COUNTRY_CODE);
+    //phone and email rules, shared with the bulk import
+    private ContactStore store = new ContactStore(Paths.get(CONTACTS_FILE), USE_BINARY_SNAPSHOT ? Paths.get(SNAPSHOT_FILE) : null, STORAGE);
+    //all contacts, their phone/email/search indexes and the files they are kept in (csv, binary snapshot, journal)
+    //thread safe and independent of JavaFX- this class only shows what is in the store and asks it for changes
     private TableView<Contact> contactTable = new TableView<>();
     //GUI component-table to display the list of contacts
-    private ObservableList<Contact> contactList = FXCollections.observableArrayList();
+    private ContactListModel contactList = new ContactListModel();
     //ObservableList- notifies any linked JavaFX UI controls when changes are made to the list
+    //ContactListModel keeps every contact in name order and reports each edit as one change at its row- no full copies of the treemap
     //if you add, remove, or modify elements in the list, any UI components that are bound to this list will automatically reflect those changes
     //ObservableList is used to store a collection of Contact objects. Then, it's set as the data source for the contactTable TableView
     private TextField nameField = new TextField();
@@ -50,35 +83,114 @@ public class ContactManager extends Application {
     private TextField emailField = new TextField();
     private TextField searchField = new TextField();
     //text fields to enter contact's name, phone number, email and search field
+    private CheckBox fuzzyBox = new CheckBox("Fuzzy");
+    //fuzzy mode- searches names allowing typos and similar sounding words, best matches first
+    private HBox buttonBox;
+    //the buttons- disabled while the contacts are loading or being saved
+    private ProgressBar progressBar = new ProgressBar(0);
+    private Label statusLabel = new Label();
+    //status bar- shows what the background task is doing and how far it got
+    private ExecutorService background = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "contact-manager-worker");
+        thread.setDaemon(true);//never keeps the application alive after the window is closed
+        return thread;
+    });
+    //background threads for loading, saving and searching- the JavaFX Application Thread only updates the UI
+    private PauseTransition searchDelay = new PauseTransition(Duration.millis(250));
+    //search-as-you-type waits this long after the last key press
+    private Task<List<Contact>> searchTask;
+    //search currently running, cancelled when a newer query comes in
+    private Task<?> statusTask;
+    //task whose progress the status bar currently shows
+    private boolean closing;
+    private boolean readOnly;
+    //the journal could not be opened- an edit would be acknowledged and then never written, so contacts can only be viewed
+    private static final int SEARCH_BATCH = 2000;
+    //search results are handed to the table in batches of this many rows
+    private static final int FUZZY_RESULTS = 50;
+    //a fuzzy search shows only this many best matches
+    private static final int COMPLETIONS = 10;
+    //suggestions shown under the name and search fields while typing
+    private boolean completing;
+    //true while a picked suggestion is written into the fields- that typing should not suggest anything
+    private CheckBox statsBox = new CheckBox("Stats");
+    //shows a window with how often each operation ran and how long it took, file sizes and row counts
+    private static final String JMX_DOMAIN = "ContactManager";
+    //the same numbers as MBeans- ContactManager:type=Store and ContactManager:type=Operation,name=<operation>
     //============================================= SAVE CONTACTS ===========================================================================================
     private void saveContacts() throws IOException {
         //IOException-error/interruption while performing input/output operations
         //eg. trying to read from a file that doesn't exist, to write to a file that is read-only, running out of disk space while writing to a file
-        FileWriter writer = new FileWriter(CONTACTS_FILE);// initializes a new instance of FileWriter- to write character files
-        for (Map.Entry<String , Contact> entry : contacts.entrySet()) {//for each key-value pair in the set of mappings in the map
-            //(each element in this set is a Map.Entry object, which is a key-value pair)
-            Contact contact = entry.getValue();//retrieve Contact object from the current entry in the map
-            writer.write(contact.getName() + "," + contact.getPhone() + "," + contact.getEmail() + "\n");//construct comma-separated string
-        }
-        writer.close();
+        //every change is already in the journal- closing only flushes its last batch, the csv is not rewritten
+        store.close();
     }
     //============================================= LOAD CONTACTS ===========================================================================================
-    private void loadContacts() throws IOException {
-        //BufferedReader is a class used to read text from a character-input stream
-        //reads in large chunks rather than character by character hence more efficient
-        BufferedReader reader = new BufferedReader(new FileReader(CONTACTS_FILE));//FileReader reads data from the character file
-        String line;//used to hold each line of text read from file
-        while ((line = reader.readLine()) != null) {//reading one line at a time, as long as there are any
-            String[] parts = line.split(",");//each comma separated line split into string array [name,phone,email]
-            String name = parts[0];//name
-            String phone = parts[1];//phone
-            String email = parts[2];//email from parts array is extracted and
-            Contact contact = new Contact(name, phone, email);//new contact is created and
-            contacts.put(name, contact);//is put into the treemap with name as the key
-        }
-        reader.close();
-        //update the displayed contacts in the contactTable
-        contactList.setAll(contacts.values());//sets the content of contactList to the contacts in the treemap
+    private void loadContacts() {
+        //reading, parsing and indexing run on a background thread- the window is already open and shows progress meanwhile
+        Task<List<String>> task = new Task<List<String>>() {
+            private ContactListModel.Prebuilt rows;
+            @Override
+            protected List<String> call() throws IOException {
+                updateMessage("Loading contacts...");
+                List<String> errors = store.load(fraction -> updateProgress(fraction, 1));
+                rows = ContactListModel.prebuild(store.rows());//store rows are already in name order
+                return errors;
+            }
+            @Override
+            protected void succeeded() {
+                //back on the UI thread- update the displayed contacts in the contactTable, the only time the whole list is replaced
+                resetTable(rows);
+                buttonBox.setDisable(false);
+                List<String> errors = getValue();
+                if (!errors.isEmpty()) {
+                    //------------------bad rows are skipped and listed instead of stopping the whole load
+                    StringBuilder message = new StringBuilder(errors.size() + " row(s) in the contacts file were skipped:");
+                    for (int i = 0; i < errors.size() && i < 10; i++) {//list the first few only, the dialog is not a log
+                        message.append("\n").append(errors.get(i));
+                    }
+                    if (errors.size() > 10) {
+                        message.append("\n...");
+                    }
+                    showError(message.toString());
+                }
+            }
+        };
+        task.setOnFailed(event -> {
+            //the buttons stay disabled- an edit now would only be checked against an empty store, and could give a name,
+            //phone or email that a contact still in the file already has
+            store.metrics().count("ui.error dialogs", 1);
+            Throwable error = task.getException();
+            String reason = error != null && error.getMessage() != null ? ": " + error.getMessage() : ".";
+            ButtonType retry = new ButtonType("Retry");
+            Alert alert = new Alert(Alert.AlertType.ERROR, "The contacts could not be loaded" + reason
+                    + "\nContacts cannot be changed until they are loaded.", retry, ButtonType.CANCEL);
+            alert.setTitle("Error");
+            alert.setHeaderText(null);
+            if (alert.showAndWait().orElse(ButtonType.CANCEL) == retry) {
+                loadContacts();
+            }
+        });
+        buttonBox.setDisable(true);//no edits until the loaded contacts are in place
+        runInBackground(task);
+    }
+    //----------------------------------- run a task ------------------------
+    private void runInBackground(Task<?> task) {
+        //runs task on a background thread with its progress and message shown in the status bar until it ends
+        statusTask = task;
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        progressBar.setVisible(true);
+        task.stateProperty().addListener((obs, old, state) -> {
+            boolean done = state == Worker.State.SUCCEEDED || state == Worker.State.FAILED || state == Worker.State.CANCELLED;
+            if (done && statusTask == task) {//a newer task may already own the status bar
+                progressBar.progressProperty().unbind();
+                statusLabel.textProperty().unbind();
+                progressBar.setVisible(false);
+                statusLabel.setText("");
+                statusTask = null;
+            }
+        });
+        background.execute(task);
     }
     //============================================= MAIN METHOD ===========================================================================================
     public static void main(String[] args) {
@@ -90,26 +202,66 @@ public class ContactManager extends Application {
     public void start(Stage primaryStage) {//default stage
         //---------FILE HANDLING----------LOAD SAVED CONTACTS AS IT OPENS
         try {
-            //----------------------load contacts from CSV
-            loadContacts();
+            //----------------------start the journal first so edits are kept even if loading fails
+            store.open();
         } catch (IOException e) {
-            showError("Error encountered while performing input/output operations");
+            readOnly = true;
+            String reason = e.getMessage() != null ? ": " + e.getMessage() : ".";
+            showError("The contacts journal could not be opened" + reason
+                    + "\nContacts can be searched and exported, but not changed.");
+        }
+        try {
+            store.metrics().registerMBeans(JMX_DOMAIN);
+        } catch (JMException e) {
+            //JMX is only a window into the numbers- the application runs the same without it (the stats window still works)
         }
-        //---------FILE HANDLING----------SAVE NEW CONTACTS AS IT CLOSES
+        //----------------------keep the table in step with the store
+        //changes may come from any thread, so they are applied on the UI thread, in the order they happened
+        //all changes of one edit (a multi-row delete, an undo) reach the table as one list change
+        store.addListener(changes -> Platform.runLater(() -> contactList.apply(changes)));
+        //---------FILE HANDLING----------FLUSH THE JOURNAL AS IT CLOSES
         primaryStage.setOnCloseRequest(event -> {
-            try {
-                //-------------------save contacts to CSV
-                saveContacts();
-            } catch (IOException e) {
-                showError("Error encountered while performing input/output operations");
+            event.consume();//the window stays open until the journal is flushed in the background
+            if (closing) {
+                return;
             }
+            closing = true;
+            buttonBox.setDisable(true);
+            Task<Void> task = new Task<Void>() {
+                @Override
+                protected Void call() throws IOException {
+                    updateMessage("Saving contacts...");
+                    //-------------------flush the last journal batch
+                    saveContacts();
+                    return null;
+                }
+            };
+            task.setOnSucceeded(e -> Platform.exit());
+            task.setOnFailed(e -> {
+                showError("Error encountered while performing input/output operations");
+                Platform.exit();
+            });
+            runInBackground(task);
         });
         primaryStage.setTitle("Contact Manager");//set title for app
         setupUI(primaryStage);//set up UI
         setupButtonActions(primaryStage);//set up button actions
         primaryStage.show();//to show the frame/window
+        //----------------------load contacts from CSV and the journal- after show, so the window opens right away
+        loadContacts();
     }
     //============================================= SET UP UI METHOD ===========================================================================================
+    private void updateSortable() {
+        //the list of all contacts is a live view of the store, always in name order, and cannot be sorted by another column-
+        //the headers sort search results only, and are switched off (not just ignored) while all contacts are shown
+        boolean all = contactTable.getItems() == contactList;
+        if (all) {
+            contactTable.getSortOrder().clear();
+        }
+        for (TableColumn<Contact, ?> column : contactTable.getColumns()) {
+            column.setSortable(!all);
+        }
+    }
     private void setupUI(Stage stage) {
         //-------------------create columns for name, phone, and email-----------
         //--------using StringProperty that bind Table View and Observable Lists
@@ -122,6 +274,10 @@ public class ContactManager extends Application {
         emailCol.setCellValueFactory(param -> param.getValue().emailProperty());
         contactTable.getColumns().addAll(nameCol, phoneCol, emailCol);//add the columns to the table
         contactTable.setItems (contactList);
+        contactTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        //rows picked with ctrl/shift-click are deleted together by the Delete button
+        contactTable.itemsProperty().addListener((obs, old, items) -> updateSortable());
+        updateSortable();
         //-------------------style the table----------------------------------------------
         nameCol.setStyle("-fx-background-color: #FFFFFF; -fx-text-fill: black;");
         phoneCol.setStyle("-fx-background-color: #FFFFFF; -fx-text-fill: black;");
@@ -159,6 +315,7 @@ public class ContactManager extends Application {
         inputsGrid.add(emailField, 1, 2);
         inputsGrid.add(searchLabel, 0, 3);
         inputsGrid.add(searchField, 1, 3);
+        inputsGrid.add(fuzzyBox, 2, 3);
         //----------------------------------------- root -----------------------------------------
         //ROOT-creates the main layout for the GUI
         //BorderPane arranges its layout into 5 regions- layout manager
@@ -184,6 +341,10 @@ public class ContactManager extends Application {
         Button searchButton = new Button("Search");
         Button deleteButton = new Button("Delete");
         Button showAllButton = new Button("Show All");
+        Button importButton = new Button("Import");
+        Button exportButton = new Button("Export");
+        Button undoButton = new Button("Undo");
+        Button redoButton = new Button("Redo");
         //----------------------------------------- customize -----------------------------------------
         //set button bg colours and their text colours
         addButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
@@ -191,6 +352,16 @@ public class ContactManager extends Application {
         searchButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
         deleteButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
         showAllButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
+        importButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
+        exportButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
+        undoButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
+        redoButton.setStyle("-fx-background-color: white; -fx-text-fill: black;");
+        if (readOnly) {
+            //disabled one by one, so enabling buttonBox again after a load or an export leaves them off
+            for (Button button : new Button[] {addButton, updateButton, deleteButton, importButton, undoButton, redoButton}) {
+                button.setDisable(true);
+            }
+        }
         //----------------------------------------- invoke methods -----------------------------------------
         //method addContact is invoked when button with add label is clicked/upon event e
         addButton.setOnAction(e -> addContact());
@@ -198,16 +369,114 @@ public class ContactManager extends Application {
         searchButton.setOnAction(e -> searchContacts());
         deleteButton.setOnAction(e -> deleteContact());
         showAllButton.setOnAction(e -> showAllContacts());
+        importButton.setOnAction(e -> importContacts(stage));
+        exportButton.setOnAction(e -> exportContacts(stage));
+        undoButton.setOnAction(e -> undo());
+        redoButton.setOnAction(e -> redo());
+        //shortcuts work anywhere in the window, except in a text field, which undoes its own typing
+        stage.getScene().getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), () -> undoButton.fire());
+        stage.getScene().getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), () -> redoButton.fire());
         //----------------------------------------- set buttons -----------------------------------------
         //HBox-Horizontal Box-layout container-arranges in a horizontal line-left to right
         //show all buttons on the HBox w spacing of 10
-        HBox buttonBox = new HBox(10, addButton, updateButton, searchButton, deleteButton, showAllButton);
+        buttonBox = new HBox(10, addButton, updateButton, searchButton, deleteButton, showAllButton, importButton, exportButton, undoButton, redoButton);
         buttonBox.setPadding(new Insets(10));//set padding around hbox
         buttonBox.setAlignment(Pos.CENTER);//buttons should be aligned at the center
+        //----------------------------------------- search as you type -----------------------------------------
+        //every key press restarts the timer, the search runs once typing pauses
+        searchDelay.setOnFinished(e -> startSearch(searchField.getText().trim(), false));
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+        fuzzyBox.selectedProperty().addListener((obs, was, fuzzy) -> startSearch(searchField.getText().trim(), false));
+        //----------------------------------------- autocomplete -----------------------------------------
+        //name field- existing names, picking one fills in its phone and email (ready to update or delete it)
+        setupCompletion(nameField, prefix -> store.completeName(prefix, COMPLETIONS), contact -> {
+            nameField.setText(contact.getName());
+            phoneField.setText(contact.getPhone());
+            emailField.setText(contact.getEmail());
+        });
+        //search field- phone numbers when the text starts like one, names otherwise- picking one searches for it
+        setupCompletion(searchField, prefix -> looksLikePhone(prefix) ? store.completePhone(prefix, COMPLETIONS) : store.completeName(prefix, COMPLETIONS),
+                contact -> searchField.setText(looksLikePhone(searchField.getText()) ? contact.getPhone() : contact.getName()));
+        //----------------------------------------- status bar -----------------------------------------
+        progressBar.setVisible(false);
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);//pushes the stats checkbox to the right end
+        HBox statusBar = new HBox(10, progressBar, statusLabel, spacer, statsBox);
+        statusBar.setPadding(new Insets(0, 10, 10, 10));
+        statusBar.setAlignment(Pos.CENTER_LEFT);
         //retrieve the root node of current scene associated with stage
         //typecast it to a BorderPane type
         BorderPane root = (BorderPane) stage.getScene().getRoot();
-        root.setBottom(buttonBox);//set buttonbox at bottom of stage
+        root.setBottom(new VBox(buttonBox, statusBar));//set buttonbox (and the status bar below it) at bottom of stage
+        setupStatsWindow(stage);
+    }
+    //----------------------------------------- stats window -----------------------------------------
+    private void setupStatsWindow(Stage owner) {
+        //separate window so the main layout stays as it is- only refreshed while it is open
+        Label report = new Label();
+        report.setStyle("-fx-font-family: monospace;");
+        VBox content = new VBox(report);
+        content.setPadding(new Insets(10));
+        Stage window = new Stage();
+        window.initOwner(owner);
+        window.setTitle("Statistics");
+        window.setScene(new Scene(new ScrollPane(content), 620, 520));
+        Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> report.setText(store.metrics().report())));
+        refresh.setCycleCount(Animation.INDEFINITE);
+        statsBox.selectedProperty().addListener((obs, was, show) -> {
+            if (show) {
+                report.setText(store.metrics().report());
+                window.show();
+                refresh.play();
+            } else {
+                refresh.stop();
+                window.hide();
+            }
+        });
+        window.setOnHidden(e -> statsBox.setSelected(false));//closed with its own close button
+    }
+    //----------------------------------- autocomplete ------------------------
+    private void setupCompletion(TextField field, Function<String, List<Contact>> lookup, Consumer<Contact> pick) {
+        //shows the contacts lookup finds for the field's text in a popup under it, refreshed on every key press
+        //lookups walk the store's sorted indexes and stop after a few contacts, so they are quick enough for the UI thread
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((obs, oldText, newText) -> {
+            String prefix = newText.trim();
+            List<Contact> found = completing || prefix.isEmpty() || !field.isFocused() ? Collections.emptyList() : lookup.apply(prefix);
+            if (found.isEmpty()) {
+                suggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (Contact contact : found) {
+                MenuItem item = new MenuItem(contact.getName() + "  " + contact.getPhone());
+                item.setMnemonicParsing(false);//underscores in names are shown as they are
+                item.setOnAction(e -> {
+                    completing = true;
+                    try {
+                        pick.accept(contact);
+                    } finally {
+                        completing = false;
+                    }
+                    field.positionCaret(field.getText().length());
+                });
+                items.add(item);
+            }
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing()) {
+                suggestions.show(field, Side.BOTTOM, 0, 0);
+            }
+        });
+        field.focusedProperty().addListener((obs, was, focused) -> {
+            if (!focused) {
+                suggestions.hide();
+            }
+        });
+    }
+    private static boolean looksLikePhone(String text) {
+        //starts with a digit, '+' or '(' - "555", "+44", "(555)"
+        String trimmed = text.trim();
+        return !trimmed.isEmpty() && (Character.isDigit(trimmed.charAt(0)) || trimmed.charAt(0) == '+' || trimmed.charAt(0) == '(');
     }
     //============================================= ADD CONTACTS ===========================================================================================
     private void addContact() {
@@ -225,38 +494,38 @@ public class ContactManager extends Application {
             showError("Please fill in all fields.");
             return;
         }
-        for (Contact existingContact : contacts.values()) {//iterate through all contacts
-            //---------------------no duplicate values
-            //iterate through sortedContacts using existingContact as the iterating variable
-            if (existingContact.getName().equals(name)) {
-                showError("Contact with the same name already exists.");
-                return;
-            }
-            if (existingContact.getPhone().equals(phone)) {
-                //checks if currently entered phone matches w any existingcontact's phone
-                showError("Contact with the same phone number already exists.");
-                return;
-            }
-            if (existingContact.getEmail().equals(email)) {
-                //checks if currently entered email matches w any existingcontact's email
-                showError("Contact with the same email address already exists.");
-                return;
-            }
+        //----------------------valid name/phone number/email
+        if (!validator.isValidName(name)) {
+            showError("Invalid name. It cannot contain tabs, line breaks or other control characters.");
+            return;
         }
-        //----------------------valid phone number/email
         if (!isValidPhoneNumber(phone)) {
-            showError("Invalid phone number. It must have exactly 10 digits.");
+            showError("Invalid phone number. " + validator.describePhoneFormat());
             return;
         }
         if (!isValidEmail(email)) {
             showError("Invalid email address.");
             return;
         }
+        //stored in canonical form, so the same number or address typed differently is still caught as a duplicate
+        phone = validator.normalizePhoneNumber(phone);
+        email = validator.normalizeEmail(email);
         //---------------------if all conditions for new contact match, create new contact
         Contact contact = new Contact(name, phone, email);//new contact object created and initialized w values by user from textfields
-        contacts.put(name, contact);//added to contacts map using name as key
-        //update the displayed contacts in the contactTable
-        contactList.setAll(contacts.values());//sets the content of contactList to the contacts in the treemap
+        //---------------------no duplicate values
+        //the store checks names, phones and emails with hash lookups and journals the new contact
+        ContactStore.Status status;
+        try {
+            status = store.add(contact);
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
+            return;
+        }
+        if (!succeeded(status)) {
+            return;
+        }
+        //the store's listener inserts the new row into contactList- just make sure the table shows all contacts again
+        contactTable.setItems(contactList);
         // ---------------------clear all fields after adding
         nameField.clear();
         phoneField.clear();
@@ -274,25 +543,36 @@ public class ContactManager extends Application {
             showError("Please fill in all fields.");
             return;
         }
-        if (!contacts.containsKey(name)) {
-            //---------------------enter existing name
-            //if name is not present in the map, it cant be updated
-            showError("Contact not found.");
+        //----------------------valid name/phone number/email
+        if (!validator.isValidName(name)) {
+            showError("Invalid name. It cannot contain tabs, line breaks or other control characters.");
             return;
         }
-        //----------------------valid phone number/email
         if (!isValidPhoneNumber(phone)) {
-            showError("Invalid phone number. It must have exactly 10 digits.");
+            showError("Invalid phone number. " + validator.describePhoneFormat());
             return;
         }
         if (!isValidEmail(email)) {
             showError("Invalid email address.");
             return;
         }
+        //stored in canonical form, so the same number or address typed differently is still caught as a duplicate
+        phone = validator.normalizePhoneNumber(phone);
+        email = validator.normalizeEmail(email);
         //---------------------if all conditions for new contact match, create new contact
         Contact contact = new Contact(name, phone, email);//new contact object created and initialized w values by user from textfields
-        contacts.put(name, contact);//updated contact put into the contacts map using the same name as the key-effectively updates the existing contact in the map
-        contactList.setAll(contacts.values());//sets the content of contactList to the contacts in the treemap
+        //updated contact replaces the one with the same name- the store reports a missing name or a phone/email used by someone else
+        ContactStore.Status status;
+        try {
+            status = store.update(contact);
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
+            return;
+        }
+        if (!succeeded(status)) {
+            return;
+        }
+        contactTable.setItems(contactList);//the row is replaced in place by the store's listener
         //---------------------clear all fields after adding
         nameField.clear();
         phoneField.clear();
@@ -302,98 +582,292 @@ public class ContactManager extends Application {
     private void deleteContact() {
         //get name as input from nameField
         String name = nameField.getText().trim();
+        if (name.isEmpty() && !contactTable.getSelectionModel().getSelectedItems().isEmpty()) {
+            deleteSelected();
+            return;
+        }
         if (name.isEmpty()) {
             //-------------------------enter name
-            showError("Please enter the name of the contact to delete.");
+            showError("Please enter the name of the contact to delete, or select the contacts to delete in the table.");
             return;
         }
-        if (!contacts.containsKey(name)) {
-            //-------------------------enter existing name
-            showError("Contact not found.");
+        //-----------------------------remove contact
+        //removes this contact from the store using name as key (and from the phone/email indexes)
+        ContactStore.Status status;
+        try {
+            status = store.delete(name);
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
             return;
         }
-        //-----------------------------remove contact
-        Contact contact = contacts.get(name);//retrieve the contact from the contacts map based on the given name
-        contacts.remove(name);//removes this contact from the treemap using name as key
-        //update the displayed contacts in the contactTable
-        contactList.setAll(contacts.values());//sets the content of contactList to the contacts in the treemap
+        if (!succeeded(status)) {
+            return;
+        }
+        //the store's listener takes the row out of contactList
+        contactTable.setItems(contactList);
         //---------------------clear all fields after deleting
         nameField.clear();
         phoneField.clear();
         emailField.clear();
     }
+    private void deleteSelected() {
+        //all selected rows in one transaction- one journal write, one table change, one step to undo
+        List<Contact> selected = new ArrayList<>(contactTable.getSelectionModel().getSelectedItems());
+        if (selected.size() > 1) {
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete " + selected.size() + " contacts?", ButtonType.OK, ButtonType.CANCEL);
+            confirm.setHeaderText(null);
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+                return;
+            }
+        }
+        ContactStore.Transaction transaction = store.transaction();
+        for (Contact contact : selected) {
+            transaction.delete(contact.getName());
+        }
+        ContactStore.Status[] statuses;
+        try {
+            statuses = transaction.commit();
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
+            return;
+        }
+        for (ContactStore.Status status : statuses) {
+            if (!succeeded(status)) {
+                return;//a contact was deleted meanwhile (e.g. the table shows old search results)- nothing was changed
+            }
+        }
+        contactTable.getSelectionModel().clearSelection();
+        contactTable.setItems(contactList);
+    }
+    //============================================= UNDO / REDO ===========================================================================================
+    private void undo() {
+        //takes back the last add, update, delete or multi-row delete- the store refuses if it would clash with a later edit
+        if (!store.canUndo()) {
+            showInfo("Nothing to undo.");
+            return;
+        }
+        try {
+            succeeded(store.undo());
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
+        }
+    }
+    private void redo() {
+        if (!store.canRedo()) {
+            showInfo("Nothing to redo.");
+            return;
+        }
+        try {
+            succeeded(store.redo());
+        } catch (IOException e) {
+            showError("Error encountered while performing input/output operations");
+        }
+    }
+    //----------------------------------- result of a change ------------------------
+    private boolean succeeded(ContactStore.Status status) {
+        //shows an error for anything but success
+        switch (status) {
+            case DUPLICATE_NAME:
+                showError("Contact with the same name already exists.");
+                return false;
+            case DUPLICATE_PHONE:
+                //currently entered phone matches w some other contact's phone
+                showError("Contact with the same phone number already exists.");
+                return false;
+            case DUPLICATE_EMAIL:
+                //currently entered email matches w some other contact's email
+                showError("Contact with the same email address already exists.");
+                return false;
+            case NOT_FOUND:
+                //---------------------enter existing name
+                //if name is not present in the store, it cant be updated or deleted
+                showError("Contact not found.");
+                return false;
+            default:
+                return true;
+        }
+    }
+    //============================================= IMPORT / EXPORT CONTACTS ===========================================================================================
+    private void importContacts(Stage stage) {
+        //bulk import from a csv or vCard file- every row goes through the same checks as the Add button
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Contacts");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Contacts (*.csv, *.vcf)", "*.csv", "*.vcf"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) {
+            return;//cancelled
+        }
+        Path path = file.toPath();
+        Task<ContactImporter.Report> task = new Task<ContactImporter.Report>() {
+            private ContactListModel.Prebuilt rows;
+            @Override
+            protected ContactImporter.Report call() throws IOException {
+                updateMessage("Importing " + file.getName() + "...");
+                try {
+                    return ContactImporter.importFile(store, validator, path, fraction -> updateProgress(fraction, 1));
+                } finally {
+                    //the import does not report every contact to the listener- the table is rebuilt once at the end
+                    //(also after a failure, which can stop an import halfway through)
+                    rows = ContactListModel.prebuild(store.rows());
+                }
+            }
+            @Override
+            protected void succeeded() {
+                resetTable(rows);
+                buttonBox.setDisable(false);
+                ContactImporter.Report report = getValue();
+                StringBuilder message = new StringBuilder(report.imported + " of " + report.rows + " contact(s) imported.");
+                if (!report.rejected.isEmpty()) {
+                    //------------------the dialog lists the first few rejected rows, the full list goes to a file next to the import
+                    Path reportFile = path.resolveSibling(file.getName() + ".rejected.txt");
+                    message.append("\n").append(report.rejected.size()).append(" row(s) were not imported:");
+                    for (int i = 0; i < report.rejected.size() && i < 10; i++) {
+                        message.append("\n").append(report.rejected.get(i));
+                    }
+                    if (report.rejected.size() > 10) {
+                        message.append("\n...");
+                    }
+                    try {
+                        report.write(reportFile);
+                        message.append("\nAll rejected rows are listed in ").append(reportFile);
+                    } catch (IOException e) {
+                        message.append("\nThe list of rejected rows could not be saved.");
+                    }
+                }
+                showInfo(message.toString());
+            }
+            @Override
+            protected void failed() {
+                if (rows != null) {
+                    resetTable(rows);
+                }
+                buttonBox.setDisable(false);
+                showError("Error encountered while performing input/output operations");
+            }
+        };
+        buttonBox.setDisable(true);//no edits while the import runs
+        runInBackground(task);
+    }
+    private void exportContacts(Stage stage) {
+        //writes all contacts to a csv or vCard file of the user's choice
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Contacts");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("vCard (*.vcf)", "*.vcf"));
+        File file = chooser.showSaveDialog(stage);
+        if (file == null) {
+            return;
+        }
+        Task<Integer> task = new Task<Integer>() {
+            @Override
+            protected Integer call() throws IOException {
+                updateMessage("Exporting to " + file.getName() + "...");
+                updateProgress(-1, 1);//streamed, so there is no fraction to show
+                ContactMetrics metrics = store.metrics();
+                long start = System.nanoTime();
+                try {
+                    int count = ContactExporter.export(file.toPath(), store.values());
+                    metrics.record(ContactMetrics.Operation.EXPORT, start);
+                    metrics.count("export.rows", count);
+                    return count;
+                } catch (IOException | RuntimeException e) {
+                    metrics.failed(ContactMetrics.Operation.EXPORT, start);
+                    throw e;
+                }
+            }
+        };
+        task.setOnSucceeded(e -> showInfo(task.getValue() + " contact(s) exported to " + file));
+        task.setOnFailed(e -> showError("Error encountered while performing input/output operations"));
+        runInBackground(task);
+    }
     //============================================= SEARCH CONTACTS ===========================================================================================
     private void searchContacts() {
         String query = searchField.getText().trim();
-        ////results=list of objects of type contact
-        List<Contact> results;//to store the search results
         if (query.isEmpty()) {
-            //-----------------enter name/phone number
-            showError("Please enter a name or phone number to search.");
+            //-----------------enter name/phone number/email
+            showError("Please enter a name, phone number or email to search.");
             return;
         }
-        //--------------------phone search or name search
-        if (Character.isDigit(query.charAt(0)) && query.length() == 10) {
-            //if query is a number, invoke seach by phone method
-            results = searchByPhone(query);
-        } else {
-            //if query is non-digit, invoke search by name method
-            results = searchByName(query);
-        }
-        //-------------------- show results
-        if (results.isEmpty()) {
-            //if the methods return no result value, no contact was found
-            showError("No matching contacts found.");
-        } else {
-            //else we update the observable list connected to the tableview with the matching contacts stored in result
-            contactList.setAll(results);
-        }
+        searchDelay.stop();//the button searches right away
+        startSearch(query, true);
     }
-    //----------------------------------- SEARCH by name ------------------------
-    private List<Contact> searchByName(String name) {
-        //return list of contacts from func to which the query has been passed
-        List<Contact> results = new ArrayList<>();//creates an array to store contacts that match search criteria
-        String lowercaseName = name.toLowerCase();//convert entered query to do case insensitive search
-        for (Contact contact : contacts.values()) {//for each contact in map's values
-            //contact.getName()-retrieves name of contact object
-            //.toLowerCase()-converts name to all lowercase
-            //.contains(lowercaseName)-checks if this lowercase name contains the lowercase search query
-            //returns true- if it does contain, meaning there is a match
-            if (contact.getName().toLowerCase().contains(lowercaseName)) {
-                results.add(contact);//add method to add an element to list
-            }
+    //----------------------------------- SEARCH all fields ------------------------
+    private void startSearch(String query, boolean reportNoMatch) {
+        //runs the search on a background thread- a newer query cancels the one still running
+        //reportNoMatch- the Search button says when nothing matched, typing does not pop up dialogs
+        if (searchTask != null) {
+            searchTask.cancel();
         }
-        return results;
-    }
-    //----------------------------------- SEARCH by number ----------------------
-    private List<Contact> searchByPhone(String phoneNumber) {
-        //return list of contacts from func to which the query has been passed
-        List<Contact> results = new ArrayList<>();
-        for (Contact contact : contacts.values()) {//for each contact in map's values
-            //retrieve phone of contact object and check if it matches with query phoneno
-            if (contact.getPhone().contains(phoneNumber)) {
-                results.add(contact);//add method to add an element to list
-            }
+        if (query.isEmpty()) {
+            showAllContacts();//search box cleared while typing
+            return;
         }
-        return results;
+        ////results=list of objects of type contact
+        ObservableList<Contact> results = FXCollections.observableArrayList();//to store the search results
+        boolean fuzzy = fuzzyBox.isSelected();
+        Task<List<Contact>> task = new Task<List<Contact>>() {
+            @Override
+            protected List<Contact> call() {
+                updateMessage("Searching...");
+                //--------------------one search over every field
+                //the query is matched against name, phone and email alike, so no need to guess which one it is
+                //fuzzy mode ranks names by how close they come instead- "jon smyth" finds "John Smith", best match on top
+                List<Contact> found = fuzzy ? store.fuzzySearch(query, FUZZY_RESULTS) : store.search(query);
+                //only contacts sharing the query's trigrams (or, fuzzy, words near the query's words) are looked at
+                //-------------------- show results in batches
+                for (int from = 0; from < found.size() && !isCancelled(); from += SEARCH_BATCH) {
+                    List<Contact> batch = found.subList(from, Math.min(from + SEARCH_BATCH, found.size()));
+                    Platform.runLater(() -> {
+                        if (!isCancelled()) {//a newer query may have taken over
+                            results.addAll(batch);
+                        }
+                    });
+                    updateProgress(Math.min(from + SEARCH_BATCH, found.size()), found.size());
+                }
+                return found;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (task.getValue().isEmpty() && reportNoMatch) {
+                //if the search returns no result value, no contact was found
+                showError("No matching contacts found.");
+            }
+        });
+        //the tableview shows a separate list with just the matching contacts, filled in as batches arrive
+        //contactList itself keeps all contacts, so "Show All" does not need to rebuild anything
+        contactTable.setItems(results);
+        searchTask = task;
+        runInBackground(task);
     }
     //============================================= DISPLAY ALL CONTACTS ===========================================================================================
+    private void resetTable(ContactListModel.Prebuilt rows) {
+        //replaces every row of the table in one go- timed, as the one UI step that grows with the number of contacts
+        long start = System.nanoTime();
+        contactList.reset(rows);
+        store.metrics().record(ContactMetrics.Operation.TABLE_RESET, start);
+    }
     private void showAllContacts() {
-        contactList.setAll(contacts.values());//sets the content of contactList to the contacts in the treemap
+        if (searchTask != null) {
+            searchTask.cancel();//stop a search still filling in results
+        }
+        contactTable.setItems(contactList);//switch the table back to the list of all contacts- nothing is copied
     }
     //============================================= VALIDATION ===========================================================================================
     private boolean isValidPhoneNumber(String phone) {//returns bool value
-        //"\\d" as a regular expression matches any digit
-        //{10} makes sure that there are exactly 10 consecutive digits for validation
-        return phone.matches("\\d{10}");
+        //the rules live in ContactValidator so the bulk import uses the same ones
+        //hand-written checks- no regular expression is compiled or matched per call
+        return validator.isValidPhoneNumber(phone);
     }
     private boolean isValidEmail(String email) {
-        //returns bool value after checking if email string has '@' and '.'
-        boolean validemail= email.contains("@")&&email.contains(".");
-        return validemail;
+        //real address syntax (local part, '@', domain labels) instead of only looking for '@' and '.'
+        return validator.isValidEmail(email);
     }
     //-------------------------------------- ERRORS DIALOG BOX--------------------
     private void showError(String message) {//pass the error msg to be displayed
+        store.metrics().count("ui.error dialogs", 1);//failures that only the user saw are counted too
         Alert alert = new Alert(Alert.AlertType.ERROR);//alert class(dialog box to display msgs) object created of alert type error
         //with alert of type error, we get a default error icon and an OK button
         alert.setTitle("Error");
@@ -402,43 +876,12 @@ public class ContactManager extends Application {
         //alert.show();xxx
         alert.showAndWait();//dialog box will show up and wait for our response (either ok or close it) and THEN continue the code
     }
-    //============================================= CONTACTS CLASS ===========================================================================================
-    class Contact {//blueprint of contact objects
-        //each contact has a name, phone and email attribute of type string
-        private String name;
-        private String phone;
-        private String email;
-        public Contact(String name, String phone, String email) {
-            //constructor for contacts
-            this.name = name;
-            this.phone = phone;
-            this.email = email;
-        }
-        //to create JavaFX StringProperty objects to be used  with JavaFX's ObservableList--- to bind UI components- TableView and ObservableList
-        //we create a StringProperty for each property of a Contact
-        //to ensure that any changes to the StringProperty are immediately reflected in the table
-        //SimpleStringProperty is basically used to create observable properties
-        public StringProperty nameProperty() {
-            return new SimpleStringProperty(name);
-        }//create and return a new StringProperty based on the name property of Contact
-
-        public StringProperty phoneProperty() {
-            return new SimpleStringProperty(phone);
-        }
-
-        public StringProperty emailProperty() {
-            return new SimpleStringProperty(email);
-        }
-        //3 getter methods which upon calling, return the value of that particular attribute
-        //for retrieval of that attribute's data from a given contact object
-        public String getName() {
-            return name;
-        }
-        public String getPhone() {
-            return phone;
-        }
-        public String getEmail() {
-            return email;
-        }
+    private void showInfo(String message) {
+        //same dialog with an information icon- for results that are not errors (import/export summaries)
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Information");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
     }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+//the numbers are published as MBeans, readable from jconsole/VisualVM or any JMX client
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class ContactMetrics {
+    //where the time goes: how often each operation ran, how often it failed and how long it took, plus counters
+    //(rows imported, rows skipped, error dialogs...) and gauges read on demand (contacts, file sizes)
+    //always on- timing an operation costs two System.nanoTime() calls and one histogram update, tens of nanoseconds
+    //==========================INITIALIZE===============================================
+    public enum Operation {
+        LOAD, SAVE, JOURNAL_FLUSH, COMPACT, SNAPSHOT_WRITE,
+        ADD, UPDATE, DELETE, ADD_ALL, TRANSACTION, UNDO, REDO,
+        SEARCH, FUZZY_SEARCH, COMPLETE,
+        IMPORT, EXPORT, TABLE_RESET;
+        public String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+    }
+    private final EnumMap<Operation, Stats> operations = new EnumMap<>(Operation.class);
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    //sorted by name, so reports list them in the same order every time
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final List<String> gaugeOrder = new ArrayList<>();//gauges in the order they were added- guarded by gauges
+    //----------------------------------- constructor ------------------------
+    public ContactMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new Stats());
+        }
+    }
+    //============================================= OPERATIONS ===========================================================================================
+    //the caller takes the start time and reports how it ended:
+    //  long start = System.nanoTime();
+    //  ...
+    //  metrics.record(Operation.ADD, start);
+    public interface OperationMXBean {
+        long getCount();
+        long getFailures();//ended with an exception
+        long getRejected();//refused for a reason the user is told about (duplicate, not found)
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+        void reset();
+    }
+    public static class Stats implements OperationMXBean {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+        public long getCount() {
+            return latency.getCount();
+        }
+        public long getFailures() {
+            return failures.sum();
+        }
+        public long getRejected() {
+            return rejected.sum();
+        }
+        public double getMeanMicros() {
+            return latency.getMean() / 1000;
+        }
+        public double getP50Micros() {
+            return latency.getPercentile(50) / 1000.0;
+        }
+        public double getP99Micros() {
+            return latency.getPercentile(99) / 1000.0;
+        }
+        public double getP999Micros() {
+            return latency.getPercentile(99.9) / 1000.0;
+        }
+        public double getMaxMicros() {
+            return latency.getMax() / 1000.0;
+        }
+        public void reset() {
+            latency.reset();
+            failures.reset();
+            rejected.reset();
+        }
+    }
+    public void record(Operation operation, long startNanos) {
+        //operation finished normally
+        operations.get(operation).latency.record(System.nanoTime() - startNanos);
+    }
+    public void failed(Operation operation, long startNanos) {
+        //operation threw- its time still counts
+        Stats stats = operations.get(operation);
+        stats.latency.record(System.nanoTime() - startNanos);
+        stats.failures.increment();
+    }
+    public void rejected(Operation operation, long startNanos) {
+        //operation ran but changed nothing (duplicate, not found)
+        Stats stats = operations.get(operation);
+        stats.latency.record(System.nanoTime() - startNanos);
+        stats.rejected.increment();
+    }
+    public Stats get(Operation operation) {
+        return operations.get(operation);
+    }
+    //============================================= COUNTERS AND GAUGES ===========================================================================================
+    public void count(String counter, long delta) {
+        counters.computeIfAbsent(counter, c -> new LongAdder()).add(delta);
+    }
+    public void gauge(String name, LongSupplier value) {
+        //value is read whenever the gauges are- it may be called from any thread
+        synchronized (gauges) {
+            if (gauges.put(name, value) == null) {
+                gaugeOrder.add(name);
+            }
+        }
+    }
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        return values;
+    }
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        List<String> names;
+        synchronized (gauges) {
+            names = new ArrayList<>(gaugeOrder);
+        }
+        for (String name : names) {
+            values.put(name, gauges.get(name).getAsLong());
+        }
+        return values;
+    }
+    //============================================= REPORT ===========================================================================================
+    public String report() {
+        //plain text summary, one line per operation that ran- for the stats panel
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-15s %8s %6s %9s %9s %9s %9s%n", "operation", "count", "fail", "mean", "p50", "p99", "max"));
+        for (Operation operation : Operation.values()) {
+            Stats stats = operations.get(operation);
+            long count = stats.getCount();
+            if (count == 0) {
+                continue;
+            }
+            LatencyHistogram latency = stats.latency;
+            out.append(String.format("%-15s %8d %6d %9s %9s %9s %9s%n", operation.label(), count, stats.getFailures() + stats.getRejected(),
+                    duration((long) latency.getMean()), duration(latency.getPercentile(50)), duration(latency.getPercentile(99)), duration(latency.getMax())));
+        }
+        out.append(System.lineSeparator());
+        for (Map.Entry<String, Long> gauge : getGauges().entrySet()) {
+            out.append(String.format("%-24s %12d%n", gauge.getKey(), gauge.getValue()));
+        }
+        for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+            out.append(String.format("%-24s %12d%n", counter.getKey(), counter.getValue()));
+        }
+        return out.toString();
+    }
+    static String duration(long nanos) {
+        //short human readable duration- 850ns, 12.3us, 4.56ms, 1.20s
+        if (nanos < 1000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1000000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1000000000) {
+            return String.format("%.2fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+    //============================================= JMX ===========================================================================================
+    public interface StoreMXBean {
+        Map<String, Long> getGauges();
+        Map<String, Long> getCounters();
+    }
+    public void registerMBeans(String domain) throws JMException {
+        //<domain>:type=Store with the gauges and counters, and <domain>:type=Operation,name=<operation> for each operation
+        //registering again (a second window in the same JVM) replaces the earlier beans
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, new ObjectName(domain + ":type=Store"), new StoreMXBean() {
+            public Map<String, Long> getGauges() {
+                return ContactMetrics.this.getGauges();
+            }
+            public Map<String, Long> getCounters() {
+                return ContactMetrics.this.getCounters();
+            }
+        });
+        for (Operation operation : Operation.values()) {
+            register(server, new ObjectName(domain + ":type=Operation,name=" + operation.label().replace(' ', '-')), operations.get(operation));
+        }
+    }
+    private static void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+
+public interface ContactRows {
+    //the contacts a ContactStore holds and the lookups it needs: by name, phone and email, in name order, by name prefix and by substring
+    //MapRows keeps Contact objects in concurrent maps (fast, about 900 bytes a contact with the store's other indexes);
+    //ContactTable packs them into bytes for address books of millions and makes Contact objects only for the rows asked for
+    //reads may come from any thread; put/remove are called with the store's locks for the name, phone and email held
+    //==========================INITIALIZE===============================================
+    Comparator<String> FOLDED_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+    //names ignoring case, with case only breaking ties- "anna", "Anna" and "ANNA" stay three different keys next to each other
+    interface Builder {
+        //fills a new set of rows while loading- contacts come in name order, without duplicate names
+        void add(Contact contact);
+        ContactRows build();
+    }
+    //============================================= READ ===========================================================================================
+    Contact get(String name);
+    Contact getByPhone(String phone);
+    Contact getByEmail(String email);
+    int size();
+    Collection<Contact> values();
+    //all contacts in name order- never throws ConcurrentModificationException
+    Collection<Contact> snapshot();
+    //all contacts in name order as they are now, unaffected by later changes- for writing the files in the background
+    List<Contact> search(String query);
+    //contacts whose name, phone or email contains query (case insensitive), in name order
+    List<Contact> startingWith(String prefix, boolean ignoreCase, int limit);
+    //up to limit contacts whose names start with prefix, in name order
+    //============================================= WRITE ===========================================================================================
+    Contact put(Contact old, Contact contact);
+    //adds contact, or replaces old (same name)- returns the contact as it is now stored, which is what listeners get
+    void remove(Contact old);
+}
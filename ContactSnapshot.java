@@ -0,0 +1,125 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.*;
+//buffered stream used to write the snapshot
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+//checksum over the whole file so a damaged snapshot is never loaded
+
+public class ContactSnapshot {
+    //==========================INITIALIZE===============================================
+    //file layout (all ints big-endian):
+    //  [magic "CMSB"][int version][int count]
+    //  count x ([int length][UTF-8 name][int length][UTF-8 phone][int length][UTF-8 email]), sorted by name
+    //  [int crc32 of everything before it]
+    private static final int MAGIC = 0x434D5342;//"CMSB"
+    private static final int VERSION = 1;
+    //============================================= WRITE ===========================================================================================
+    public static void write(Path file, Collection<Contact> contacts) throws IOException {
+        //contacts must already be in name order (the treemap's values are)- loading relies on it instead of sorting
+        //written to a temporary file and renamed over the target, like the csv snapshot
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream stream = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedStream(stream, crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(contacts.size());
+            for (Contact contact : contacts) {
+                writeField(out, contact.getName());
+                writeField(out, contact.getPhone());
+                writeField(out, contact.getEmail());
+            }
+            out.flush();
+            new DataOutputStream(stream).writeInt((int) crc.getValue());//the checksum itself is not checksummed
+            stream.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    private static void writeField(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    //----------------------------------- stream that feeds the checksum ------------------------
+    private static class CheckedStream extends FilterOutputStream {
+        private final CRC32 crc;
+        CheckedStream(OutputStream out, CRC32 crc) {
+            super(out);
+            this.crc = crc;
+        }
+        @Override
+        public void write(int b) throws IOException {
+            crc.update(b);
+            out.write(b);
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            out.write(b, off, len);
+        }
+    }
+    //============================================= LOAD ===========================================================================================
+    public static TreeMap<String, Contact> load(Path file) throws IOException {
+        //throws IOException if the file is damaged, of another version, or not sorted- the caller falls back to the csv
+        //read into a heap buffer, not memory-mapped- a mapping would keep the file open until garbage collection, and on
+        //Windows compaction could not rename a new snapshot over it until then
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16 || size > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported snapshot size: " + size);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Snapshot got shorter while it was read");
+                }
+            }
+            buffer.flip();
+        }
+        //--------------------check the checksum before trusting any length in the file
+        int body = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(body);
+        crc.update(content);
+        if ((int) crc.getValue() != buffer.getInt(body)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " contact snapshot");
+        }
+        int count = buffer.getInt();
+        //--------------------decode the records
+        List<Contact> rows = new ArrayList<>(count);
+        byte[] scratch = new byte[128];
+        String previous = null;
+        for (int i = 0; i < count; i++) {
+            String name = readField(buffer, scratch, body);
+            String phone = readField(buffer, scratch, body);
+            String email = readField(buffer, scratch, body);
+            if (previous != null && previous.compareTo(name) >= 0) {
+                throw new IOException("Snapshot is not sorted by name");
+            }
+            previous = name;
+            rows.add(new Contact(name, phone, email));
+        }
+        //already sorted- the treemap is built in one pass, no re-sort
+        return SortedContacts.treeMap(rows);
+    }
+    private static String readField(ByteBuffer buffer, byte[] scratch, int body) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > body - buffer.position()) {
+            throw new IOException("Snapshot record out of bounds");
+        }
+        if (length > scratch.length) {
+            scratch = new byte[length];
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,848 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.IOException;
+// for exceptions thrown when an I/O operation fails
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+//writers lock only the names/phones/emails they touch
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+public class ContactStore {
+    //all contacts, their indexes and their files, usable from any thread and without any UI
+    //reads (get, values, search, size) are lock-free with MAPS storage, and hold a ContactTable's read lock only briefly with COMPACT
+    //writes lock the stripes of every name, phone and email they touch, so two writers only wait for each other
+    //when they could clash on a duplicate- uniqueness of all three fields holds under any number of writers
+    //==========================INITIALIZE===============================================
+    public enum Status {
+        OK, DUPLICATE_NAME, DUPLICATE_PHONE, DUPLICATE_EMAIL, NOT_FOUND
+    }
+    //outcome of add/update/delete- the UI turns it into a message
+    public enum Storage {
+        MAPS, COMPACT
+    }
+    //how the contacts are held: MAPS as objects in concurrent maps (MapRows), COMPACT packed into bytes (ContactTable)-
+    //COMPACT takes under a tenth of the memory for millions of contacts (under half once phone completion and fuzzy search
+    //have built their indexes), at the price of slower substring searches
+    public static class Change {
+        //one contact before and after an edit- before is null for an add, after is null for a delete
+        private final String name;
+        private final Contact before;
+        private final Contact after;
+        Change(String name, Contact before, Contact after) {
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+        public String getName() {
+            return name;
+        }
+        public Contact getBefore() {
+            return before;
+        }
+        public Contact getAfter() {
+            return after;
+        }
+    }
+    private static final int COMPLETION_CACHE = 64;
+    //completions kept for the most recently typed prefixes
+    private static final int HISTORY = 100;
+    private static final int HISTORY_CHANGES = 100000;
+    //edits kept for undo, and contacts changed by them at most- the oldest edits are forgotten first
+    private static final int STRIPES = 64;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    //writers hold the read side (many at once); compaction holds the write side for the moment the journal moves to a new
+    //generation, so that every change is either applied before it or journaled in the new file, never lost in between
+    //(and so does building a lazy index, see fuzzyIndex())
+    private final Path csvFile;
+    private final Path binaryFile;//null when the binary snapshot is not used
+    private final ContactJournal journal;
+    private final Storage storage;
+    private volatile ContactRows rows;
+    //the contacts, by name, phone and email, in name order and by substring
+    private volatile PhoneTrie phoneTrie;
+    //phone numbers by their digits, for phone prefixes
+    private volatile FuzzyNameIndex fuzzyIndex;
+    //typo tolerant, ranked index over the words of the names
+    //with COMPACT storage both stay null until the first phone completion or fuzzy search- together they take about
+    //340 bytes a contact, four times the rows themselves, and many address books never use them; edits skip a null one
+    private volatile boolean loaded;
+    //true once the files were read successfully- only then are edits accepted and the files rewritten by the journal
+    private final List<Consumer<List<Change>>> listeners = new CopyOnWriteArrayList<>();
+    //told about every edit- one change for add/update/delete, all of a transaction's changes in one call
+    private final Deque<List<Change>> undoHistory = new ArrayDeque<>();
+    private final Deque<List<Change>> redoHistory = new ArrayDeque<>();
+    private int historyChanges;//contacts changed by the edits in both
+    //edits that can be undone (newest last) and undone edits that can be redone- guarded by undoHistory
+    private final Map<String, Completions> recentCompletions = new LinkedHashMap<String, Completions>(COMPLETION_CACHE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Completions> eldest) {
+            return size() > COMPLETION_CACHE;//least recently used prefix goes first
+        }
+    };
+    private final AtomicLong version = new AtomicLong();
+    //bumped by every change- cached completions from an older version are not used
+    private final ContactMetrics metrics = new ContactMetrics();
+    //counts and times every operation- also handed to the journal and used by the UI for its own steps
+    //----------------------------------- constructor ------------------------
+    public ContactStore(Path csvFile, Path binaryFile) {
+        this(csvFile, binaryFile, Storage.MAPS);
+    }
+    public ContactStore(Path csvFile, Path binaryFile, Storage storage) {
+        this.csvFile = csvFile;
+        this.binaryFile = binaryFile;
+        this.journal = new ContactJournal(csvFile, binaryFile, metrics);
+        this.storage = storage;
+        this.rows = builder(0).build();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        metrics.gauge("contacts", this::size);
+        metrics.gauge("csv file bytes", () -> fileSize(csvFile));
+        metrics.gauge("snapshot file bytes", () -> binaryFile == null ? 0 : fileSize(binaryFile));
+        metrics.gauge("journal bytes", journal::size);
+        if (storage == Storage.COMPACT) {
+            metrics.gauge("row storage bytes", () -> ((ContactTable) rows).bytes());
+            metrics.gauge("row storage dead bytes", () -> ((ContactTable) rows).deadBytes());
+        }
+    }
+    public Storage storage() {
+        return storage;
+    }
+    private ContactRows.Builder builder(int expected) {
+        return storage == Storage.COMPACT ? ContactTable.builder(expected) : MapRows.builder(expected);
+    }
+    public ContactMetrics metrics() {
+        return metrics;
+    }
+    private static long fileSize(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    //============================================= OPEN / LOAD / CLOSE ===========================================================================================
+    public void open() throws IOException {
+        //starts the journal- call before load() so edits are kept even if loading fails
+        journal.open();
+    }
+    public List<String> load(DoubleConsumer progress) throws IOException {
+        //reads the binary snapshot or the csv, replays the journal and builds the indexes
+        //progress gets the fraction done (0 to 1) while indexing; returns the csv rows that were skipped
+        return timed(ContactMetrics.Operation.LOAD, () -> loadNow(progress));
+    }
+    private List<String> loadNow(DoubleConsumer progress) throws IOException {
+        TreeMap<String, Contact> loadedContacts = readBinarySnapshot();
+        boolean fromBinary = loadedContacts != null;
+        List<String> errors = Collections.emptyList();
+        if (loadedContacts == null) {
+            loadedContacts = new TreeMap<>();
+            if (Files.exists(csvFile)) {//no file yet- start empty
+                //CsvContactLoader reads the file in large pieces, parses them in parallel and hands back an already sorted treemap
+                CsvContactLoader.Result result = CsvContactLoader.load(csvFile);
+                loadedContacts = result.contacts;
+                errors = result.errors;
+            }
+        }
+        metrics.count("load.rows", loadedContacts.size());
+        metrics.count("load.skipped rows", errors.size());
+        //------------------replay changes journaled after the file was last written
+        TreeMap<String, Contact> replayInto = loadedContacts;
+        int replayed = journal.replay((name, contact) -> {
+            if (contact != null) {
+                replayInto.put(name, contact);
+            } else {
+                replayInto.remove(name);
+            }
+        });
+        metrics.count("load.replayed changes", replayed);
+        //------------------build the indexes
+        int total = loadedContacts.size();
+        ContactRows.Builder newRows = builder(total);
+        boolean eager = storage == Storage.MAPS;
+        FuzzyNameIndex newFuzzy = eager ? new FuzzyNameIndex() : null;
+        PhoneTrie newTrie = eager ? new PhoneTrie() : null;
+        int done = 0;
+        for (Contact contact : loadedContacts.values()) {
+            newRows.add(contact);
+            if (eager) {
+                newFuzzy.add(contact.getName(), contact.getName());
+                newTrie.add(contact.getPhone());
+            }
+            if (++done % 10000 == 0) {
+                progress.accept((double) done / total);
+            }
+        }
+        replayInto.clear();//with COMPACT storage the Contact objects can go before the table is sorted
+        ContactRows built = newRows.build();
+        //------------------swap everything in at once
+        commitLock.writeLock().lock();
+        try {
+            rows = built;
+            phoneTrie = newTrie;
+            fuzzyIndex = newFuzzy;
+            loaded = true;
+            version.incrementAndGet();
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        if (replayed > 0 || (binaryFile != null && !fromBinary && total > 0)) {
+            //fold the replayed changes into the file so the next start has nothing to replay
+            //(and write the binary snapshot if the csv had to be parsed this time)
+            compact();
+        }
+        return errors;
+    }
+    private TreeMap<String, Contact> readBinarySnapshot() {
+        //returns null when the csv should be read instead- snapshot turned off, missing, older than the csv or damaged
+        if (binaryFile == null) {
+            return null;
+        }
+        try {
+            if (!Files.exists(binaryFile)) {
+                return null;
+            }
+            if (Files.exists(csvFile) && Files.getLastModifiedTime(binaryFile).compareTo(Files.getLastModifiedTime(csvFile)) < 0) {
+                return null;//the csv was changed after the snapshot (e.g. edited by hand)- it wins
+            }
+            return ContactSnapshot.load(binaryFile);
+        } catch (IOException e) {
+            return null;//damaged snapshot- the csv is still there, and a new snapshot gets written after loading it
+        }
+    }
+    public void close() throws IOException {
+        //every change is already in the journal- closing only flushes its last batch, the csv is not rewritten
+        timed(ContactMetrics.Operation.SAVE, () -> {
+            journal.close();
+            return null;
+        });
+    }
+    //============================================= READ ===========================================================================================
+    public Contact get(String name) {
+        return rows.get(name);
+    }
+    public boolean contains(String name) {
+        return rows.get(name) != null;
+    }
+    public int size() {
+        return rows.size();
+    }
+    public Collection<Contact> values() {
+        //all contacts in name order- never throws ConcurrentModificationException
+        return rows.values();
+    }
+    public ContactRows rows() {
+        //what the contacts are held in- the UI list keeps COMPACT row numbers instead of Contact objects
+        return rows;
+    }
+    public List<Contact> search(String query) {
+        //contacts whose name, phone or email contains the query (case insensitive), in name order
+        long start = System.nanoTime();
+        List<Contact> results = rows.search(query);
+        String digits = ContactValidator.phoneQuery(query);
+        if (digits != null && !digits.equals(query)) {
+            //phones are stored without separators- "555-1234" is looked for as "5551234" too
+            results = merge(results, rows.search(digits));
+        }
+        metrics.record(ContactMetrics.Operation.SEARCH, start);
+        return results;
+    }
+    private static List<Contact> merge(List<Contact> first, List<Contact> second) {
+        //two result lists in name order as one, every contact once
+        List<Contact> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            int order = i == first.size() ? 1 : j == second.size() ? -1 : first.get(i).getName().compareTo(second.get(j).getName());
+            if (order <= 0) {
+                merged.add(first.get(i++));
+                if (order == 0) {
+                    j++;
+                }
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+    public List<Contact> fuzzySearch(String query, int limit) {
+        //up to limit contacts whose names come closest to the query, best first- tolerates typos, missing letters at the
+        //end of a word and names that sound alike ("jon smyth" finds "John Smith")
+        long start = System.nanoTime();
+        ContactRows current = rows;
+        List<Contact> results = new ArrayList<>();
+        for (String name : fuzzyIndex().search(query, limit)) {
+            Contact contact = current.get(name);
+            if (contact != null) {
+                results.add(contact);
+            }
+        }
+        metrics.record(ContactMetrics.Operation.FUZZY_SEARCH, start);
+        return results;
+    }
+    //----------------------------------- autocomplete ------------------------
+    //completions walk the sorted maps (or the phone trie) from the first key with the prefix and stop after limit contacts,
+    //so they cost O(log n + limit) however many contacts there are
+    public List<Contact> completeName(String prefix, int limit) {
+        //up to limit contacts whose names start with prefix, in name order
+        //case insensitive, unless the prefix has a capital letter in it- "jo" finds "John" and "joanna", "Jo" only "John"
+        boolean matchCase = !prefix.equals(prefix.toLowerCase(Locale.ROOT));
+        return cached('n', prefix, limit, () -> rows.startingWith(prefix, !matchCase, limit));
+    }
+    public List<Contact> completePhone(String prefix, int limit) {
+        //up to limit contacts whose phone digits start with the digits of prefix ("555 12", "(555) 12")
+        return cached('p', prefix, limit, () -> {
+            ContactRows current = rows;
+            List<Contact> results = new ArrayList<>();
+            for (String phone : phoneTrie().complete(prefix, limit)) {
+                Contact contact = current.getByPhone(phone);
+                if (contact != null) {
+                    results.add(contact);
+                }
+            }
+            return results;
+        });
+    }
+    //----------------------------------- lazy indexes ------------------------
+    private FuzzyNameIndex fuzzyIndex() {
+        FuzzyNameIndex index = fuzzyIndex;
+        if (index != null) {
+            return index;
+        }
+        //built under the write side of commitLock, so that no edit slips in between reading the rows and publishing the index-
+        //writers wait for it once (a second or two at 1M contacts), readers of the rows do not
+        commitLock.writeLock().lock();
+        try {
+            if (fuzzyIndex == null) {
+                FuzzyNameIndex built = new FuzzyNameIndex();
+                for (Contact contact : rows.values()) {
+                    built.add(contact.getName(), contact.getName());
+                }
+                fuzzyIndex = built;
+            }
+            return fuzzyIndex;
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+    private PhoneTrie phoneTrie() {
+        PhoneTrie trie = phoneTrie;
+        if (trie != null) {
+            return trie;
+        }
+        commitLock.writeLock().lock();//as for fuzzyIndex()
+        try {
+            if (phoneTrie == null) {
+                PhoneTrie built = new PhoneTrie();
+                for (Contact contact : rows.values()) {
+                    built.add(contact.getPhone());
+                }
+                phoneTrie = built;
+            }
+            return phoneTrie;
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+    private static class Completions {
+        final long version;
+        final int limit;
+        final List<Contact> contacts;
+        Completions(long version, int limit, List<Contact> contacts) {
+            this.version = version;
+            this.limit = limit;
+            this.contacts = contacts;
+        }
+    }
+    private List<Contact> cached(char kind, String prefix, int limit, Supplier<List<Contact>> lookup) {
+        //typing and deleting back over a prefix asks for the same completions again- they are kept until the next change
+        long start = System.nanoTime();
+        String key = kind + prefix;
+        long current = version.get();//read before the lookup, so a change made during it makes the result stale, not the other way round
+        synchronized (recentCompletions) {
+            Completions hit = recentCompletions.get(key);
+            if (hit != null && hit.version == current && (hit.limit >= limit || hit.contacts.size() < hit.limit)) {
+                metrics.count("complete.cache hits", 1);
+                metrics.record(ContactMetrics.Operation.COMPLETE, start);
+                return new ArrayList<>(hit.contacts.subList(0, Math.min(limit, hit.contacts.size())));
+            }
+        }
+        List<Contact> results = lookup.get();
+        synchronized (recentCompletions) {
+            recentCompletions.put(key, new Completions(current, limit, results));
+        }
+        metrics.record(ContactMetrics.Operation.COMPLETE, start);
+        return new ArrayList<>(results);
+    }
+    public void addListener(Consumer<List<Change>> listener) {
+        //called on the writer's thread, while the change's locks are held- keep it short (e.g. Platform.runLater)
+        //changes to one name always reach the listener in the order they happened
+        listeners.add(listener);
+    }
+    //============================================= WRITE ===========================================================================================
+    public Status add(Contact contact) throws IOException {
+        checkLoaded();
+        return timed(ContactMetrics.Operation.ADD, () -> addNow(contact));
+    }
+    private Status addNow(Contact contact) throws IOException {
+        Status status;
+        ReentrantLock[] held = lock(contact.getName(), contact.getPhone(), contact.getEmail());
+        try {
+            //---------------------no duplicate values
+            //hash lookups in the name map and the phone/email indexes instead of iterating through all contacts
+            if (rows.get(contact.getName()) != null) {
+                status = Status.DUPLICATE_NAME;
+            } else if (rows.getByPhone(contact.getPhone()) != null) {
+                status = Status.DUPLICATE_PHONE;
+            } else if (rows.getByEmail(contact.getEmail()) != null) {
+                status = Status.DUPLICATE_EMAIL;
+            } else {
+                journal.put(contact);//journaled first- if the journal has failed this throws and nothing changes
+                //the record is only buffered: it reaches the disk with the journal's next group commit, within about 50 ms
+                apply(contact.getName(), null, contact);
+                status = Status.OK;
+            }
+        } finally {
+            unlock(held);
+        }
+        compactIfNeeded();
+        return status;
+    }
+    public Status update(Contact contact) throws IOException {
+        //replaces the contact with the same name
+        checkLoaded();
+        return timed(ContactMetrics.Operation.UPDATE, () -> updateNow(contact));
+    }
+    private Status updateNow(Contact contact) throws IOException {
+        String name = contact.getName();
+        while (true) {
+            Contact old = rows.get(name);
+            if (old == null) {
+                return Status.NOT_FOUND;
+            }
+            ReentrantLock[] held = lock(name, contact.getPhone(), contact.getEmail(), old.getPhone(), old.getEmail());
+            try {
+                if (!old.equals(rows.get(name))) {
+                    continue;//changed before the locks were taken- look again
+                }
+                //---------------------no duplicate phone/email on some other contact
+                Contact phoneOwner = rows.getByPhone(contact.getPhone());
+                if (phoneOwner != null && !phoneOwner.getName().equals(name)) {
+                    return Status.DUPLICATE_PHONE;
+                }
+                Contact emailOwner = rows.getByEmail(contact.getEmail());
+                if (emailOwner != null && !emailOwner.getName().equals(name)) {
+                    return Status.DUPLICATE_EMAIL;
+                }
+                journal.put(contact);
+                apply(name, old, contact);
+            } finally {
+                unlock(held);
+            }
+            compactIfNeeded();
+            return Status.OK;
+        }
+    }
+    public Status delete(String name) throws IOException {
+        checkLoaded();
+        return timed(ContactMetrics.Operation.DELETE, () -> deleteNow(name));
+    }
+    private Status deleteNow(String name) throws IOException {
+        while (true) {
+            Contact old = rows.get(name);
+            if (old == null) {
+                return Status.NOT_FOUND;
+            }
+            ReentrantLock[] held = lock(name, old.getPhone(), old.getEmail());
+            try {
+                if (!old.equals(rows.get(name))) {
+                    continue;
+                }
+                journal.delete(name);
+                apply(name, old, null);
+            } finally {
+                unlock(held);
+            }
+            compactIfNeeded();
+            return Status.OK;
+        }
+    }
+    public Status[] addAll(List<Contact> batch) throws IOException {
+        //adds a batch of new contacts in one go, for bulk imports- returns the outcome for each, in batch order
+        //a contact is checked against the store and against the ones before it in the batch, like a row of add() calls
+        //listeners are not called for every contact- the caller rereads values() once the import is done
+        //nor is the journal compacted- call compact() after the last batch to fold the whole import into the files at once
+        checkLoaded();
+        return timed(ContactMetrics.Operation.ADD_ALL, () -> addAllNow(batch));
+    }
+    private Status[] addAllNow(List<Contact> batch) throws IOException {
+        Status[] statuses = new Status[batch.size()];
+        commitLock.writeLock().lock();//no single edit can slip in between the checks and the changes
+        try {
+            for (int i = 0; i < statuses.length; i++) {
+                Contact contact = batch.get(i);
+                if (rows.get(contact.getName()) != null) {
+                    statuses[i] = Status.DUPLICATE_NAME;
+                } else if (rows.getByPhone(contact.getPhone()) != null) {
+                    statuses[i] = Status.DUPLICATE_PHONE;
+                } else if (rows.getByEmail(contact.getEmail()) != null) {
+                    statuses[i] = Status.DUPLICATE_EMAIL;
+                } else {
+                    journal.put(contact);
+                    change(contact.getName(), null, contact);
+                    statuses[i] = Status.OK;
+                }
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        return statuses;
+    }
+    private void checkLoaded() {
+        //before load() succeeds the store is empty- duplicate checks against it would let through a name, phone or email
+        //that a contact in the files already has, and the journal would replay that clash on top of them
+        if (!loaded) {
+            throw new IllegalStateException("Contacts are not loaded yet");
+        }
+    }
+    //============================================= TRANSACTIONS ===========================================================================================
+    public Transaction transaction() {
+        return new Transaction();
+    }
+    public class Transaction {
+        //adds, updates and deletes staged here are checked together and applied together by commit()- or not at all
+        //listeners get all the changes in one call, and the whole transaction is one step for undo
+        //  Status[] statuses = store.transaction().delete("Anna").update(bob).add(carol).commit();
+        private final List<Edit> edits = new ArrayList<>();
+        public Transaction add(Contact contact) {
+            edits.add(new Edit(Edit.ADD, contact.getName(), contact));
+            return this;
+        }
+        public Transaction update(Contact contact) {
+            edits.add(new Edit(Edit.UPDATE, contact.getName(), contact));
+            return this;
+        }
+        public Transaction delete(String name) {
+            edits.add(new Edit(Edit.DELETE, name, null));
+            return this;
+        }
+        public int size() {
+            return edits.size();
+        }
+        public Status[] commit() throws IOException {
+            //the outcome of every edit, in order- if any is not OK, nothing was changed
+            checkLoaded();
+            return timed(ContactMetrics.Operation.TRANSACTION, () -> commitNow(edits, true));
+        }
+    }
+    private static class Edit {
+        static final int ADD = 0;
+        static final int UPDATE = 1;
+        static final int DELETE = 2;
+        final int kind;
+        final String name;
+        final Contact contact;//null for a delete
+        Edit(int kind, String name, Contact contact) {
+            this.kind = kind;
+            this.name = name;
+            this.contact = contact;
+        }
+    }
+    private Status[] commitNow(List<Edit> edits, boolean remember) throws IOException {
+        Status[] statuses = new Status[edits.size()];
+        commitLock.writeLock().lock();//no single edit can slip in between the checks and the changes
+        try {
+            //------------------names: every edit against the store and the edits before it
+            Map<String, Contact> staged = new LinkedHashMap<>();//name -> contact after the edits so far, null once deleted
+            Map<String, Integer> lastEdit = new HashMap<>();//name -> its last edit, which is blamed for a duplicate phone/email
+            boolean failed = false;
+            for (int i = 0; i < statuses.length; i++) {
+                Edit edit = edits.get(i);
+                Contact current = staged.containsKey(edit.name) ? staged.get(edit.name) : rows.get(edit.name);
+                if (edit.kind == Edit.ADD && current != null) {
+                    statuses[i] = Status.DUPLICATE_NAME;
+                } else if (edit.kind != Edit.ADD && current == null) {
+                    statuses[i] = Status.NOT_FOUND;
+                } else {
+                    staged.put(edit.name, edit.contact);
+                    lastEdit.put(edit.name, i);
+                    statuses[i] = Status.OK;
+                    continue;
+                }
+                failed = true;
+            }
+            //------------------phones and emails: unique among the contacts as they are once the whole batch is applied,
+            //so two contacts may swap numbers in one transaction
+            Map<String, String> phones = new HashMap<>();
+            Map<String, String> emails = new HashMap<>();
+            for (Map.Entry<String, Contact> entry : staged.entrySet()) {
+                Contact contact = entry.getValue();
+                if (contact == null) {
+                    continue;
+                }
+                int i = lastEdit.get(entry.getKey());
+                if (taken(contact.getPhone(), contact, phones, rows.getByPhone(contact.getPhone()), staged)) {
+                    statuses[i] = Status.DUPLICATE_PHONE;
+                    failed = true;
+                } else if (taken(contact.getEmail(), contact, emails, rows.getByEmail(contact.getEmail()), staged)) {
+                    statuses[i] = Status.DUPLICATE_EMAIL;
+                    failed = true;
+                }
+            }
+            if (failed) {
+                return statuses;
+            }
+            //------------------apply
+            List<Change> changes = new ArrayList<>(staged.size());
+            for (Map.Entry<String, Contact> entry : staged.entrySet()) {
+                Contact before = rows.get(entry.getKey());
+                if (before != null || entry.getValue() != null) {//added and deleted again in the batch- nothing to do
+                    changes.add(new Change(entry.getKey(), before, entry.getValue()));
+                }
+            }
+            if (changes.isEmpty()) {
+                return statuses;
+            }
+            Map<String, Contact> journaled = new LinkedHashMap<>();
+            for (Change change : changes) {
+                journaled.put(change.name, change.after);
+            }
+            journal.transaction(journaled);//journaled first (buffered like put()), all or nothing on replay
+            List<Change> applied = changeAll(changes);
+            if (remember) {
+                remember(applied);
+            }
+            for (Consumer<List<Change>> listener : listeners) {
+                listener.accept(applied);
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        compactIfNeeded();
+        return statuses;
+    }
+    private static boolean taken(String value, Contact contact, Map<String, String> claimed, Contact stored, Map<String, Contact> staged) {
+        //whether value (a phone or an email of contact) belongs to some other contact once the staged edits are applied:
+        //another staged contact claimed it, or a stored contact has it and keeps it
+        String other = claimed.putIfAbsent(value, contact.getName());
+        if (other != null && !other.equals(contact.getName())) {
+            return true;
+        }
+        return stored != null && !stored.getName().equals(contact.getName()) && !staged.containsKey(stored.getName());
+        //a stored owner that is staged too is checked as a staged contact- it either gave the value up or claimed it
+    }
+    private List<Change> changeAll(List<Change> changes) {
+        //takes out every old contact first and puts the new ones in after, so a value passed from one contact to another
+        //is never in the indexes twice- returns the changes with the contacts as the rows now hold them
+        //caller holds the write side of commitLock
+        PhoneTrie trie = phoneTrie;
+        FuzzyNameIndex fuzzy = fuzzyIndex;//null while not built yet (COMPACT storage)- then there is nothing to keep up to date
+        for (Change change : changes) {
+            Contact old = change.before;
+            if (old == null) {
+                continue;
+            }
+            rows.remove(old);
+            if (trie != null && (change.after == null || !change.after.getPhone().equals(old.getPhone()))) {
+                trie.remove(old.getPhone());
+            }
+            if (fuzzy != null && change.after == null) {
+                fuzzy.remove(change.name);
+            }
+        }
+        List<Change> applied = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            Contact contact = change.after;
+            Contact stored = null;
+            if (contact != null) {
+                stored = rows.put(null, contact);
+                if (trie != null && (change.before == null || !contact.getPhone().equals(change.before.getPhone()))) {
+                    trie.add(contact.getPhone());
+                }
+                if (fuzzy != null && change.before == null) {
+                    fuzzy.add(change.name, change.name);
+                }
+            }
+            applied.add(new Change(change.name, change.before, stored));
+        }
+        version.incrementAndGet();
+        return applied;
+    }
+    //----------------------------------- undo / redo ------------------------
+    //every add, update, delete and transaction can be undone, newest first, and undone edits redone until the next edit
+    //an undo is a transaction of the opposite edits, checked like any other- it is refused (and stays in the history)
+    //when it would clash with what was changed since, e.g. a deleted contact's phone now belongs to someone else
+    //addAll (imports) are not kept- they can be far too large
+    public boolean canUndo() {
+        synchronized (undoHistory) {
+            return !undoHistory.isEmpty();
+        }
+    }
+    public boolean canRedo() {
+        synchronized (undoHistory) {
+            return !redoHistory.isEmpty();
+        }
+    }
+    public Status undo() throws IOException {
+        //OK, NOT_FOUND when there is nothing to undo, or the first reason the undo was refused
+        return timed(ContactMetrics.Operation.UNDO, () -> replayHistory(undoHistory, redoHistory, true));
+    }
+    public Status redo() throws IOException {
+        return timed(ContactMetrics.Operation.REDO, () -> replayHistory(redoHistory, undoHistory, false));
+    }
+    private Status replayHistory(Deque<List<Change>> from, Deque<List<Change>> to, boolean backwards) throws IOException {
+        checkLoaded();//refused like any other edit until the contacts are loaded
+        commitLock.writeLock().lock();//the edit taken from the history and what is done with it cannot be split by another edit
+        try {
+            List<Change> entry;
+            synchronized (undoHistory) {
+                entry = from.peekLast();
+            }
+            if (entry == null) {
+                return Status.NOT_FOUND;
+            }
+            List<Edit> edits = new ArrayList<>(entry.size());
+            for (Change change : entry) {
+                Contact target = backwards ? change.before : change.after;
+                Contact current = backwards ? change.after : change.before;
+                if (target == null) {
+                    edits.add(new Edit(Edit.DELETE, change.name, null));
+                } else {
+                    edits.add(new Edit(current == null ? Edit.ADD : Edit.UPDATE, change.name, target));
+                }
+            }
+            for (Status status : commitNow(edits, false)) {
+                if (status != Status.OK) {
+                    return status;
+                }
+            }
+            synchronized (undoHistory) {
+                from.pollLast();
+                to.addLast(entry);
+            }
+            return Status.OK;
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+    private void remember(List<Change> changes) {
+        //a new edit- what was undone before it can no longer be redone
+        synchronized (undoHistory) {
+            for (List<Change> undone : redoHistory) {
+                historyChanges -= undone.size();
+            }
+            redoHistory.clear();
+            undoHistory.addLast(changes);
+            historyChanges += changes.size();
+            while (!undoHistory.isEmpty() && (undoHistory.size() > HISTORY || historyChanges > HISTORY_CHANGES)) {
+                historyChanges -= undoHistory.pollFirst().size();
+            }
+        }
+    }
+    //----------------------------------- change the maps and indexes ------------------------
+    private void apply(String name, Contact old, Contact contact) {
+        //caller holds the locks for name and for old's and contact's phone and email
+        Contact stored = change(name, old, contact);
+        List<Change> changes = Collections.singletonList(new Change(name, old, stored));
+        remember(changes);
+        for (Consumer<List<Change>> listener : listeners) {
+            listener.accept(changes);
+        }
+    }
+    private Contact change(String name, Contact old, Contact contact) {
+        //returns the contact as the rows now hold it (a ContactTable.Row with COMPACT storage), null for a delete
+        //caller holds the read side of commitLock, so a lazy index is either built before this or sees its result
+        PhoneTrie trie = phoneTrie;
+        FuzzyNameIndex fuzzy = fuzzyIndex;
+        Contact stored = null;
+        if (trie != null && old != null && (contact == null || !contact.getPhone().equals(old.getPhone()))) {
+            trie.remove(old.getPhone());
+        }
+        if (contact != null) {
+            stored = rows.put(old, contact);
+            if (trie != null && (old == null || !contact.getPhone().equals(old.getPhone()))) {
+                trie.add(contact.getPhone());
+            }
+            if (fuzzy != null && old == null) {
+                fuzzy.add(name, name);//an update keeps the name, so its words stay indexed as they are
+            }
+        } else {
+            rows.remove(old);
+            if (fuzzy != null) {
+                fuzzy.remove(name);
+            }
+        }
+        version.incrementAndGet();
+        return stored;
+    }
+    //----------------------------------- striped locks ------------------------
+    private ReentrantLock[] lock(String... keys) {
+        //locks the stripes of all keys in ascending order (so two writers can never deadlock), plus the read side of commitLock
+        int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            indexes[i] = Math.floorMod(keys[i].hashCode(), STRIPES);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        ReentrantLock[] held = new ReentrantLock[distinct];
+        commitLock.readLock().lock();
+        for (int i = 0; i < distinct; i++) {
+            held[i] = stripes[indexes[i]];
+            held[i].lock();
+        }
+        return held;
+    }
+    private void unlock(ReentrantLock[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            held[i].unlock();
+        }
+        commitLock.readLock().unlock();
+    }
+    //============================================= COMPACTION ===========================================================================================
+    private void compactIfNeeded() throws IOException {
+        if (loaded && journal.needsCompaction()) {
+            compact();
+        }
+    }
+    public void compact() throws IOException {
+        //folds the journal into fresh contact files in the background- the caller's thread only hands the work over
+        //writers are held back only while the journal moves to its next generation, not while the contacts are copied
+        timed(ContactMetrics.Operation.COMPACT, () -> {
+            journal.compact(commitLock.writeLock(), () -> rows.snapshot());
+            return null;
+        });
+    }
+    //============================================= METRICS ===========================================================================================
+    private interface Action<T> {
+        T run() throws IOException;
+    }
+    private <T> T timed(ContactMetrics.Operation operation, Action<T> action) throws IOException {
+        //runs action and records how long it took- as a failure if it threw, as rejected if it returned a Status other than OK
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.run();
+        } catch (IOException | RuntimeException e) {
+            metrics.failed(operation, start);
+            throw e;
+        }
+        if (result instanceof Status && result != Status.OK) {
+            metrics.rejected(operation, start);
+        } else {
+            metrics.record(operation, start);
+        }
+        return result;
+    }
+}
\ No newline at end of file
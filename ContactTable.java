@@ -0,0 +1,658 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.nio.charset.StandardCharsets;
+//fields are kept as UTF-8 bytes
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+//many readers at once, one writer at a time
+
+public class ContactTable implements ContactRows {
+    //contacts packed into bytes, for address books of millions- instead of a Contact, three Strings and an entry in every map:
+    //- each contact is one record of UTF-8 bytes (name, phone, email) in large byte pages, and is known by its row number
+    //- email domains are stored once in a table of domains- a record only keeps the domain's number
+    //- name order, case-insensitive name order and the phone and email lookups are plain int arrays of row numbers
+    //- Contact objects are made only for the rows someone asks for (the visible table rows, search results), then dropped
+    //records never change: an update writes a new record under a new row number and a delete only drops the row from the orders,
+    //so a row number handed out (to the table list, to a snapshot being written) always reads the same contact
+    //the space of dead rows is given back when the store is next loaded
+    //==========================INITIALIZE===============================================
+    private static final int PAGE_SIZE = 1 << 20;//records are appended to pages of 1MB
+    private static final int MAX_DOMAINS = 1 << 16;
+    //past this many different domains, new ones are kept inside the record like the rest of the address
+    private static final int PHONE = 1;
+    private static final int EMAIL = 2;
+    public static class Row extends Contact {
+        //a contact read from the table- remembers its row, so the table list can keep the number instead of the object
+        private final int row;
+        Row(int row, String name, String phone, String email) {
+            super(name, phone, email);
+            this.row = row;
+        }
+        public int getRow() {
+            return row;
+        }
+    }
+    private static final class Data {
+        //the arrays rows are read from- replaced by bigger copies when one is full, but never changed for rows already written,
+        //so whoever was handed a row number can read it through the latest Data without taking the lock
+        final byte[][] pages;
+        final long[] records;//row -> page << 32 | offset of its record
+        final String[] domains;//domain number d is domains[d - 1]; 0 means the email is kept whole in the record
+        final byte[][] domainBytes;//"@" + domain as UTF-8, for searching
+        Data(byte[][] pages, long[] records, String[] domains, byte[][] domainBytes) {
+            this.pages = pages;
+            this.records = records;
+            this.domains = domains;
+            this.domainBytes = domainBytes;
+        }
+        //record: name, phone and the email (without its domain when the domain has a number) each as a varint length and
+        //the bytes, then the domain number as a varint
+        byte[] page(int row) {
+            return pages[(int) (records[row] >>> 32)];
+        }
+        int namePos(int row) {
+            return (int) records[row];
+        }
+        int phonePos(int row) {
+            return next(page(row), namePos(row));
+        }
+        int emailPos(int row) {
+            return next(page(row), phonePos(row));
+        }
+        int domain(int row) {
+            byte[] page = page(row);
+            return varint(page, next(page, emailPos(row)));
+        }
+        int recordLength(int row) {
+            byte[] page = page(row);
+            int domainPos = next(page, emailPos(row));
+            return domainPos + varintSize(varint(page, domainPos)) - namePos(row);
+        }
+        String name(int row) {
+            return text(page(row), namePos(row));
+        }
+        String phone(int row) {
+            return text(page(row), phonePos(row));
+        }
+        String email(int row) {
+            int domain = domain(row);
+            String email = text(page(row), emailPos(row));
+            return domain == 0 ? email : email + "@" + domains[domain - 1];
+        }
+        Row view(int row) {
+            return new Row(row, name(row), phone(row), email(row));
+        }
+        //----------------------------------- compare without making strings ------------------------
+        int compareName(int row, String key) {
+            return compare(page(row), namePos(row), key, 0, key.length(), false);
+        }
+        int compareFolded(int row, String key) {
+            //case-insensitive only- equal for "anna" and "Anna"
+            return compare(page(row), namePos(row), key, 0, key.length(), true);
+        }
+        int compareFoldedName(int row, String key) {
+            //FOLDED_ORDER: case-insensitive, then case-sensitive to break ties
+            int cmp = compareFolded(row, key);
+            return cmp != 0 ? cmp : compareName(row, key);
+        }
+        boolean fieldEquals(int row, int field, String key) {
+            if (field == PHONE) {
+                return compare(page(row), phonePos(row), key, 0, key.length(), false) == 0;
+            }
+            int domain = domain(row);
+            if (domain == 0) {
+                return compare(page(row), emailPos(row), key, 0, key.length(), false) == 0;
+            }
+            String name = domains[domain - 1];
+            int at = key.length() - name.length() - 1;
+            return at >= 0 && key.charAt(at) == '@' && key.startsWith(name, at + 1)
+                    && compare(page(row), emailPos(row), key, 0, at, false) == 0;
+        }
+        int fieldHash(int row, int field) {
+            //String.hashCode() of the field, computed from its bytes
+            byte[] page = page(row);
+            if (field == PHONE) {
+                return hash(page, phonePos(row), 0);
+            }
+            int domain = domain(row);
+            int hash = hash(page, emailPos(row), 0);
+            if (domain != 0) {
+                hash = 31 * hash + '@';
+                String name = domains[domain - 1];
+                for (int i = 0; i < name.length(); i++) {
+                    hash = 31 * hash + name.charAt(i);
+                }
+            }
+            return hash;
+        }
+    }
+    private volatile Data data = new Data(new byte[16][], new long[1024], new String[16], new byte[16][]);
+    private int pageCount;
+    private int pageFill;//bytes used in the last page
+    private int rowCount;//rows ever written, dead ones included
+    private int domainCount;
+    private final HashMap<String, Integer> domainIds = new HashMap<>();
+    private volatile long deadBytes;//bytes of records that were replaced or deleted
+    private volatile int size;//live rows
+    private RowOrder byName = new RowOrder();
+    private RowOrder byFoldedName = new RowOrder();
+    //rows sorted by name, and by FOLDED_ORDER for case-insensitive prefixes
+    private int[] phoneSlots = new int[16];
+    private int[] emailSlots = new int[16];
+    //open addressing hash tables: row + 1 of the contact with that phone/email, 0 for an empty slot- at most half full
+    private volatile int[] sortedRows;
+    //byName as one array, made the first time it is needed after a change (searches, values()) and shared until the next one
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //----------------------------------- constructor ------------------------
+    public ContactTable() {
+    }
+    public static Builder builder(int expected) {
+        //rows come in name order, so their numbers are already the name order- only the case-insensitive order is sorted
+        ContactTable table = new ContactTable();
+        int slots = Integer.highestOneBit(Math.max(expected, 8) * 2) * 2;
+        table.phoneSlots = new int[slots];
+        table.emailSlots = new int[slots];
+        List<String> names = new ArrayList<>(expected);
+        return new Builder() {
+            public void add(Contact contact) {
+                int row = table.append(contact.getName(), contact.getPhone(), contact.getEmail());
+                table.size++;
+                table.phoneSlots = table.insertSlot(table.phoneSlots, PHONE, row, contact.getPhone().hashCode());
+                table.emailSlots = table.insertSlot(table.emailSlots, EMAIL, row, contact.getEmail().hashCode());
+                names.add(contact.getName());
+            }
+            public ContactRows build() {
+                int count = names.size();
+                int[] rows = new int[count];
+                for (int i = 0; i < count; i++) {
+                    rows[i] = i;
+                }
+                table.byName = new RowOrder(rows, count);
+                Integer[] folded = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    folded[i] = i;
+                }
+                Arrays.parallelSort(folded, (a, b) -> FOLDED_ORDER.compare(names.get(a), names.get(b)));
+                for (int i = 0; i < count; i++) {
+                    rows[i] = folded[i];
+                }
+                table.byFoldedName = new RowOrder(rows, count);
+                return table;
+            }
+        };
+    }
+    //============================================= READ ===========================================================================================
+    public Contact get(String name) {
+        lock.readLock().lock();
+        try {
+            int row = find(name);
+            return row < 0 ? null : data.view(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public Contact getByPhone(String phone) {
+        return getBy(PHONE, phone);
+    }
+    public Contact getByEmail(String email) {
+        return getBy(EMAIL, email);
+    }
+    private Contact getBy(int field, String key) {
+        lock.readLock().lock();
+        try {
+            int row = findSlot(field == PHONE ? phoneSlots : emailSlots, field, key);
+            return row < 0 ? null : data.view(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public int size() {
+        return size;
+    }
+    public Row view(int row) {
+        //the contact in row- also for rows that were replaced or deleted since, whose bytes stay until the next load
+        return data.view(row);
+    }
+    public int compareName(int row, String name) {
+        return data.compareName(row, name);
+    }
+    public int[] sortedRows() {
+        //row numbers of all live contacts in name order- the array is shared, do not change it
+        int[] rows = sortedRows;
+        if (rows == null) {
+            lock.readLock().lock();
+            try {
+                rows = sortedRows = byName.toArray();//another reader may do the same meanwhile- both copies are right
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return rows;
+    }
+    public Collection<Contact> values() {
+        //every iterator walks the contacts as they were when it was made
+        return new AbstractCollection<Contact>() {
+            @Override
+            public Iterator<Contact> iterator() {
+                return rows(sortedRows()).iterator();
+            }
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    public Collection<Contact> snapshot() {
+        return rows(sortedRows());
+    }
+    private Collection<Contact> rows(int[] rows) {
+        //Contact objects are made one at a time as the iterator gets to them
+        Data current = data;
+        return new AbstractCollection<Contact>() {
+            @Override
+            public Iterator<Contact> iterator() {
+                return new Iterator<Contact>() {
+                    private int next;
+                    public boolean hasNext() {
+                        return next < rows.length;
+                    }
+                    public Contact next() {
+                        if (next >= rows.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return current.view(rows[next++]);
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+    public long bytes() {
+        //heap used by the table, roughly- pages, row records, orders and lookups
+        Data current = data;
+        long bytes = (long) current.pages.length * 8 + current.records.length * 8L;
+        for (int i = 0; i < pageCount; i++) {
+            bytes += current.pages[i].length;
+        }
+        lock.readLock().lock();
+        try {
+            return bytes + byName.bytes() + byFoldedName.bytes() + (phoneSlots.length + emailSlots.length) * 4L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public long deadBytes() {
+        //what the next load would give back
+        return deadBytes;
+    }
+    private int find(String name) {
+        //row of the live contact with this name, or -1- caller holds the lock
+        Data current = data;
+        int at = byName.lowerBound(row -> current.compareName(row, name));
+        if (at < byName.size() && current.compareName(byName.get(at), name) == 0) {
+            return byName.get(at);
+        }
+        return -1;
+    }
+    //----------------------------------- search ------------------------
+    public List<Contact> search(String query) {
+        //a scan over the bytes of every record instead of an index- no memory per contact, a few milliseconds per 100k contacts
+        //runs on a copy of the name order, so writers are not held up while it reads
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        List<Contact> results = new ArrayList<>();
+        if (q.isEmpty()) {
+            return results;
+        }
+        byte[] ascii = isAscii(q) ? q.getBytes(StandardCharsets.UTF_8) : null;
+        boolean acrossAt = q.indexOf('@') >= 0;
+        int[] rows = sortedRows();
+        Data current = data;
+        byte[] domainMatches = new byte[current.domains.length + 1];
+        //per domain number: 0 not looked at yet, 1 "@domain" contains q, 2 it does not- each domain is matched once per search
+        byte[] email = new byte[256];
+        for (int row : rows) {
+            byte[] page = current.page(row);
+            int namePos = current.namePos(row);
+            int phonePos = next(page, namePos);
+            int emailPos = next(page, phonePos);
+            int length = varint(page, emailPos);
+            int from = emailPos + varintSize(length);
+            int domain = varint(page, from + length);
+            boolean match = contains(page, namePos, ascii, q) || contains(page, phonePos, ascii, q);
+            if (!match && !acrossAt) {
+                //the query has no '@', so it is either in the part before it or in the domain
+                match = contains(page, from, from + length, ascii, q);
+                if (!match && domain != 0) {
+                    if (domainMatches[domain] == 0) {
+                        byte[] suffix = current.domainBytes[domain - 1];
+                        domainMatches[domain] = contains(suffix, 0, suffix.length, ascii, q) ? (byte) 1 : 2;
+                    }
+                    match = domainMatches[domain] == 1;
+                }
+            } else if (!match) {
+                //the email as one run of bytes, so a query across the '@' is found too
+                byte[] suffix = domain == 0 ? new byte[0] : current.domainBytes[domain - 1];
+                int total = length + suffix.length;
+                if (total > email.length) {
+                    email = new byte[total * 2];
+                }
+                System.arraycopy(page, from, email, 0, length);
+                System.arraycopy(suffix, 0, email, length, suffix.length);
+                match = contains(email, 0, total, ascii, q);
+            }
+            if (match) {
+                results.add(current.view(row));
+            }
+        }
+        return results;
+    }
+    private static boolean contains(byte[] page, int pos, byte[] ascii, String q) {
+        int length = varint(page, pos);
+        int from = pos + varintSize(length);
+        return contains(page, from, from + length, ascii, q);
+    }
+    private static boolean contains(byte[] bytes, int from, int to, byte[] ascii, String q) {
+        //whether bytes[from, to) contain q ignoring case- q is lowercase, ascii is its bytes or null if it is not plain ascii
+        //one pass: every byte is looked at once as a possible start, and the text is decoded only if one is not ascii
+        int last = ascii == null ? from - 1 : to - ascii.length;
+        int first = ascii == null ? -1 : ascii[0];
+        for (int start = from; start < to; start++) {
+            int b = bytes[start];
+            if (b < 0) {
+                //not plain ascii- lowercase the text the same way the query was
+                return new String(bytes, from, to - from, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT).contains(q);
+            }
+            if (start <= last && (b | 0x20) == (first | 0x20) && matchesAt(bytes, start, ascii)) {
+                return true;
+            }
+        }
+        return false;//plain ascii without q, or plain ascii where q is not
+    }
+    private static boolean matchesAt(byte[] bytes, int start, byte[] ascii) {
+        for (int i = 0; i < ascii.length; i++) {
+            if (lower(bytes[start + i]) != ascii[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    //----------------------------------- prefixes ------------------------
+    public List<Contact> startingWith(String prefix, boolean ignoreCase, int limit) {
+        List<Contact> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Data current = data;
+            RowOrder order = ignoreCase ? byFoldedName : byName;
+            //case-insensitively, every name with the prefix compares equal or greater to it and they are all together
+            int at = order.lowerBound(ignoreCase ? row -> current.compareFolded(row, prefix) : row -> current.compareName(row, prefix));
+            for (; at < order.size() && results.size() < limit; at++) {
+                Row contact = current.view(order.get(at));
+                boolean match = ignoreCase ? contact.getName().regionMatches(true, 0, prefix, 0, prefix.length()) : contact.getName().startsWith(prefix);
+                if (!match) {
+                    break;
+                }
+                results.add(contact);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+    //============================================= WRITE ===========================================================================================
+    public Contact put(Contact old, Contact contact) {
+        String name = contact.getName();
+        lock.writeLock().lock();
+        try {
+            int row = append(name, contact.getPhone(), contact.getEmail());
+            Data current = data;
+            int at = byName.lowerBound(r -> current.compareName(r, name));
+            if (old != null && at < byName.size() && current.compareName(byName.get(at), name) == 0) {
+                //same name- the new row takes the old one's place in both orders
+                int oldRow = byName.get(at);
+                byName.set(at, row);
+                byFoldedName.set(byFoldedName.lowerBound(r -> current.compareFoldedName(r, name)), row);
+                unindex(oldRow);
+            } else {
+                byName.insert(at, row);
+                byFoldedName.insert(byFoldedName.lowerBound(r -> current.compareFoldedName(r, name)), row);
+                size++;
+            }
+            phoneSlots = insertSlot(phoneSlots, PHONE, row, contact.getPhone().hashCode());
+            emailSlots = insertSlot(emailSlots, EMAIL, row, contact.getEmail().hashCode());
+            sortedRows = null;
+            return new Row(row, name, contact.getPhone(), contact.getEmail());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    public void remove(Contact old) {
+        String name = old.getName();
+        lock.writeLock().lock();
+        try {
+            Data current = data;
+            int at = byName.lowerBound(r -> current.compareName(r, name));
+            if (at == byName.size() || current.compareName(byName.get(at), name) != 0) {
+                return;
+            }
+            int row = byName.remove(at);
+            byFoldedName.remove(byFoldedName.lowerBound(r -> current.compareFoldedName(r, name)));
+            unindex(row);
+            size--;
+            sortedRows = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void unindex(int row) {
+        //takes a replaced or deleted row out of the lookups- its bytes stay for whoever still has its number
+        deleteSlot(phoneSlots, PHONE, row);
+        deleteSlot(emailSlots, EMAIL, row);
+        deadBytes += data.recordLength(row);
+    }
+    //----------------------------------- records ------------------------
+    private int append(String name, String phone, String email) {
+        //writes a new record and returns its row- caller holds the write lock (or is the builder)
+        int at = email.lastIndexOf('@');
+        int domain = at < 0 ? 0 : domainNumber(email.substring(at + 1));
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] phoneBytes = phone.getBytes(StandardCharsets.UTF_8);
+        byte[] emailBytes = (domain == 0 ? email : email.substring(0, at)).getBytes(StandardCharsets.UTF_8);
+        int length = varintSize(nameBytes.length) + nameBytes.length + varintSize(phoneBytes.length) + phoneBytes.length
+                + varintSize(emailBytes.length) + emailBytes.length + varintSize(domain);
+        Data current = data;
+        if (pageCount == 0 || pageFill + length > current.pages[pageCount - 1].length) {
+            if (pageCount == current.pages.length) {
+                current = data = new Data(Arrays.copyOf(current.pages, pageCount * 2), current.records, current.domains, current.domainBytes);
+            }
+            current.pages[pageCount++] = new byte[Math.max(PAGE_SIZE, length)];
+            pageFill = 0;
+        }
+        if (rowCount == current.records.length) {
+            current = data = new Data(current.pages, Arrays.copyOf(current.records, rowCount * 2), current.domains, current.domainBytes);
+        }
+        byte[] page = current.pages[pageCount - 1];
+        int pos = pageFill;
+        current.records[rowCount] = (long) (pageCount - 1) << 32 | pos;
+        pos = putBytes(page, pos, nameBytes);
+        pos = putBytes(page, pos, phoneBytes);
+        pos = putBytes(page, pos, emailBytes);
+        pageFill = putVarint(page, pos, domain);
+        return rowCount++;
+    }
+    private int domainNumber(String domain) {
+        //number of the domain in the domain table (added if new), or 0 if the table is full
+        Integer number = domainIds.get(domain);
+        if (number != null) {
+            return number;
+        }
+        if (domainCount == MAX_DOMAINS) {
+            return 0;
+        }
+        Data current = data;
+        if (domainCount == current.domains.length) {
+            current = data = new Data(current.pages, current.records, Arrays.copyOf(current.domains, domainCount * 2),
+                    Arrays.copyOf(current.domainBytes, domainCount * 2));
+        }
+        current.domains[domainCount] = domain;
+        current.domainBytes[domainCount] = ("@" + domain).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        domainIds.put(domain, ++domainCount);
+        return domainCount;
+    }
+    //----------------------------------- phone and email lookups ------------------------
+    private int findSlot(int[] slots, int field, String key) {
+        Data current = data;
+        int mask = slots.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (current.fieldEquals(slots[slot] - 1, field, key)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+    private int[] insertSlot(int[] slots, int field, int row, int hash) {
+        if (size * 2 > slots.length) {
+            //grow before the table gets more than half full- every live row is in it
+            int[] bigger = new int[slots.length * 2];
+            for (int entry : slots) {
+                if (entry != 0) {
+                    place(bigger, entry, data.fieldHash(entry - 1, field));
+                }
+            }
+            slots = bigger;
+        }
+        place(slots, row + 1, hash);
+        return slots;
+    }
+    private static void place(int[] slots, int entry, int hash) {
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry;
+    }
+    private void deleteSlot(int[] slots, int field, int row) {
+        //linear probing without tombstones: entries after the hole that would no longer be found are moved back into it
+        Data current = data;
+        int mask = slots.length - 1;
+        int hole = spread(current.fieldHash(row, field)) & mask;
+        while (slots[hole] != row + 1) {
+            if (slots[hole] == 0) {
+                return;//not there
+            }
+            hole = (hole + 1) & mask;
+        }
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = spread(current.fieldHash(slots[slot] - 1, field)) & mask;
+            boolean reachable = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            //still found from its home without passing the hole- leave it
+            if (!reachable) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+    }
+    private static int spread(int hash) {
+        return hash * 0x9E3779B9 ^ hash >>> 16;
+    }
+    //============================================= BYTES ===========================================================================================
+    private static int varint(byte[] page, int pos) {
+        //7 bits per byte, high bit set on all but the last
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = page[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+    private static int putVarint(byte[] page, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            page[pos++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        page[pos++] = (byte) value;
+        return pos;
+    }
+    private static int putBytes(byte[] page, int pos, byte[] bytes) {
+        pos = putVarint(page, pos, bytes.length);
+        System.arraycopy(bytes, 0, page, pos, bytes.length);
+        return pos + bytes.length;
+    }
+    private static int next(byte[] page, int pos) {
+        //position of the field after the one at pos
+        int length = varint(page, pos);
+        return pos + varintSize(length) + length;
+    }
+    private static String text(byte[] page, int pos) {
+        int length = varint(page, pos);
+        return new String(page, pos + varintSize(length), length, StandardCharsets.UTF_8);
+    }
+    private static int compare(byte[] page, int pos, String key, int from, int to, boolean ignoreCase) {
+        //compares the field at pos with key[from, to) like String.compareTo (or CASE_INSENSITIVE_ORDER), only the sign counts
+        //plain ascii is compared byte by byte; anything else is decoded first
+        int length = varint(page, pos);
+        int start = pos + varintSize(length);
+        int keyLength = to - from;
+        int n = Math.min(length, keyLength);
+        for (int i = 0; i < n; i++) {
+            int b = page[start + i];
+            char c = key.charAt(from + i);
+            if (b < 0 || c >= 0x80) {
+                String value = new String(page, start, length, StandardCharsets.UTF_8);
+                String other = key.substring(from, to);
+                return ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(value, other) : value.compareTo(other);
+            }
+            if (b != c) {
+                if (!ignoreCase) {
+                    return b - c;
+                }
+                int cmp = lower(b) - lower(c);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+        }
+        //equal so far- the longer one is greater (the first n bytes were n ascii chars, so any further bytes are more chars)
+        return length == keyLength ? 0 : length > keyLength ? 1 : -1;
+    }
+    private static int hash(byte[] page, int pos, int hash) {
+        int length = varint(page, pos);
+        int start = pos + varintSize(length);
+        for (int i = start; i < start + length; i++) {
+            if (page[i] < 0) {
+                String value = new String(page, start, length, StandardCharsets.UTF_8);
+                for (int j = 0; j < value.length(); j++) {
+                    hash = 31 * hash + value.charAt(j);
+                }
+                return hash;
+            }
+        }
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + page[i];
+        }
+        return hash;
+    }
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.Locale;
+//to lowercase email domains the same way on every machine
+
+public class ContactValidator {
+    //checks shared by the add/update dialogs and the bulk import, so a contact is held to the same rules however it gets in
+    //hand-written scans instead of regular expressions- checking a value allocates nothing, only normalizing a value
+    //that is not already in its canonical form creates a new string
+    //==========================INITIALIZE===============================================
+    public enum PhoneFormat {
+        NATIONAL,//exactly 10 digits, stored as the digits- "(555) 123-4567" becomes "5551234567"
+        E164//international numbers, stored as "+" and up to 15 digits- "+44 20 7946 0958", "0044 20 7946 0958" and,
+            //with country code 1, "555-123-4567" become "+442079460958" and "+15551234567"
+    }
+    private static final int NATIONAL_DIGITS = 10;
+    private static final int E164_MIN_DIGITS = 7;
+    private static final int E164_MAX_DIGITS = 15;
+    //E.164 allows at most 15 digits including the country code- the shortest numbers in use have 7
+    private static final boolean[] LOCAL_PART_CHARS = new boolean[128];
+    //ascii characters allowed in the part of an email before the '@' (besides dots), looked up instead of matched
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            LOCAL_PART_CHARS[c] = true;
+            LOCAL_PART_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            LOCAL_PART_CHARS[c] = true;
+        }
+        for (char c : "!#$%&'*+/=?^_`{|}~-".toCharArray()) {
+            LOCAL_PART_CHARS[c] = true;
+        }
+    }
+    private final PhoneFormat phoneFormat;
+    private final String countryCode;//digits only- added to E164 numbers entered without a country code
+    //----------------------------------- constructor ------------------------
+    public ContactValidator() {
+        this(PhoneFormat.NATIONAL, "1");
+    }
+    public ContactValidator(PhoneFormat phoneFormat, String countryCode) {
+        if (countryCode.isEmpty() || countryCode.length() > 3 || countryCode.charAt(0) == '0' || !allDigits(countryCode)) {
+            throw new IllegalArgumentException("Country code must be 1 to 3 digits: " + countryCode);
+        }
+        this.phoneFormat = phoneFormat;
+        this.countryCode = countryCode;
+    }
+    public PhoneFormat getPhoneFormat() {
+        return phoneFormat;
+    }
+    public String describePhoneFormat() {
+        //the rule in words, for error messages
+        if (phoneFormat == PhoneFormat.NATIONAL) {
+            return "It must have exactly 10 digits.";
+        }
+        return "Use international format (e.g. +" + countryCode + " 555 123 4567) or a number without country code.";
+    }
+    //============================================= NAME ===========================================================================================
+    public boolean isValidName(String name) {
+        //any text without control characters- a tab or line break in a name breaks the table, the csv rows and the vCard lines
+        for (int i = 0; i < name.length(); i++) {
+            if (isControl(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static boolean isControl(char c) {
+        return Character.isISOControl(c) || c == '\u2028' || c == '\u2029';//unicode line and paragraph separators too
+    }
+    //============================================= PHONE ===========================================================================================
+    //spaces, dashes, dots and brackets between digits are ignored, a '+' may only come first
+    private static final int LOCAL = 0;//no international prefix
+    private static final int PLUS = 1;//starts with '+'
+    private static final int DOUBLE_ZERO = 2;//starts with 00, the international prefix used in most of the world
+    public boolean isValidPhoneNumber(String phone) {//returns bool value
+        return significantDigits(phone) >= 0;
+    }
+    public String normalizePhoneNumber(String phone) {
+        //canonical form of the number, used as the stored value and for duplicate checks- null if it is not valid
+        int digits = significantDigits(phone);
+        if (digits < 0) {
+            return null;
+        }
+        if (phoneFormat == PhoneFormat.NATIONAL) {
+            return digits == phone.length() ? phone : keepDigits(phone, new StringBuilder(digits), 0);
+        }
+        int kind = kind(phone);
+        if (kind == PLUS && digits + 1 == phone.length()) {
+            return phone;//already "+digits"
+        }
+        StringBuilder out = new StringBuilder(digits + 4).append('+');
+        if (kind == PLUS) {
+            return keepDigits(phone, out, 0);
+        }
+        if (kind == DOUBLE_ZERO) {
+            return keepDigits(phone, out, 2);//drop the 00
+        }
+        out.append(countryCode);
+        return keepDigits(phone, out, firstDigit(phone) == '0' ? 1 : 0);//drop a national trunk 0
+    }
+    private int significantDigits(String phone) {
+        //digits the canonical form will have (without the '+'), or -1 if the number is not valid in this format
+        int digits = 0;
+        boolean plus = false;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '+') {
+                if (plus || digits > 0) {
+                    return -1;
+                }
+                plus = true;
+            } else if (!isSeparator(c)) {
+                return -1;
+            }
+        }
+        if (phoneFormat == PhoneFormat.NATIONAL) {
+            return !plus && digits == NATIONAL_DIGITS ? digits : -1;
+        }
+        int kind = kind(phone);
+        int significant;
+        if (kind == PLUS) {
+            significant = digits;
+        } else if (kind == DOUBLE_ZERO) {
+            significant = digits - 2;
+        } else {
+            significant = countryCode.length() + digits - (firstDigit(phone) == '0' ? 1 : 0);
+        }
+        if (kind != LOCAL && digitAt(phone, kind == PLUS ? 0 : 2) == '0') {
+            return -1;//country codes never start with 0
+        }
+        return significant >= E164_MIN_DIGITS && significant <= E164_MAX_DIGITS ? significant : -1;
+    }
+    public static String phoneQuery(String query) {
+        //a search typed like a phone number ("555-1234", "(555) 123", "+44 20") as it appears inside a stored number-
+        //the separators dropped, the same ones normalizePhoneNumber drops; null if the query is not only digits and separators
+        int digits = 0;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (!isSeparator(c) && !(c == '+' && digits == 0)) {
+                return null;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(digits + 1);
+        if (query.indexOf('+') >= 0) {
+            out.append('+');//stored E164 numbers start with it
+        }
+        return keepDigits(query, out, 0);
+    }
+    private static int kind(String phone) {
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c == '+') {
+                return PLUS;
+            }
+            if (c >= '0' && c <= '9') {
+                return c == '0' && digitAt(phone, 1) == '0' ? DOUBLE_ZERO : LOCAL;
+            }
+        }
+        return LOCAL;
+    }
+    private static char firstDigit(String phone) {
+        return digitAt(phone, 0);
+    }
+    private static char digitAt(String phone, int n) {
+        //the nth digit (from 0), or 0 if there are not that many
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9' && n-- == 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+    private static String keepDigits(String phone, StringBuilder out, int skip) {
+        //appends the digits of phone after the first skip digits
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9' && skip-- <= 0) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '-' || c == '.' || c == '(' || c == ')';
+    }
+    private static boolean allDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+    //============================================= EMAIL ===========================================================================================
+    //local-part@domain as used by mail servers (RFC 5321/5322 dot-atom, RFC 1035 host names):
+    //- at most 64 characters before the '@', 254 in total
+    //- the local part is letters, digits and !#$%&'*+/=?^_`{|}~- separated by single dots, not starting or ending with one
+    //- the domain is at least two labels of letters, digits and hyphens, each 1-63 long and not starting or ending with a hyphen,
+    //  and the last one is not all digits
+    //non-ascii letters are accepted in both parts (internationalized addresses); quoted local parts and [ip] domains are not
+    public boolean isValidEmail(String email) {
+        int length = email.length();
+        int at = email.indexOf('@');
+        if (at < 1 || at > 64 || length > 254) {
+            return false;
+        }
+        //--------------------local part
+        char previous = '.';//so a leading dot counts as a double dot
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                if (previous == '.') {
+                    return false;
+                }
+            } else if (c < 128 ? !LOCAL_PART_CHARS[c] : Character.isWhitespace(c) || isControl(c)) {
+                return false;
+            }
+            previous = c;
+        }
+        if (previous == '.') {
+            return false;
+        }
+        //--------------------domain
+        int labels = 0;
+        int labelStart = at + 1;
+        boolean numericLabel = true;
+        for (int i = at + 1; i <= length; i++) {
+            char c = i < length ? email.charAt(i) : '.';//the end closes the last label
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                if (labelLength == 0 || labelLength > 63 || email.charAt(labelStart) == '-' || email.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labels++;
+                if (i == length && numericLabel) {
+                    return false;//top-level domains are never numbers
+                }
+                labelStart = i + 1;
+                numericLabel = true;
+            } else if (c >= '0' && c <= '9') {
+                continue;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || (c >= 128 && Character.isLetterOrDigit(c))) {
+                numericLabel = false;
+            } else {
+                return false;//includes a second '@'
+            }
+        }
+        return labels >= 2;
+    }
+    public String normalizeEmail(String email) {
+        //canonical form, used as the stored value and for duplicate checks- null if it is not valid
+        //the domain is case insensitive and gets lowercased, the local part is kept as typed (mail servers may treat it case sensitively)
+        if (!isValidEmail(email)) {
+            return null;
+        }
+        int at = email.indexOf('@');
+        for (int i = at + 1; i < email.length(); i++) {
+            if (Character.isUpperCase(email.charAt(i))) {
+                return email.substring(0, at + 1) + email.substring(at + 1).toLowerCase(Locale.ROOT);
+            }
+        }
+        return email;
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+// for exceptions thrown when an I/O operation fails
+import java.nio.ByteBuffer;
+//the file is read into large byte buffers instead of through a Reader- no char[] copies or line strings
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CsvContactLoader {
+    //==========================INITIALIZE===============================================
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    //the file is cut into ~4MB pieces, each ending on a line boundary, that are parsed in parallel
+    //============================================= RESULT ===========================================================================================
+    public static class Result {
+        public final TreeMap<String, Contact> contacts;//sorted by name, ready to use
+        public final List<String> errors;//one message per row that could not be read
+        public final int rows;//number of non-blank rows in the file
+        Result(TreeMap<String, Contact> contacts, List<String> errors, int rows) {
+            this.contacts = contacts;
+            this.errors = errors;
+            this.rows = rows;
+        }
+    }
+    //----------------------------------- parsed piece of the file ------------------------
+    static class Chunk {
+        //also used by ContactImporter, which validates the rows itself
+        List<Contact> contacts = new ArrayList<>();
+        int[] contactLines = new int[256];//line of each contact, relative to the chunk
+        List<String> errors = new ArrayList<>();//messages with line numbers relative to the chunk
+        List<Integer> errorLines = new ArrayList<>();
+        int lines;//lines seen in this chunk- used to turn local line numbers into file line numbers
+        int rows;
+        int open = -1;//start of a row whose quoted field runs on past the end of the piece, -1 if there is none
+    }
+    //============================================= LOAD ===========================================================================================
+    public static Result load(Path file) throws IOException {
+        //--------------------read the file and parse every piece in parallel
+        List<Chunk> chunks;
+        try (Pieces pieces = new Pieces(file)) {
+            chunks = parse(pieces, Integer.MAX_VALUE);
+        }
+        //--------------------stitch the pieces together
+        List<String> errors = new ArrayList<>();
+        int lineOffset = 0;
+        int rows = 0;
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.errors.size(); i++) {
+                errors.add("line " + (lineOffset + chunk.errorLines.get(i)) + ": " + chunk.errors.get(i));
+            }
+            lineOffset += chunk.lines;
+            rows += chunk.rows;
+            total += chunk.contacts.size();
+        }
+        Contact[] all = new Contact[total];
+        int next = 0;
+        for (Chunk chunk : chunks) {
+            for (Contact contact : chunk.contacts) {
+                all[next++] = contact;
+            }
+        }
+        //--------------------sort once and build the treemap in one pass
+        //parallelSort is stable, so of two rows with the same name the later one stays last- same as put() overwriting it
+        Arrays.parallelSort(all, Comparator.comparing(Contact::getName));
+        List<Contact> unique = new ArrayList<>(all.length);
+        for (int i = 0; i < all.length; i++) {
+            if (i + 1 < all.length && all[i].getName().equals(all[i + 1].getName())) {
+                errors.add("duplicate name \"" + all[i].getName() + "\": the later row was kept");
+                continue;
+            }
+            unique.add(all[i]);
+        }
+        //the tree is built straight from the sorted entries in O(n), no rebalancing per put
+        TreeMap<String, Contact> contacts = SortedContacts.treeMap(unique);
+        return new Result(contacts, errors, rows);
+    }
+    //============================================= READ ON LINE BOUNDARIES ===========================================================================================
+    static class Pieces implements Closeable {
+        //the file in pieces of about CHUNK_SIZE, in file order, each ending on a line boundary
+        //plain reads into heap buffers, not memory-mapped: a mapping lives until its buffer is garbage collected, and on
+        //Windows the file cannot be replaced by compaction's rename while it is mapped
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private ByteBuffer carry = ByteBuffer.allocate(0);//bytes after the last line boundary read so far, or a row handed back
+        Pieces(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+            if (size >= 3) {
+                //skip a UTF-8 byte order mark if the file starts with one
+                ByteBuffer head = ByteBuffer.allocate(3);
+                while (head.hasRemaining() && channel.read(head, head.position()) >= 0) {
+                    //read until the 3 bytes are in
+                }
+                if ((head.get(0) & 0xFF) == 0xEF && (head.get(1) & 0xFF) == 0xBB && (head.get(2) & 0xFF) == 0xBF) {
+                    position = 3;
+                }
+            }
+        }
+        boolean hasNext() {
+            return carry.hasRemaining() || position < size;
+        }
+        ByteBuffer next() throws IOException {
+            //what was carried over plus about CHUNK_SIZE more bytes, cut right after the last newline unless the file ends there
+            long length = CHUNK_SIZE;
+            while (true) {
+                ByteBuffer buffer = ByteBuffer.allocate(carry.remaining() + (int) Math.min(length, size - position));
+                buffer.put(carry.duplicate());
+                long at = position;
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, at);
+                    if (read < 0) {
+                        throw new EOFException("File got shorter while it was read");
+                    }
+                    at += read;
+                }
+                buffer.flip();
+                int end = buffer.limit();
+                if (at < size) {
+                    end--;
+                    while (end >= 0 && buffer.get(end) != '\n') {
+                        end--;
+                    }
+                    end++;
+                    if (end == 0) {
+                        //a single line longer than the piece- read a bigger window and try again
+                        length *= 2;
+                        continue;
+                    }
+                }
+                position = at;
+                ByteBuffer rest = buffer.duplicate();
+                rest.position(end);
+                carry = rest.slice();
+                buffer.limit(end);
+                return buffer.slice();
+            }
+        }
+        void unread(ByteBuffer piece, int from) {
+            //the end of piece from position from is read again, ahead of the rest of the file
+            carry = join(piece, from, carry);
+        }
+        double fraction() {
+            return size == 0 ? 1 : (double) position / size;
+        }
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    //============================================= PARSE PIECES ===========================================================================================
+    static List<Chunk> parse(Pieces pieces, int count) throws IOException {
+        //reads up to count more pieces and parses them in parallel- the chunks come back in file order (parallelStream keeps
+        //it when collecting), none once the file is done
+        //pieces end on a line boundary, but a quoted field may hold line breaks: a row cut off that way is left out of its
+        //chunk and parsed again together with the next piece- or, after the last piece read, handed back for the next call
+        List<ByteBuffer> buffers = new ArrayList<>();
+        while (buffers.size() < count && pieces.hasNext()) {
+            buffers.add(pieces.next());
+        }
+        boolean endOfFile = !pieces.hasNext();
+        int last = buffers.size() - 1;
+        List<Chunk> chunks = new ArrayList<>(IntStream.rangeClosed(0, last).parallel()
+                .mapToObj(i -> parse(buffers.get(i), endOfFile && i == last)).collect(Collectors.toList()));
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            if (chunk.open < 0) {
+                continue;
+            }
+            if (i == last) {
+                pieces.unread(buffers.get(i), chunk.open);
+                break;
+            }
+            ByteBuffer joined = join(buffers.get(i), chunk.open, buffers.get(i + 1));
+            buffers.set(i + 1, joined);
+            chunks.set(i + 1, parse(joined, endOfFile && i + 1 == last));//may run on into the piece after it too
+        }
+        return chunks;
+    }
+    private static ByteBuffer join(ByteBuffer piece, int from, ByteBuffer next) {
+        //the end of piece from position from, followed by all of next, in one heap buffer
+        ByteBuffer tail = piece.duplicate();
+        tail.position(from);
+        ByteBuffer joined = ByteBuffer.allocate(tail.remaining() + next.limit());
+        joined.put(tail).put(next.duplicate());
+        joined.flip();
+        return joined;
+    }
+    //============================================= PARSE ONE PIECE ===========================================================================================
+    static Chunk parse(ByteBuffer buffer, boolean last) {
+        //hand-written tokenizer- fields may be wrapped in double quotes, "" inside quotes is a literal quote, and a quoted
+        //field may hold commas and line breaks (as ContactJournal writes them)
+        //field bytes are copied into one reusable scratch array and decoded once, so the only allocations per row are the three strings
+        //last- no piece follows, so a quote still open at the end is never closed
+        Chunk chunk = new Chunk();
+        byte[] scratch = new byte[128];
+        String[] fields = new String[3];
+        int limit = buffer.limit();
+        int pos = 0;
+        rows:
+        while (pos < limit) {
+            int rowStart = pos;
+            int linesBefore = chunk.lines;
+            chunk.lines++;
+            int line = chunk.lines;//rows are reported by the line they start on
+            int count = 0;//number of fields seen on this row
+            String problem = null;
+            boolean endOfLine = false;
+            while (!endOfLine) {
+                int n = 0;//bytes of the current field in scratch
+                boolean quoted = false;
+                if (pos < limit && buffer.get(pos) == '"') {
+                    quoted = true;
+                    pos++;
+                }
+                while (pos < limit) {
+                    byte b = buffer.get(pos);
+                    if (quoted) {
+                        if (b == '"') {
+                            if (pos + 1 < limit && buffer.get(pos + 1) == '"') {
+                                pos++;//escaped quote- keep one of the two
+                            } else {
+                                quoted = false;//closing quote
+                                pos++;
+                                continue;
+                            }
+                        } else if (b == '\n') {
+                            chunk.lines++;//part of the field
+                        }
+                    } else if (b == ',' || b == '\n') {
+                        break;
+                    }
+                    if (n == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, n * 2);
+                    }
+                    scratch[n++] = b;
+                    pos++;
+                }
+                if (quoted) {
+                    if (!last) {
+                        //the piece ended inside the quotes- the rest of the row is in the next piece
+                        chunk.open = rowStart;
+                        chunk.lines = linesBefore;
+                        break rows;
+                    }
+                    if (problem == null) {
+                        problem = "unterminated quote";
+                    }
+                }
+                if (pos < limit && buffer.get(pos) == ',') {
+                    pos++;
+                } else {
+                    endOfLine = true;
+                    pos++;//step over the newline (or past the end)
+                    if (n > 0 && scratch[n - 1] == '\r') {
+                        n--;//windows line endings
+                    }
+                }
+                if (count < fields.length) {
+                    fields[count] = new String(scratch, 0, n, StandardCharsets.UTF_8);
+                }
+                count++;
+            }
+            //--------------------check the row
+            if (count == 1 && fields[0].isEmpty()) {
+                continue;//blank line
+            }
+            chunk.rows++;
+            if (problem == null && count != 3) {
+                problem = "expected 3 fields (name,phone,email) but found " + count;
+            }
+            if (problem == null && (fields[0].isEmpty() || fields[1].isEmpty() || fields[2].isEmpty())) {
+                problem = "empty name, phone or email";
+            }
+            if (problem != null) {
+                //the row is reported and skipped instead of aborting the whole load
+                chunk.errorLines.add(line);
+                chunk.errors.add(problem);
+                continue;
+            }
+            if (chunk.contacts.size() == chunk.contactLines.length) {
+                chunk.contactLines = Arrays.copyOf(chunk.contactLines, chunk.contactLines.length * 2);
+            }
+            chunk.contactLines[chunk.contacts.size()] = line;
+            chunk.contacts.add(new Contact(fields[0], fields[1], fields[2]));
+        }
+        return chunk;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,550 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+//rebuilds run on a thread of their own
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+//searches run on a background thread while edits come from any writer
+
+public class FuzzyNameIndex {
+    //typo tolerant, ranked name search: "jon smyth" finds "John Smith"
+    //names are split into lowercase words (tokens); every distinct token is indexed once, however many contacts share it-
+    //- by the hashes of the token and of every way to delete one letter from it, to find the tokens within a few edits
+    //  of a query word without comparing it to all of them (the query's own deletions, up to two, are looked up)
+    //- by Soundex code, to find tokens that sound alike ("Catherine" / "Kathryn")
+    //- in sorted order, to find tokens the query word is the start of ("jo" -> "john", "joanna")
+    //contacts reached through those tokens are scored and only the best K are kept, in a bounded heap
+    //==========================INITIALIZE===============================================
+    private static final int MAX_CANDIDATES = 5000;
+    //contacts scored per search at most- keeps a search on a very common word within a few milliseconds
+    private static final int MAX_PREFIX_TOKENS = 64;
+    //tokens a query word may be the start of that are looked at
+    private static final float PREFIX_SCORE = 0.9f;
+    private static final float PHONETIC_SCORE = 0.6f;
+    //scores of a query word against a token: 1 for the same word, these for a prefix or a word that sounds the same,
+    //and 0.9 * (1 - edits / length) for a word a few edits away
+    private HashMap<String, Integer> ids = new HashMap<>();
+    private String[] keys = new String[1024];
+    private int[][] documentTokens = new int[1024][];
+    //document id -> key (contact name) and the ids of its tokens- null once removed; like in NGramIndex the id is only
+    //dropped from the posting lists by the next rebuild
+    private int nextId;
+    private int removed;
+    private HashMap<String, Integer> tokenIds = new HashMap<>();
+    private TreeMap<String, Integer> sortedTokens = new TreeMap<>();
+    private String[] tokens = new String[1024];
+    private int[][] postings = new int[1024][];
+    private int[] postingSizes = new int[1024];
+    //token id -> token, and the ids of the documents containing it, in ascending order
+    private int tokenCount;
+    private HashMap<String, List<Integer>> phonetic = new HashMap<>();
+    //Soundex code -> ids of the tokens with that code
+    private long[] deleteHashes = new long[4096];
+    private int[] deleteTokens = new int[4096];
+    private int deleteCount;
+    //open-addressing multimap: hash of a token or of the token with one letter deleted (0 = empty slot) -> token id
+    //a hash may be there many times, a lookup collects every slot with it up to the next empty one
+    //a BK-tree was tried first, but with ten thousands of short names within two edits of each other it ended up comparing
+    //the query with nearly every token
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final ExecutorService REBUILDS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fuzzy-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private List<Edit> rebuildLog;
+    //as in NGramIndex- adds and removes made while a rebuild runs in the background, null when none runs
+    private static final class Edit {
+        final String key;
+        final List<String> words;//null for a remove
+        Edit(String key, List<String> words) {
+            this.key = key;
+            this.words = words;
+        }
+    }
+    //============================================= ADD / REMOVE ===========================================================================================
+    public void add(String key, String name) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);//re-adding a key replaces whatever was indexed for it before
+            List<String> words = tokenize(name);
+            index(key, words);
+            if (rebuildLog != null) {
+                rebuildLog.add(new Edit(key, words));
+            }
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void index(String key, List<String> words) {
+        if (nextId == keys.length) {
+            keys = Arrays.copyOf(keys, nextId * 2);
+            documentTokens = Arrays.copyOf(documentTokens, nextId * 2);
+        }
+        int id = nextId++;
+        int[] wordTokens = new int[words.size()];
+        for (int i = 0; i < wordTokens.length; i++) {
+            int token = tokenId(words.get(i));
+            wordTokens[i] = token;
+            int size = postingSizes[token];
+            int[] list = postings[token];
+            if (size > 0 && list[size - 1] == id) {
+                continue;//same word twice in one name
+            }
+            if (size == list.length) {
+                list = postings[token] = Arrays.copyOf(list, size * 2);
+            }
+            list[size] = id;
+            postingSizes[token] = size + 1;
+        }
+        keys[id] = key;
+        documentTokens[id] = wordTokens;
+        ids.put(key, id);
+    }
+    private int tokenId(String word) {
+        Integer known = tokenIds.get(word);
+        if (known != null) {
+            return known;
+        }
+        //--------------------first time this word is seen- add it to every token structure
+        if (tokenCount == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokenCount * 2);
+            postings = Arrays.copyOf(postings, tokenCount * 2);
+            postingSizes = Arrays.copyOf(postingSizes, tokenCount * 2);
+        }
+        int token = tokenCount++;
+        tokens[token] = word;
+        postings[token] = new int[2];
+        tokenIds.put(word, token);
+        sortedTokens.put(word, token);
+        String code = soundex(word);
+        if (code != null) {
+            phonetic.computeIfAbsent(code, c -> new ArrayList<>(2)).add(token);
+        }
+        //--------------------the word and its one-letter deletions
+        //words with digits in them (house numbers, "2nd") are found exactly or by prefix only- a typo in a number is not a near miss
+        addDelete(hash(word, -1, -1), token);
+        for (int i = hasDigit(word) ? word.length() : 0; i < word.length(); i++) {
+            addDelete(hash(word, i, -1), token);
+        }
+        return token;
+    }
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            if (rebuildLog != null) {
+                rebuildLog.add(new Edit(key, null));
+            }
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void removeLocked(String key) {
+        Integer id = ids.remove(key);
+        if (id == null) {
+            return;//key was never indexed
+        }
+        keys[id] = null;
+        documentTokens[id] = null;
+        removed++;
+    }
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+            rebuildLog = null;//a running rebuild is thrown away when it ends
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void reset() {
+        ids = new HashMap<>();
+        keys = new String[1024];
+        documentTokens = new int[1024][];
+        nextId = 0;
+        removed = 0;
+        tokenIds = new HashMap<>();
+        sortedTokens = new TreeMap<>();
+        tokens = new String[1024];
+        postings = new int[1024][];
+        postingSizes = new int[1024];
+        tokenCount = 0;
+        phonetic = new HashMap<>();
+        deleteHashes = new long[4096];
+        deleteTokens = new int[4096];
+        deleteCount = 0;
+    }
+    //----------------------------------- rebuild ------------------------
+    private void rebuildIfNeeded() {
+        //more removed ids than live ones- drop them, and the words nobody uses any more; caller holds the write lock
+        //the new index is built in the background from a copy of the live documents, then swapped in (see NGramIndex)
+        if (rebuildLog != null || removed <= 1024 || removed <= ids.size()) {
+            return;
+        }
+        List<Edit> log = rebuildLog = new ArrayList<>();
+        String[] liveKeys = Arrays.copyOf(keys, nextId);
+        int[][] liveDocuments = Arrays.copyOf(documentTokens, nextId);
+        String[] liveTokens = tokens;//token ids are never reused until a reset, so the array needs no copy
+        REBUILDS.execute(() -> rebuild(liveKeys, liveDocuments, liveTokens, log));
+    }
+    private void rebuild(String[] liveKeys, int[][] liveDocuments, String[] liveTokens, List<Edit> log) {
+        FuzzyNameIndex fresh = new FuzzyNameIndex();
+        for (int id = 0; id < liveKeys.length; id++) {
+            if (liveKeys[id] != null) {
+                List<String> words = new ArrayList<>(liveDocuments[id].length);
+                for (int token : liveDocuments[id]) {
+                    words.add(liveTokens[token]);
+                }
+                fresh.index(liveKeys[id], words);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != log) {
+                return;//cleared meanwhile
+            }
+            for (Edit edit : log) {
+                fresh.removeLocked(edit.key);
+                if (edit.words != null) {
+                    fresh.index(edit.key, edit.words);
+                }
+            }
+            ids = fresh.ids;
+            keys = fresh.keys;
+            documentTokens = fresh.documentTokens;
+            nextId = fresh.nextId;
+            removed = fresh.removed;
+            tokenIds = fresh.tokenIds;
+            sortedTokens = fresh.sortedTokens;
+            tokens = fresh.tokens;
+            postings = fresh.postings;
+            postingSizes = fresh.postingSizes;
+            tokenCount = fresh.tokenCount;
+            phonetic = fresh.phonetic;
+            deleteHashes = fresh.deleteHashes;
+            deleteTokens = fresh.deleteTokens;
+            deleteCount = fresh.deleteCount;
+            rebuildLog = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    boolean rebuilding() {
+        //for tests- true while a rebuild runs in the background
+        lock.readLock().lock();
+        try {
+            return rebuildLog != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    //============================================= SEARCH ===========================================================================================
+    public List<String> search(String query, int limit) {
+        //keys of the best matches for query, best first, at most limit of them- safe to call from any thread
+        lock.readLock().lock();
+        try {
+            return searchLocked(tokenize(query), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    private List<String> searchLocked(List<String> words, int limit) {
+        List<String> results = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0) {
+            return results;
+        }
+        //--------------------score the tokens that could be meant by each query word
+        TokenScores[] matches = new TokenScores[words.size()];
+        int driver = -1;//the query word whose matching tokens reach the fewest contacts- candidates come from it
+        long driverPostings = Long.MAX_VALUE;
+        for (int w = 0; w < words.size(); w++) {
+            Map<Integer, Float> scores = matchTokens(words.get(w));
+            matches[w] = new TokenScores(scores);
+            long total = 0;
+            for (int token : scores.keySet()) {
+                total += postingSizes[token];
+            }
+            if (total > 0 && total < driverPostings) {
+                driver = w;
+                driverPostings = total;
+            }
+        }
+        if (driver < 0) {
+            return results;//no word matches anything
+        }
+        //--------------------candidates- contacts of the driver's tokens, best tokens first, until the budget is used
+        int[] candidates = new int[(int) Math.min(driverPostings, MAX_CANDIDATES)];
+        int count = 0;
+        BitSet seen = new BitSet(nextId);
+        for (int token : matches[driver].bestFirst()) {
+            int[] list = postings[token];
+            for (int i = 0; i < postingSizes[token] && count < candidates.length; i++) {
+                int id = list[i];
+                if (documentTokens[id] != null && !seen.get(id)) {
+                    seen.set(id);
+                    candidates[count++] = id;
+                }
+            }
+        }
+        //--------------------score every candidate against all query words, keep the best in a bounded heap
+        //the heap's head is the worst of the kept results, so a better candidate replaces it in O(log limit)
+        float[] scores = new float[count];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, count) + 1, (a, b) -> {
+            int cmp = Float.compare(scores[a], scores[b]);
+            return cmp != 0 ? cmp : keys[candidates[b]].compareTo(keys[candidates[a]]);//same score- later names are worse
+        });
+        for (int c = 0; c < count; c++) {
+            int[] documentWords = documentTokens[candidates[c]];
+            float total = 0;
+            for (TokenScores wordMatches : matches) {
+                float best = 0;
+                for (int token : documentWords) {
+                    best = Math.max(best, wordMatches.get(token));
+                }
+                total += best;
+            }
+            //a name with words nobody asked for ranks a little lower than an exact one
+            scores[c] = total / words.size() - 0.01f * Math.max(0, documentWords.length - words.size());
+            if (heap.size() < limit) {
+                heap.add(c);
+            } else if (heap.comparator().compare(c, heap.peek()) > 0) {
+                heap.poll();//better than the worst kept result- most candidates never get this far
+                heap.add(c);
+            }
+        }
+        //--------------------best first
+        while (!heap.isEmpty()) {
+            results.add(keys[candidates[heap.poll()]]);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+    private Map<Integer, Float> matchTokens(String word) {
+        //token id -> how well it matches word (0 to 1), for every token that matches at all
+        Map<Integer, Float> scores = new HashMap<>();
+        //--------------------a few edits away
+        //a token one edit away shares a one-letter deletion (or is one) with the word; for two edits the word's two-letter
+        //deletions are looked up as well- this finds every token within two edits except ones needing two deletions on
+        //both sides (two letters changed), which is rare enough for a typo not to be worth 30 index entries per token
+        int maxEdits = word.length() <= 2 ? 0 : word.length() <= 4 ? 1 : 2;
+        HashSet<Integer> near = new HashSet<>();
+        collectDeletes(hash(word, -1, -1), near);
+        for (int i = 0; i < word.length() && maxEdits > 0; i++) {
+            collectDeletes(hash(word, i, -1), near);
+            for (int j = i + 1; j < word.length() && maxEdits > 1; j++) {
+                collectDeletes(hash(word, i, j), near);
+            }
+        }
+        for (int token : near) {
+            if (postingSizes[token] == 0) {
+                continue;
+            }
+            int distance = distance(word, tokens[token], maxEdits);
+            if (distance <= maxEdits) {
+                float score = distance == 0 ? 1f : 0.9f * (1f - (float) distance / Math.max(word.length(), tokens[token].length()));
+                scores.merge(token, score, Math::max);
+            }
+        }
+        //--------------------words it is the start of (as you type)
+        int prefixes = 0;
+        for (Map.Entry<String, Integer> entry : sortedTokens.tailMap(word, false).entrySet()) {
+            if (!entry.getKey().startsWith(word) || prefixes++ >= MAX_PREFIX_TOKENS) {
+                break;
+            }
+            scores.merge(entry.getValue(), PREFIX_SCORE, Math::max);
+        }
+        //--------------------words that sound the same
+        String code = soundex(word);
+        if (code != null && word.length() > 2) {
+            for (int token : phonetic.getOrDefault(code, Collections.emptyList())) {
+                scores.merge(token, PHONETIC_SCORE, Math::max);
+            }
+        }
+        return scores;
+    }
+    //----------------------------------- scores of one query word ------------------------
+    private static class TokenScores {
+        //token id -> score, as a small open-addressing table- looked up for every word of every candidate, so no boxing
+        private final int[] tokens;//token id + 1, 0 = empty slot
+        private final float[] scores;
+        private final Map<Integer, Float> byToken;
+        TokenScores(Map<Integer, Float> byToken) {
+            this.byToken = byToken;
+            int capacity = Integer.highestOneBit(Math.max(4, byToken.size() * 4) - 1) << 1;
+            tokens = new int[capacity];
+            scores = new float[capacity];
+            for (Map.Entry<Integer, Float> entry : byToken.entrySet()) {
+                int slot = (entry.getKey() * 0x9E3779B9) >>> 8 & (capacity - 1);
+                while (tokens[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                tokens[slot] = entry.getKey() + 1;
+                scores[slot] = entry.getValue();
+            }
+        }
+        float get(int token) {
+            int mask = tokens.length - 1;
+            int slot = (token * 0x9E3779B9) >>> 8 & mask;
+            while (tokens[slot] != 0) {
+                if (tokens[slot] == token + 1) {
+                    return scores[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+        List<Integer> bestFirst() {
+            List<Integer> order = new ArrayList<>(byToken.keySet());
+            order.sort((a, b) -> Float.compare(byToken.get(b), byToken.get(a)));
+            return order;
+        }
+    }
+    //----------------------------------- deletion table ------------------------
+    private static boolean hasDigit(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isDigit(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    private static long hash(String word, int skip1, int skip2) {
+        //64-bit FNV-1a hash of word without the letters at skip1 and skip2 (-1 for none)- no substring is created
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            if (i != skip1 && i != skip2) {
+                hash = (hash ^ word.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return hash == 0 ? 1 : hash;//0 marks an empty slot
+    }
+    private void addDelete(long hash, int token) {
+        if (deleteCount * 2 >= deleteHashes.length) {
+            long[] oldHashes = deleteHashes;
+            int[] oldTokens = deleteTokens;
+            deleteHashes = new long[oldHashes.length * 2];
+            deleteTokens = new int[oldHashes.length * 2];
+            deleteCount = 0;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldHashes[i] != 0) {
+                    addDelete(oldHashes[i], oldTokens[i]);
+                }
+            }
+        }
+        int mask = deleteHashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (deleteHashes[slot] != 0) {
+            if (deleteHashes[slot] == hash && deleteTokens[slot] == token) {
+                return;//a word with a doubled letter has the same deletion twice
+            }
+            slot = (slot + 1) & mask;
+        }
+        deleteHashes[slot] = hash;
+        deleteTokens[slot] = token;
+        deleteCount++;
+    }
+    private void collectDeletes(long hash, Set<Integer> out) {
+        int mask = deleteHashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (deleteHashes[slot] != 0) {
+            if (deleteHashes[slot] == hash) {
+                out.add(deleteTokens[slot]);//a hash collision only adds a candidate, the edit distance check drops it
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    //============================================= TEXT ===========================================================================================
+    static List<String> tokenize(String name) {
+        //lowercase words- letters and digits, split on everything else
+        List<String> words = new ArrayList<>(3);
+        int start = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            boolean wordChar = i < name.length() && Character.isLetterOrDigit(name.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(name.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+    static int distance(String a, String b, int limit) {
+        //edit distance counting insertions, deletions, substitutions and swaps of two neighbouring letters (typos)
+        //stops early and returns limit + 1 once every path is over limit
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] before = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, before[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+    static String soundex(String word) {
+        //American Soundex: first letter and three digits for the consonant sounds that follow- "robert" and "rupert" are both R163
+        //except that a first consonant is kept as its digit too, so "catherine" and "kathrine" (2365) or "philip" and "filip" sound alike
+        //null for words that do not start with a letter a-z
+        char first = word.isEmpty() ? 0 : word.charAt(0);
+        if (first < 'a' || first > 'z') {
+            return null;
+        }
+        char[] code = {soundexDigit(first) != '0' ? soundexDigit(first) : Character.toUpperCase(first), '0', '0', '0'};
+        int length = 1;
+        char last = soundexDigit(first);
+        for (int i = 1; i < word.length() && length < 4; i++) {
+            char c = word.charAt(i);
+            char digit = soundexDigit(c);
+            if (digit != '0' && digit != last) {
+                code[length++] = digit;
+            }
+            if (c != 'h' && c != 'w') {
+                last = digit;//h and w do not separate two letters with the same code, vowels do
+            }
+        }
+        return new String(code);
+    }
+    private static char soundexDigit(char c) {
+        switch (c) {
+            case 'b': case 'f': case 'p': case 'v':
+                return '1';
+            case 'c': case 'g': case 'j': case 'k': case 'q': case 's': case 'x': case 'z':
+                return '2';
+            case 'd': case 't':
+                return '3';
+            case 'l':
+                return '4';
+            case 'm': case 'n':
+                return '5';
+            case 'r':
+                return '6';
+            default:
+                return '0';//vowels, h, w, y and anything that is not a letter a-z
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+//recorded from many threads at once without a lock
+
+public class LatencyHistogram {
+    //durations in nanoseconds, bucketed like an HDR histogram: exact below 64ns, then every power of two is split into
+    //32 equal buckets, so any percentile read back is within about 3% of the real value, from nanoseconds up to days
+    //recording is a few arithmetic steps and one atomic increment- nothing is allocated, and nothing is kept per value
+    //==========================INITIALIZE===============================================
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;//buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    //============================================= RECORD ===========================================================================================
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;//the clock is monotonic, but be safe
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        //keep the top SUB_BITS + 1 bits of the value- shift says how many were dropped
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    private static long highestValue(int bucket) {
+        //largest value that lands in bucket
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+    public void reset() {
+        //not atomic against concurrent record() calls- a value recorded meanwhile may be half counted
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+    //============================================= READ ===========================================================================================
+    public long getCount() {
+        return count.sum();
+    }
+    public long getMax() {
+        return max.get();
+    }
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+    public long getPercentile(double percentile) {
+        //value at or below which percentile (0-100) of the recorded values are, 0 when nothing was recorded
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class MapRows implements ContactRows {
+    //contacts as objects in concurrent maps- reads are lock-free, every lookup is a map access
+    //==========================INITIALIZE===============================================
+    private final ConcurrentSkipListMap<String, Contact> contacts;
+    //name -> contact, sorted by name
+    private final ConcurrentSkipListMap<String, Contact> foldedNames;
+    //the same contacts sorted ignoring case, for case-insensitive name prefixes
+    private final ConcurrentHashMap<String, Contact> phoneIndex;
+    private final ConcurrentHashMap<String, Contact> emailIndex;
+    //phone -> contact and email -> contact, for O(1) duplicate checks
+    private final NGramIndex searchIndex;
+    //trigram index over name, phone and email
+    //----------------------------------- constructor ------------------------
+    public MapRows() {
+        this(new ArrayList<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new NGramIndex());
+    }
+    private MapRows(List<Contact> sorted, ConcurrentHashMap<String, Contact> phoneIndex, ConcurrentHashMap<String, Contact> emailIndex, NGramIndex searchIndex) {
+        //both sorted maps are built in O(n) from contacts already in order
+        contacts = SortedContacts.skipListMap(sorted, null);
+        Contact[] byFoldedName = sorted.toArray(new Contact[0]);
+        Arrays.parallelSort(byFoldedName, Comparator.comparing(Contact::getName, FOLDED_ORDER));
+        foldedNames = SortedContacts.skipListMap(Arrays.asList(byFoldedName), FOLDED_ORDER);
+        this.phoneIndex = phoneIndex;
+        this.emailIndex = emailIndex;
+        this.searchIndex = searchIndex;
+    }
+    public static Builder builder(int expected) {
+        ArrayList<Contact> sorted = new ArrayList<>(expected);
+        ConcurrentHashMap<String, Contact> phones = new ConcurrentHashMap<>(expected * 2);
+        ConcurrentHashMap<String, Contact> emails = new ConcurrentHashMap<>(expected * 2);
+        NGramIndex search = new NGramIndex();
+        return new Builder() {
+            public void add(Contact contact) {
+                sorted.add(contact);
+                phones.put(contact.getPhone(), contact);
+                emails.put(contact.getEmail(), contact);
+                search.add(contact.getName(), contact.getName(), contact.getPhone(), contact.getEmail());
+            }
+            public ContactRows build() {
+                return new MapRows(sorted, phones, emails, search);
+            }
+        };
+    }
+    //============================================= READ ===========================================================================================
+    public Contact get(String name) {
+        return contacts.get(name);
+    }
+    public Contact getByPhone(String phone) {
+        return phoneIndex.get(phone);
+    }
+    public Contact getByEmail(String email) {
+        return emailIndex.get(email);
+    }
+    public int size() {
+        return contacts.size();
+    }
+    public Collection<Contact> values() {
+        //a live view that never throws ConcurrentModificationException
+        return Collections.unmodifiableCollection(contacts.values());
+    }
+    public Collection<Contact> snapshot() {
+        //contacts are immutable, so copying the values is enough
+        return new ArrayList<>(contacts.values());
+    }
+    public List<Contact> search(String query) {
+        List<String> names = searchIndex.search(query);//only contacts sharing the query's trigrams are looked at
+        Collections.sort(names);//index returns matches unordered- sort the hits to keep name order
+        List<Contact> results = new ArrayList<>(names.size());
+        for (String name : names) {
+            Contact contact = contacts.get(name);
+            if (contact != null) {//may have been deleted since the index was read
+                results.add(contact);
+            }
+        }
+        return results;
+    }
+    public List<Contact> startingWith(String prefix, boolean ignoreCase, int limit) {
+        List<Contact> results = new ArrayList<>();
+        if (!ignoreCase) {
+            for (Contact contact : contacts.tailMap(prefix).values()) {
+                if (results.size() == limit || !contact.getName().startsWith(prefix)) {
+                    break;
+                }
+                results.add(contact);
+            }
+            return results;
+        }
+        //keys equal to the prefix but for case may sort just before it ("ANNA" < "anna")- step back over them
+        String from = prefix;
+        for (String lower = foldedNames.lowerKey(from); lower != null && lower.equalsIgnoreCase(prefix); lower = foldedNames.lowerKey(lower)) {
+            from = lower;
+        }
+        for (Contact contact : foldedNames.tailMap(from).values()) {
+            if (results.size() == limit || !contact.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            results.add(contact);
+        }
+        return results;
+    }
+    //============================================= WRITE ===========================================================================================
+    public Contact put(Contact old, Contact contact) {
+        String name = contact.getName();
+        if (old != null) {
+            phoneIndex.remove(old.getPhone(), old);
+            emailIndex.remove(old.getEmail(), old);
+            searchIndex.remove(name);
+        }
+        contacts.put(name, contact);
+        foldedNames.put(name, contact);
+        phoneIndex.put(contact.getPhone(), contact);
+        emailIndex.put(contact.getEmail(), contact);
+        searchIndex.add(name, name, contact.getPhone(), contact.getEmail());
+        return contact;
+    }
+    public void remove(Contact old) {
+        phoneIndex.remove(old.getPhone(), old);
+        emailIndex.remove(old.getEmail(), old);
+        searchIndex.remove(old.getName());
+        contacts.remove(old.getName());
+        foldedNames.remove(old.getName());
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+//rebuilds run on a thread of their own
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+//searches run on a background thread while edits come from the UI thread
+
+public class NGramIndex {
+    //==========================INITIALIZE===============================================
+    private static final int N = 3;
+    //length of each gram- trigrams keep the posting lists short without blowing up memory
+    //every document gets an int id and posting lists are plain int arrays of ids- one million contacts add about
+    //30 million gram occurrences, which as HashSet entries cost more time and garbage than all the rest of loading
+    private HashMap<String, Integer> ids = new HashMap<>();
+    //key (contact name) -> id of its document
+    private String[] keys = new String[1024];
+    private String[][] documents = new String[1024][];
+    //id -> key and its normalized (lowercase) fields, kept so candidates can be verified and removed without re-normalizing
+    //null once the key is removed- its id stays in the posting lists until the next rebuild and is skipped by searches
+    private int nextId;
+    private int removed;//ids that are null but still in posting lists
+    private long[] grams = new long[1024];
+    private int[][] postings = new int[1024][];
+    private int[] postingSizes = new int[1024];
+    //open-addressing hash table: gram (its 3 chars packed into a long, 0 = empty slot) -> ids of documents containing it, in ascending order
+    private int gramCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //many searches may read at once, an add/remove waits for them and blocks them while it runs
+    private static final ExecutorService REBUILDS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //rebuilds run here instead of on the thread whose remove tipped the balance- re-indexing a million contacts takes seconds
+    private List<Edit> rebuildLog;
+    //adds and removes made while a rebuild runs, replayed onto the new index before it is swapped in- null when none runs
+    private static final class Edit {
+        final String key;
+        final String[] normalized;//null for a remove
+        Edit(String key, String[] normalized) {
+            this.key = key;
+            this.normalized = normalized;
+        }
+    }
+    //============================================= ADD / REMOVE ===========================================================================================
+    public void add(String key, String... fields) {
+        lock.writeLock().lock();
+        try {
+            addLocked(key, fields);
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void addLocked(String key, String... fields) {
+        removeLocked(key);//re-adding a key replaces whatever was indexed for it before
+        String[] normalized = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            normalized[i] = normalize(fields[i]);
+        }
+        index(key, normalized);
+        if (rebuildLog != null) {
+            rebuildLog.add(new Edit(key, normalized));
+        }
+    }
+    private void index(String key, String[] normalized) {
+        if (nextId == keys.length) {
+            keys = Arrays.copyOf(keys, nextId * 2);
+            documents = Arrays.copyOf(documents, nextId * 2);
+        }
+        int id = nextId++;
+        keys[id] = key;
+        documents[id] = normalized;
+        ids.put(key, id);
+        for (String field : normalized) {
+            //each field is split separately so that no gram spans two fields
+            for (int start = 0; start + N <= field.length(); start++) {
+                int slot = slot(gram(field, start), true);
+                int size = postingSizes[slot];
+                int[] list = postings[slot];
+                if (size > 0 && list[size - 1] == id) {
+                    continue;//gram seen before in this document- ids are added in order, so a repeat is always the last one
+                }
+                if (size == list.length) {
+                    list = postings[slot] = Arrays.copyOf(list, size * 2);
+                }
+                list[size] = id;
+                postingSizes[slot] = size + 1;
+            }
+        }
+    }
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            if (rebuildLog != null) {
+                rebuildLog.add(new Edit(key, null));
+            }
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void removeLocked(String key) {
+        Integer id = ids.remove(key);
+        if (id == null) {
+            return;//key was never indexed
+        }
+        //taking an id out of long posting lists would cost O(list) per gram- it is only marked removed here
+        keys[id] = null;
+        documents[id] = null;
+        removed++;
+    }
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+            rebuildLog = null;//a running rebuild is thrown away when it ends
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void reset() {
+        ids = new HashMap<>();
+        keys = new String[1024];
+        documents = new String[1024][];
+        nextId = 0;
+        removed = 0;
+        grams = new long[1024];
+        postings = new int[1024][];
+        postingSizes = new int[1024];
+        gramCount = 0;
+    }
+    //----------------------------------- rebuild ------------------------
+    private void rebuildIfNeeded() {
+        //more removed ids than live ones- drop them so searches don't wade through them; caller holds the write lock
+        //only the live documents are copied here, the new index is built from them in the background while this one
+        //keeps answering searches, and swapped in once it has caught up with the edits made meanwhile
+        if (rebuildLog != null || removed <= 1024 || removed <= ids.size()) {
+            return;
+        }
+        List<Edit> log = rebuildLog = new ArrayList<>();
+        String[] liveKeys = Arrays.copyOf(keys, nextId);
+        String[][] liveDocuments = Arrays.copyOf(documents, nextId);
+        REBUILDS.execute(() -> rebuild(liveKeys, liveDocuments, log));
+    }
+    private void rebuild(String[] liveKeys, String[][] liveDocuments, List<Edit> log) {
+        //re-indexes the live documents under fresh, dense ids- the new index is not shared yet, so no lock is needed for that
+        NGramIndex fresh = new NGramIndex();
+        for (int id = 0; id < liveKeys.length; id++) {
+            if (liveKeys[id] != null) {
+                fresh.index(liveKeys[id], liveDocuments[id]);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != log) {
+                return;//cleared meanwhile
+            }
+            for (Edit edit : log) {
+                fresh.removeLocked(edit.key);
+                if (edit.normalized != null) {
+                    fresh.index(edit.key, edit.normalized);
+                }
+            }
+            ids = fresh.ids;
+            keys = fresh.keys;
+            documents = fresh.documents;
+            nextId = fresh.nextId;
+            removed = fresh.removed;
+            grams = fresh.grams;
+            postings = fresh.postings;
+            postingSizes = fresh.postingSizes;
+            gramCount = fresh.gramCount;
+            rebuildLog = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    boolean rebuilding() {
+        //for tests- true while a rebuild runs in the background
+        lock.readLock().lock();
+        try {
+            return rebuildLog != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    //----------------------------------- gram table ------------------------
+    private static long gram(String field, int start) {
+        //the three chars side by side, plus a marker bit so that no gram is 0
+        return 1L << 48 | (long) field.charAt(start) << 32 | (long) field.charAt(start + 1) << 16 | field.charAt(start + 2);
+    }
+    private int slot(long gram, boolean create) {
+        //slot of gram in the table, or -1 if it is not there and create is false
+        int mask = grams.length - 1;
+        int slot = (int) ((gram * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (grams[slot] != 0) {
+            if (grams[slot] == gram) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        if (gramCount * 2 >= grams.length) {
+            grow();//keep the table at most half full
+            return slot(gram, true);
+        }
+        grams[slot] = gram;
+        postings[slot] = new int[4];
+        gramCount++;
+        return slot;
+    }
+    private void grow() {
+        long[] oldGrams = grams;
+        int[][] oldPostings = postings;
+        int[] oldSizes = postingSizes;
+        grams = new long[oldGrams.length * 2];
+        postings = new int[grams.length][];
+        postingSizes = new int[grams.length];
+        int mask = grams.length - 1;
+        for (int i = 0; i < oldGrams.length; i++) {
+            if (oldGrams[i] != 0) {
+                int slot = (int) ((oldGrams[i] * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+                while (grams[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grams[slot] = oldGrams[i];
+                postings[slot] = oldPostings[i];
+                postingSizes[slot] = oldSizes[i];
+            }
+        }
+    }
+    //============================================= SEARCH ===========================================================================================
+    public List<String> search(String query) {
+        //returns the keys of every document with at least one field containing query (case insensitive), in no particular order
+        //safe to call from any thread
+        lock.readLock().lock();
+        try {
+            return searchLocked(normalize(query));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    private List<String> searchLocked(String q) {
+        List<String> results = new ArrayList<>();
+        if (q.isEmpty()) {
+            return results;
+        }
+        if (q.length() < N) {
+            //too short to have a gram- check every document, but without lowercasing anything per query
+            for (int id = 0; id < nextId; id++) {
+                if (documents[id] != null && matches(documents[id], q)) {
+                    results.add(keys[id]);
+                }
+            }
+            return results;
+        }
+        //--------------------candidates from the shortest posting list
+        //every match must contain all grams of the query, so the rarest gram bounds the work
+        int smallest = -1;
+        for (int start = 0; start + N <= q.length(); start++) {
+            int slot = slot(gram(q, start), false);
+            if (slot < 0) {
+                return results;//some gram occurs nowhere- nothing can match
+            }
+            if (smallest < 0 || postingSizes[slot] < postingSizes[smallest]) {
+                smallest = slot;
+            }
+        }
+        //--------------------verify candidates
+        //sharing all grams does not guarantee the grams are adjacent, so confirm with contains
+        int[] list = postings[smallest];
+        for (int i = 0; i < postingSizes[smallest]; i++) {
+            String[] fields = documents[list[i]];
+            if (fields != null && matches(fields, q)) {//null- removed since it was indexed
+                results.add(keys[list[i]]);
+            }
+        }
+        return results;
+    }
+    private static boolean matches(String[] fields, String q) {
+        for (String field : fields) {
+            if (field.contains(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+//completions are looked up on the UI thread while edits come from any thread
+
+public class PhoneTrie {
+    //phone numbers by their digits, for "starts with" lookups as a number is typed- "555 12" finds 5551234567 and (555) 123-0000
+    //a radix trie: a run of nodes with a single child is one node whose label is several digits, so there are at most
+    //two nodes per number instead of one per digit
+    //nodes are rows of parallel int arrays, and a label is not copied- it points into the digits of a number below the node
+    //==========================INITIALIZE===============================================
+    private String[] phones = new String[1024];
+    //id -> phone as stored, null once removed
+    private String[] digits = new String[1024];
+    //id -> the phone's digits (the phone itself when it has nothing else)- kept after a remove, labels may still point into it
+    private int[] nextSame = new int[1024];
+    //id -> next id ending at the same node (two phones with the same digits, e.g. "555-1234" and "5551234"), -1 at the end
+    private int nextId;
+    private int removed;//removed ids whose digits are still referenced
+    private int[] labelOwner = new int[1024];
+    private int[] labelRange = new int[1024];
+    //node -> id whose digits hold the label, and the label's start << 16 | end in those digits
+    private byte[] firstDigits = new byte[1024];
+    //node -> first digit of its label, the only one looked at when choosing a child
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    //node -> first child and next sibling, -1 for none- siblings are in ascending order of their first digit
+    private static final int LIST_CHILDREN = 4;
+    private int[] childBlocks = new int[1024];
+    private int[] blocks = new int[640];
+    private int blockCount;
+    //a node with more than LIST_CHILDREN children gets a block of ten slots in blocks instead, one per digit (-1 = none),
+    //and childBlocks points at it (-1 while its children are a list)- the crowded upper levels are then crossed in one step
+    //each instead of a walk along up to ten siblings scattered over memory
+    private int[] values = new int[1024];
+    //node -> first id whose digits end exactly here, -1 for none
+    private int nodeCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //many lookups may read at once, an add/remove waits for them and blocks them while it runs
+    //----------------------------------- constructor ------------------------
+    public PhoneTrie() {
+        reset();
+    }
+    //============================================= ADD / REMOVE ===========================================================================================
+    public void add(String phone) {
+        lock.writeLock().lock();
+        try {
+            String key = digitsOf(phone);
+            if (!key.isEmpty()) {
+                index(phone, key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void index(String phone, String key) {
+        //adding a phone that is already there changes nothing
+        if (nextId == phones.length) {
+            phones = Arrays.copyOf(phones, nextId * 2);
+            digits = Arrays.copyOf(digits, nextId * 2);
+            nextSame = Arrays.copyOf(nextSame, nextId * 2);
+        }
+        int id = nextId++;
+        phones[id] = phone;
+        digits[id] = key;
+        //--------------------walk down as far as the key matches, splitting the node where it stops matching
+        int node = 0;
+        int pos = 0;
+        while (pos < key.length()) {
+            int child = child(node, key.charAt(pos));
+            if (child == -1) {
+                //no child starts with this digit- the rest of the key becomes one new leaf
+                int leaf = newNode(id, pos, key.length());
+                addChild(node, leaf);
+                node = leaf;
+                break;
+            }
+            int start = labelRange[child] >>> 16;
+            int end = labelRange[child] & 0xFFFF;
+            int common = 1;//the first digit matched already- one-digit labels, most of the upper levels, never read the digits
+            String label = end - start > 1 ? digits[labelOwner[child]] : null;
+            while (start + common < end && pos + common < key.length() && label.charAt(start + common) == key.charAt(pos + common)) {
+                common++;
+            }
+            if (start + common < end) {
+                //key leaves the label halfway- put a node for the shared part above the child
+                int middle = newNode(labelOwner[child], start, start + common);
+                replaceChild(node, child, middle);
+                labelRange[child] = (start + common) << 16 | end;
+                firstDigits[child] = (byte) label.charAt(start + common);
+                addChild(middle, child);
+                child = middle;
+            }
+            node = child;
+            pos += common;
+        }
+        for (int other = values[node]; other != -1; other = nextSame[other]) {
+            if (phones[other].equals(phone)) {
+                phones[id] = null;//its digits were all there already, so no node points at the new id- hand it back
+                nextId--;
+                return;
+            }
+        }
+        nextSame[id] = values[node];
+        values[node] = id;
+    }
+    private int newNode(int owner, int start, int end) {
+        if (nodeCount == labelOwner.length) {
+            int size = nodeCount * 2;
+            labelOwner = Arrays.copyOf(labelOwner, size);
+            labelRange = Arrays.copyOf(labelRange, size);
+            firstDigits = Arrays.copyOf(firstDigits, size);
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            childBlocks = Arrays.copyOf(childBlocks, size);
+            values = Arrays.copyOf(values, size);
+        }
+        int node = nodeCount++;
+        labelOwner[node] = owner;
+        labelRange[node] = start << 16 | end;
+        firstDigits[node] = start < end ? (byte) digits[owner].charAt(start) : 0;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        childBlocks[node] = -1;
+        values[node] = -1;
+        return node;
+    }
+    //----------------------------------- children ------------------------
+    private int child(int node, char digit) {
+        //child of node whose label starts with digit, -1 if there is none
+        if (childBlocks[node] != -1) {
+            return blocks[childBlocks[node] + digit - '0'];
+        }
+        int child = firstChild[node];
+        while (child != -1 && firstDigits[child] < digit) {
+            child = nextSibling[child];
+        }
+        return child != -1 && firstDigits[child] == digit ? child : -1;
+    }
+    private void addChild(int parent, int node) {
+        //parent has no child starting with node's first digit yet
+        if (childBlocks[parent] != -1) {
+            blocks[childBlocks[parent] + firstDigits[node] - '0'] = node;
+            return;
+        }
+        int previous = -1;
+        int next = firstChild[parent];
+        int count = 1;
+        while (next != -1 && firstDigits[next] < firstDigits[node]) {
+            previous = next;
+            next = nextSibling[next];
+            count++;
+        }
+        nextSibling[node] = next;
+        if (previous == -1) {
+            firstChild[parent] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+        for (; next != -1; next = nextSibling[next]) {
+            count++;
+        }
+        if (count > LIST_CHILDREN) {
+            //too many to walk through- move them into a block
+            if (blockCount + 10 > blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            int block = blockCount;
+            blockCount += 10;
+            Arrays.fill(blocks, block, block + 10, -1);
+            for (int child = firstChild[parent]; child != -1; child = nextSibling[child]) {
+                blocks[block + firstDigits[child] - '0'] = child;
+            }
+            childBlocks[parent] = block;
+            firstChild[parent] = -1;
+        }
+    }
+    private void replaceChild(int parent, int old, int node) {
+        //node takes old's place among parent's children- both start with the same digit
+        if (childBlocks[parent] != -1) {
+            blocks[childBlocks[parent] + firstDigits[node] - '0'] = node;
+            return;
+        }
+        nextSibling[node] = nextSibling[old];
+        if (firstChild[parent] == old) {
+            firstChild[parent] = node;
+        } else {
+            int previous = firstChild[parent];
+            while (nextSibling[previous] != old) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = node;
+        }
+    }
+    public void remove(String phone) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(phone);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void removeLocked(String phone) {
+        String key = digitsOf(phone);
+        int node = key.isEmpty() ? -1 : find(key, false);
+        if (node == -1) {
+            return;//phone was never added
+        }
+        //the id is taken off its node, the nodes themselves stay until the next rebuild
+        int previous = -1;
+        for (int id = values[node]; id != -1; previous = id, id = nextSame[id]) {
+            if (phones[id].equals(phone)) {
+                if (previous == -1) {
+                    values[node] = nextSame[id];
+                } else {
+                    nextSame[previous] = nextSame[id];
+                }
+                phones[id] = null;
+                removed++;
+                if (removed > 1024 && removed > nextId - removed) {
+                    rebuild();//more removed numbers than live ones- drop their nodes and digits
+                }
+                return;
+            }
+        }
+    }
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    private void reset() {
+        phones = new String[1024];
+        digits = new String[1024];
+        nextSame = new int[1024];
+        nextId = 0;
+        removed = 0;
+        labelOwner = new int[1024];
+        labelRange = new int[1024];
+        firstDigits = new byte[1024];
+        firstChild = new int[1024];
+        nextSibling = new int[1024];
+        childBlocks = new int[1024];
+        blocks = new int[640];
+        blockCount = 0;
+        values = new int[1024];
+        nodeCount = 0;
+        newNode(-1, 0, 0);//root, with an empty label
+    }
+    private void rebuild() {
+        String[] oldPhones = phones;
+        String[] oldDigits = digits;
+        int oldNextId = nextId;
+        reset();
+        for (int id = 0; id < oldNextId; id++) {
+            if (oldPhones[id] != null) {
+                index(oldPhones[id], oldDigits[id]);
+            }
+        }
+    }
+    //============================================= COMPLETE ===========================================================================================
+    public List<String> complete(String prefix, int limit) {
+        //up to limit phones whose digits start with the digits of prefix, shortest and then lowest first
+        //separators in the prefix are ignored; a prefix without digits completes nothing
+        //O(length of the prefix + phones returned)- safe to call from any thread
+        lock.readLock().lock();
+        try {
+            List<String> results = new ArrayList<>();
+            String key = digitsOf(prefix);
+            int node = key.isEmpty() ? -1 : find(key, true);
+            if (node == -1) {
+                return results;
+            }
+            //--------------------depth first under the node, in digit order
+            //a node's own phones come before its children's, and a child's subtree before its next sibling
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = node;
+            while (top > 0 && results.size() < limit) {
+                int current = stack[--top];
+                for (int id = values[current]; id != -1 && results.size() < limit; id = nextSame[id]) {
+                    results.add(phones[id]);
+                }
+                if (top + 10 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                //children go on the stack highest digit first, so the lowest comes off next
+                int block = childBlocks[current];
+                if (block != -1) {
+                    for (int slot = block + 9; slot >= block; slot--) {
+                        if (blocks[slot] != -1) {
+                            stack[top++] = blocks[slot];
+                        }
+                    }
+                } else {
+                    int first = top;
+                    for (int child = firstChild[current]; child != -1; child = nextSibling[child]) {
+                        stack[top++] = child;
+                    }
+                    for (int i = first, j = top - 1; i < j; i++, j--) {
+                        int swap = stack[i];
+                        stack[i] = stack[j];
+                        stack[j] = swap;
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    private int find(String key, boolean prefix) {
+        //node where key ends (prefix- or the first node whose label runs past the end of key), -1 if no phone has it
+        int node = 0;
+        int pos = 0;
+        while (pos < key.length()) {
+            int child = child(node, key.charAt(pos));
+            if (child == -1) {
+                return -1;
+            }
+            int end = labelRange[child] & 0xFFFF;
+            String label = end - (labelRange[child] >>> 16) > 1 ? digits[labelOwner[child]] : null;
+            pos++;//first digit matched already
+            for (int i = (labelRange[child] >>> 16) + 1; i < end; i++, pos++) {
+                if (pos == key.length()) {
+                    return prefix ? child : -1;
+                }
+                if (label.charAt(i) != key.charAt(pos)) {
+                    return -1;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+    private static String digitsOf(String phone) {
+        //the phone itself when it is nothing but digits (the usual, normalized case)- no copy is made
+        int count = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            if (phone.charAt(i) >= '0' && phone.charAt(i) <= '9') {
+                count++;
+            }
+        }
+        if (count == phone.length()) {
+            return phone;
+        }
+        StringBuilder out = new StringBuilder(count);
+        for (int i = 0; i < phone.length(); i++) {
+            if (phone.charAt(i) >= '0' && phone.charAt(i) <= '9') {
+                out.append(phone.charAt(i));
+            }
+        }
+        return out.toString();
+    }
+}
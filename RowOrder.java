@@ -0,0 +1,197 @@
+import java.util.Arrays;
+//copying blocks of rows
+
+public class RowOrder {
+    //row numbers of a ContactTable in sorted order, as plain ints- 4 bytes a contact instead of a map entry and its node
+    //kept in blocks of at most BLOCK rows, so an insert or remove moves at most one block of ints and the list of blocks,
+    //and the first index of every block is cached, so the row at an index is a binary search over the blocks
+    //not thread safe- the table guards its orders with its lock, the table list only touches its own on the UI thread
+    //==========================INITIALIZE===============================================
+    public interface Target {
+        int compareTo(int row);
+        //sign of row compared with what is looked for
+    }
+    private static final int BLOCK = 1024;
+    private int[][] blocks = new int[16][];
+    private int[] sizes = new int[16];
+    private int[] starts = new int[16];//index of each block's first row- correct for the blocks before validStarts
+    private int validStarts;
+    private int blockCount;
+    private int size;
+    //----------------------------------- constructor ------------------------
+    public RowOrder() {
+    }
+    public RowOrder(int[] rows, int count) {
+        //rows already in order- blocks are filled to 3/4, leaving room for inserts before the first split
+        int fill = BLOCK * 3 / 4;
+        int needed = (count + fill - 1) / fill;
+        blocks = new int[Math.max(16, needed)][];
+        sizes = new int[blocks.length];
+        starts = new int[blocks.length];
+        for (int from = 0; from < count; from += fill) {
+            int n = Math.min(fill, count - from);
+            int[] block = new int[BLOCK];
+            System.arraycopy(rows, from, block, 0, n);
+            blocks[blockCount] = block;
+            sizes[blockCount++] = n;
+        }
+        size = count;
+    }
+    //============================================= READ ===========================================================================================
+    public int size() {
+        return size;
+    }
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int block = blockOf(index);
+        return blocks[block][index - starts[block]];
+    }
+    public int lowerBound(Target target) {
+        //index of the first row that is not before the target (size() if there is none)
+        //--------------------first block whose last row is not before the target
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (target.compareTo(blocks[mid][sizes[mid] - 1]) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == blockCount) {
+            return size;
+        }
+        //--------------------then the row inside it
+        int block = low;
+        int[] rows = blocks[block];
+        low = 0;
+        high = sizes[block] - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (target.compareTo(rows[mid]) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return start(block) + low;
+    }
+    public int copy(int from, int[] into) {
+        //copies the rows from index from on into into, as many as fit- returns how many
+        int count = 0;
+        if (from >= size) {
+            return 0;
+        }
+        int block = blockOf(from);
+        int offset = from - starts[block];
+        while (count < into.length && block < blockCount) {
+            int n = Math.min(sizes[block] - offset, into.length - count);
+            System.arraycopy(blocks[block], offset, into, count, n);
+            count += n;
+            block++;
+            offset = 0;
+        }
+        return count;
+    }
+    public int[] toArray() {
+        int[] rows = new int[size];
+        copy(0, rows);
+        return rows;
+    }
+    private int blockOf(int index) {
+        //block holding index- the last block starting at or before it
+        start(blockCount - 1);
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    private int start(int block) {
+        //brings the cached starts up to date as far as block
+        while (validStarts <= block) {
+            starts[validStarts] = validStarts == 0 ? 0 : starts[validStarts - 1] + sizes[validStarts - 1];
+            validStarts++;
+        }
+        return starts[block];
+    }
+    //============================================= WRITE ===========================================================================================
+    public void insert(int index, int row) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (blockCount == 0) {
+            addBlock(0, new int[BLOCK], 0);
+        }
+        int block = index == size ? blockCount - 1 : blockOf(index);
+        int offset = index - start(block);
+        if (sizes[block] == BLOCK) {
+            //full- move its upper half into a new block after it
+            int half = BLOCK / 2;
+            int[] upper = new int[BLOCK];
+            System.arraycopy(blocks[block], half, upper, 0, BLOCK - half);
+            sizes[block] = half;
+            addBlock(block + 1, upper, BLOCK - half);
+            if (offset > half) {
+                block++;
+                offset -= half;
+            }
+        }
+        int[] rows = blocks[block];
+        System.arraycopy(rows, offset, rows, offset + 1, sizes[block] - offset);
+        rows[offset] = row;
+        sizes[block]++;
+        size++;
+        validStarts = Math.min(validStarts, block + 1);
+    }
+    public int remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int block = blockOf(index);
+        int offset = index - starts[block];
+        int[] rows = blocks[block];
+        int row = rows[offset];
+        System.arraycopy(rows, offset + 1, rows, offset, sizes[block] - offset - 1);
+        sizes[block]--;
+        size--;
+        validStarts = Math.min(validStarts, block + 1);
+        if (sizes[block] == 0) {
+            System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+            System.arraycopy(sizes, block + 1, sizes, block, blockCount - block - 1);
+            blocks[--blockCount] = null;
+            validStarts = Math.min(validStarts, block);
+        }
+        return row;
+    }
+    public void set(int index, int row) {
+        int block = blockOf(index);
+        blocks[block][index - starts[block]] = row;
+    }
+    public long bytes() {
+        //heap used by the blocks, roughly
+        return (long) blockCount * (BLOCK * 4 + 16) + blocks.length * 16L;
+    }
+    private void addBlock(int at, int[] rows, int count) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            sizes = Arrays.copyOf(sizes, blockCount * 2);
+            starts = Arrays.copyOf(starts, blockCount * 2);
+        }
+        System.arraycopy(blocks, at, blocks, at + 1, blockCount - at);
+        System.arraycopy(sizes, at, sizes, at + 1, blockCount - at);
+        blocks[at] = rows;
+        sizes[at] = count;
+        blockCount++;
+        validStarts = Math.min(validStarts, at);
+    }
+}
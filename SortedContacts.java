@@ -0,0 +1,151 @@
+import java.util.*;
+//access to standard Java utility classes and data structures and collections like Map
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class SortedContacts extends AbstractMap<String, Contact> implements SortedMap<String, Contact> {
+    //read-only SortedMap of contacts by name, over a list that is already sorted by name and has no name twice
+    //the loaders sort their rows once anyway- handing this map to the SortedMap constructor of TreeMap (documented to run
+    //in linear time) or of ConcurrentSkipListMap builds the real map straight from the sorted entries instead of n puts
+    //get, first/last key and the sub maps are binary searches over the list; any change throws UnsupportedOperationException
+    //==========================INITIALIZE===============================================
+    private final List<Contact> rows;//random access, in order
+    private final Comparator<? super String> order;//null for natural String order
+    private final String low;
+    private final String high;
+    //bounds of a sub map, low inclusive and high exclusive- null when there is none
+    //----------------------------------- constructor ------------------------
+    public SortedContacts(List<Contact> rows) {
+        this(rows, null);
+    }
+    public SortedContacts(List<Contact> rows, Comparator<? super String> order) {
+        //throws IllegalArgumentException unless every name comes strictly after the one before it in order
+        this(rows, order, null, null);
+        for (int i = 1; i < this.rows.size(); i++) {
+            if (compare(this.rows.get(i - 1).getName(), this.rows.get(i).getName()) >= 0) {
+                throw new IllegalArgumentException("Contacts not sorted by name, or a name is there twice: " + this.rows.get(i).getName());
+            }
+        }
+    }
+    private SortedContacts(List<Contact> rows, Comparator<? super String> order, String low, String high) {
+        this.rows = rows instanceof RandomAccess ? rows : new ArrayList<>(rows);
+        this.order = order;
+        this.low = low;
+        this.high = high;
+    }
+    //============================================= BUILD ===========================================================================================
+    public static TreeMap<String, Contact> treeMap(List<Contact> sorted) {
+        return new TreeMap<>(new SortedContacts(sorted));
+    }
+    public static ConcurrentSkipListMap<String, Contact> skipListMap(List<Contact> sorted, Comparator<? super String> order) {
+        //order null for natural String order- the map keeps the same comparator
+        return new ConcurrentSkipListMap<>(new SortedContacts(sorted, order));
+    }
+    //============================================= READ ===========================================================================================
+    @Override
+    public int size() {
+        return rows.size();
+    }
+    @Override
+    public Contact get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        int i = indexOf(name);
+        return i < rows.size() && compare(rows.get(i).getName(), name) == 0 ? rows.get(i) : null;
+    }
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    @Override
+    public Set<Map.Entry<String, Contact>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Contact>>() {
+            @Override
+            public Iterator<Map.Entry<String, Contact>> iterator() {
+                Iterator<Contact> it = rows.iterator();
+                return new Iterator<Map.Entry<String, Contact>>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+                    public Map.Entry<String, Contact> next() {
+                        Contact contact = it.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(contact.getName(), contact);
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        };
+    }
+    @Override
+    public Comparator<? super String> comparator() {
+        return order;
+    }
+    @Override
+    public String firstKey() {
+        if (rows.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return rows.get(0).getName();
+    }
+    @Override
+    public String lastKey() {
+        if (rows.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return rows.get(rows.size() - 1).getName();
+    }
+    //----------------------------------- sub maps ------------------------
+    //views over part of the same list, bounded like TreeMap's- a key outside this map's own bounds is an IllegalArgumentException
+    @Override
+    public SortedMap<String, Contact> subMap(String fromKey, String toKey) {
+        checkBound(fromKey);
+        checkBound(toKey);
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return range(fromKey, toKey);
+    }
+    @Override
+    public SortedMap<String, Contact> headMap(String toKey) {
+        checkBound(toKey);
+        return range(low, toKey);
+    }
+    @Override
+    public SortedMap<String, Contact> tailMap(String fromKey) {
+        checkBound(fromKey);
+        return range(fromKey, high);
+    }
+    private SortedMap<String, Contact> range(String fromKey, String toKey) {
+        int from = fromKey == null ? 0 : indexOf(fromKey);
+        int to = toKey == null ? rows.size() : indexOf(toKey);
+        return new SortedContacts(rows.subList(from, Math.max(from, to)), order, fromKey, toKey);
+    }
+    private void checkBound(String key) {
+        Objects.requireNonNull(key);
+        if ((low != null && compare(key, low) < 0) || (high != null && compare(key, high) > 0)) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+    }
+    //----------------------------------- search ------------------------
+    private int indexOf(String name) {
+        //index of the first row whose name is not before name- rows.size() if there is none
+        int lo = 0;
+        int hi = rows.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(rows.get(mid).getName(), name) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    private int compare(String a, String b) {
+        return order == null ? a.compareTo(b) : order.compare(a, b);
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import javafx.beans.property.SimpleStringProperty;
+//the first version created a new property on every call
+
+public class Baseline {
+    //the data path of the first version of ContactManager, copied here so every benchmark can be compared with where we
+    //started- a linear scan per duplicate check and per search, a regex per phone check, split() per csv line
+    //only the UI parts are left out; the logic is unchanged
+    //============================================= SAVE / LOAD ===========================================================================================
+    public static void saveContacts(Path file, TreeMap<String, Contact> contacts) throws IOException {
+        FileWriter writer = new FileWriter(file.toFile());
+        for (Map.Entry<String, Contact> entry : contacts.entrySet()) {
+            Contact contact = entry.getValue();
+            writer.write(contact.getName() + "," + contact.getPhone() + "," + contact.getEmail() + "\n");
+        }
+        writer.close();
+    }
+    public static TreeMap<String, Contact> loadContacts(Path file) throws IOException {
+        TreeMap<String, Contact> contacts = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file.toFile()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(",");
+            String name = parts[0];
+            String phone = parts[1];
+            String email = parts[2];
+            Contact contact = new Contact(name, phone, email);
+            contacts.put(name, contact);
+        }
+        reader.close();
+        return contacts;
+    }
+    //============================================= ADD ===========================================================================================
+    public static String duplicateOf(TreeMap<String, Contact> contacts, String name, String phone, String email) {
+        //the checks addContact() ran before adding- the error it showed, or null if the contact could be added
+        for (Contact existingContact : contacts.values()) {
+            if (existingContact.getName().equals(name)) {
+                return "Contact with the same name already exists.";
+            }
+            if (existingContact.getPhone().equals(phone)) {
+                return "Contact with the same phone number already exists.";
+            }
+            if (existingContact.getEmail().equals(email)) {
+                return "Contact with the same email address already exists.";
+            }
+        }
+        return null;
+    }
+    //============================================= SEARCH ===========================================================================================
+    public static List<Contact> searchByName(TreeMap<String, Contact> contacts, String name) {
+        List<Contact> results = new ArrayList<>();
+        String lowercaseName = name.toLowerCase();
+        for (Contact contact : contacts.values()) {
+            if (contact.getName().toLowerCase().contains(lowercaseName)) {
+                results.add(contact);
+            }
+        }
+        return results;
+    }
+    public static List<Contact> searchByPhone(TreeMap<String, Contact> contacts, String phoneNumber) {
+        List<Contact> results = new ArrayList<>();
+        for (Contact contact : contacts.values()) {
+            if (contact.getPhone().contains(phoneNumber)) {
+                results.add(contact);
+            }
+        }
+        return results;
+    }
+    //============================================= VALIDATION ===========================================================================================
+    public static boolean isValidPhoneNumber(String phone) {
+        return phone.matches("\\d{10}");
+    }
+    public static boolean isValidEmail(String email) {
+        boolean validemail = email.contains("@") && email.contains(".");
+        return validemail;
+    }
+    //============================================= TABLE ===========================================================================================
+    public static SimpleStringProperty nameProperty(Contact contact) {
+        //the table's cell value factories called these on every layout pass
+        return new SimpleStringProperty(contact.getName());
+    }
+    public static SimpleStringProperty phoneProperty(Contact contact) {
+        return new SimpleStringProperty(contact.getPhone());
+    }
+    public static SimpleStringProperty emailProperty(Contact contact) {
+        return new SimpleStringProperty(contact.getEmail());
+    }
+}
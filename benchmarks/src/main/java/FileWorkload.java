@@ -0,0 +1,72 @@
+import benchmarks.ContactGenerator;
+import benchmarks.Workload;
+import java.nio.file.*;
+import java.util.*;
+
+public class FileWorkload implements Workload {
+    //reading and writing the whole address book: the csv, the binary snapshot and a full store start
+    //every file is a copy in a scratch directory- the generated csv is never written to
+    //==========================INITIALIZE===============================================
+    private Path dir;
+    private Path csv;
+    private Path binary;
+    private Path storeDir;
+    private TreeMap<String, Contact> contacts;
+    //----------------------------------- setup ------------------------
+    public void setUp(int rows) throws Exception {
+        dir = ContactGenerator.workDir();
+        csv = Files.copy(ContactGenerator.csv(rows), dir.resolve("contacts.csv"));
+        contacts = CsvContactLoader.load(csv).contacts;
+        binary = dir.resolve("contacts.csv.bin");
+        ContactSnapshot.write(binary, contacts.values());
+        //a store directory that was opened once already, so it starts from the binary snapshot like the application does
+        storeDir = Files.createDirectory(dir.resolve("store"));
+        Files.copy(csv, storeDir.resolve("contacts.csv"));
+        loadStore();
+    }
+    public void tearDown() throws Exception {
+        ContactGenerator.delete(dir);
+    }
+    //============================================= OPERATIONS ===========================================================================================
+    public Operation operation(String name) {
+        Path out = dir.resolve("out.csv");
+        switch (name) {
+            case "loadCsv":
+                return i -> CsvContactLoader.load(csv).contacts;
+            case "loadCsvBaseline":
+                return i -> Baseline.loadContacts(csv);
+            case "loadSnapshot":
+                return i -> ContactSnapshot.load(binary);
+            case "loadStore":
+                return i -> loadStore();
+            case "saveCsv":
+                return i -> {
+                    ContactJournal.writeSnapshot(out, contacts.values());
+                    return out;
+                };
+            case "saveCsvBaseline":
+                return i -> {
+                    Baseline.saveContacts(out, contacts);
+                    return out;
+                };
+            case "saveSnapshot":
+                return i -> {
+                    ContactSnapshot.write(out, contacts.values());
+                    return out;
+                };
+            case "export":
+                return i -> ContactExporter.export(out, contacts.values());
+            default:
+                throw Workload.unknown(name);
+        }
+    }
+    private ContactStore loadStore() throws Exception {
+        //open, load (snapshot, journal replay, all indexes) and close- what starting the application costs before the table
+        ContactStore store = new ContactStore(storeDir.resolve("contacts.csv"), storeDir.resolve("contacts.csv.bin"));
+        store.open();
+        store.load(progress -> {
+        });
+        store.close();
+        return store;
+    }
+}
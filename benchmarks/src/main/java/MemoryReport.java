@@ -0,0 +1,86 @@
+import benchmarks.ContactGenerator;
+import java.nio.file.*;
+import java.util.*;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+public class MemoryReport {
+    //heap bytes per contact of a loaded store, for each Storage- alone and with the table list the UI keeps next to it
+    //plus the first version's TreeMap (and its ObservableList), and COMPACT once its lazy indexes have been built
+    //measured as the heap in use after a full GC, before and after loading, so run it with nothing else going on
+    //usage: MemoryReport [rows]     default 1000000
+    //============================================= MAIN METHOD ===========================================================================================
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Path csv = ContactGenerator.csv(rows);
+        System.out.printf("%d contacts%n", rows);
+        System.out.printf("%-22s %14s %14s%n", "storage", "store", "store + list");
+        System.out.printf("%-22s %14s %14s%n", "first version", measureBaseline(csv, false) / rows + " B", measureBaseline(csv, true) / rows + " B");
+        for (ContactStore.Storage storage : ContactStore.Storage.values()) {
+            long store = measure(csv, storage, false, false) / rows;
+            long withList = measure(csv, storage, true, false) / rows;
+            System.out.printf("%-22s %14s %14s%n", storage, store + " B", withList + " B");
+        }
+        long store = measure(csv, ContactStore.Storage.COMPACT, false, true) / rows;
+        long withList = measure(csv, ContactStore.Storage.COMPACT, true, true) / rows;
+        System.out.printf("%-22s %14s %14s%n", "COMPACT, indexes used", store + " B", withList + " B");
+    }
+    private static long measureBaseline(Path csv, boolean withList) throws Exception {
+        //the TreeMap the first version loaded the csv into, and the ObservableList its table showed
+        long before = usedHeap();
+        TreeMap<String, Contact> contacts = Baseline.loadContacts(csv);
+        ObservableList<Contact> list = FXCollections.observableArrayList();
+        if (withList) {
+            list.addAll(contacts.values());
+        }
+        long after = usedHeap();
+        if (list.size() != (withList ? contacts.size() : 0)) {
+            throw new IllegalStateException("table list has " + list.size() + " rows");//keeps both reachable until here
+        }
+        return after - before;
+    }
+    private static long measure(Path csv, ContactStore.Storage storage, boolean withList, boolean useIndexes) throws Exception {
+        Path dir = ContactGenerator.workDir();
+        try {
+            Path copy = Files.copy(csv, dir.resolve("contacts.csv"));
+            //a first start writes the binary snapshot in the background- measured, that copy of every contact would be
+            //counted too, so the store measured is a second start, which reads the snapshot and has nothing to fold in
+            ContactStore first = new ContactStore(copy, dir.resolve("contacts.csv.bin"), storage);
+            first.open();
+            first.load(progress -> {
+            });
+            first.close();
+            first = null;
+            long before = usedHeap();
+            ContactStore store = new ContactStore(copy, dir.resolve("contacts.csv.bin"), storage);
+            store.open();
+            store.load(progress -> {
+            });
+            ContactListModel list = new ContactListModel();
+            if (withList) {
+                list.reset(ContactListModel.prebuild(store.rows()));
+            }
+            if (useIndexes) {
+                store.fuzzySearch("jon smyth", 10);//builds the fuzzy index and the phone trie
+                store.completePhone("555", 10);
+            }
+            long after = usedHeap();
+            store.close();
+            if (list.size() != (withList ? store.size() : 0)) {
+                throw new IllegalStateException("table list has " + list.size() + " rows");//also keeps list reachable until here
+            }
+            return after - before;
+        } finally {
+            ContactGenerator.delete(dir);
+        }
+    }
+    private static long usedHeap() throws InterruptedException {
+        //a few GCs, so objects waiting on finalization or weak references are gone too
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
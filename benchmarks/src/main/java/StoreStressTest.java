@@ -0,0 +1,129 @@
+import benchmarks.ContactGenerator;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StoreStressTest {
+    //many writers adding, updating and deleting on a small set of names, phones and emails (so they clash all the time)
+    //while readers search, complete and page through the store- then checks that nothing broke:
+    //  - no two contacts share a phone or an email
+    //  - every contact is found by search, by its name prefix and by its phone prefix
+    //  - the store read back from its files (snapshot + journal) equals the store in memory
+    //usage: StoreStressTest [writers] [readers] [seconds] [rows] [storage]     defaults 8 4 20 100000 MAPS
+    //==========================INITIALIZE===============================================
+    private static final int KEYS = 2000;//names, phones and emails the writers pick from
+    //============================================= MAIN METHOD ===========================================================================================
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+        ContactStore.Storage storage = args.length > 4 ? ContactStore.Storage.valueOf(args[4]) : ContactStore.Storage.MAPS;
+        Path dir = ContactGenerator.workDir();
+        boolean failed;
+        try {
+            Path csv = Files.copy(ContactGenerator.csv(rows), dir.resolve("contacts.csv"));
+            Path binary = dir.resolve("contacts.csv.bin");
+            ContactStore store = new ContactStore(csv, binary, storage);
+            store.open();
+            store.load(progress -> {
+            });
+            System.out.printf("%d contacts (%s), %d writers and %d readers for %ds%n", store.size(), storage, writers, readers, seconds);
+            //------------------run
+            ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong changed = new AtomicLong();
+            AtomicLong refused = new AtomicLong();
+            AtomicLong reads = new AtomicLong();
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                long seed = w;
+                tasks.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    while (!stop.get()) {
+                        //numbers starting with 1 are never generated, so only writers clash with writers
+                        Contact contact = new Contact("Stress " + random.nextInt(KEYS), Integer.toString(1000000000 + random.nextInt(KEYS)),
+                                "stress" + random.nextInt(KEYS) + "@example.com");
+                        int op = random.nextInt(10);
+                        ContactStore.Status status = op < 4 ? store.add(contact) : op < 8 ? store.update(contact) : store.delete(contact.getName());
+                        (status == ContactStore.Status.OK ? changed : refused).incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < readers; r++) {
+                long seed = -1 - r;
+                tasks.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    while (!stop.get()) {
+                        int key = random.nextInt(KEYS);
+                        store.search("stress " + key);
+                        store.completeName("Stress " + key, 10);
+                        store.completePhone(Integer.toString(1000000000 + key).substring(0, 6), 10);
+                        store.get("Stress " + key);
+                        reads.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(seconds * 1000L);
+            stop.set(true);
+            for (Future<?> task : tasks) {
+                task.get();//rethrows anything a thread threw
+            }
+            pool.shutdown();
+            store.compact();
+            System.out.printf("%d changes, %d refused, %d reads%n", changed.get(), refused.get(), reads.get());
+            //------------------check
+            List<String> problems = new ArrayList<>();
+            Set<String> phones = new HashSet<>();
+            Set<String> emails = new HashSet<>();
+            TreeMap<String, String> inMemory = new TreeMap<>();
+            for (Contact contact : store.values()) {
+                if (!phones.add(contact.getPhone())) {
+                    problems.add("phone used twice: " + contact.getPhone());
+                }
+                if (!emails.add(contact.getEmail())) {
+                    problems.add("email used twice: " + contact.getEmail());
+                }
+                if (contact.getName().startsWith("Stress ")) {
+                    if (!store.search(contact.getName()).contains(contact)) {
+                        problems.add("not found by search: " + contact.getName());
+                    }
+                    if (!store.completeName(contact.getName(), KEYS).contains(contact)) {
+                        problems.add("not completed by name: " + contact.getName());
+                    }
+                    if (!store.completePhone(contact.getPhone(), KEYS).contains(contact)) {
+                        problems.add("not completed by phone: " + contact.getPhone());
+                    }
+                }
+                inMemory.put(contact.getName(), contact.getPhone() + "," + contact.getEmail());
+            }
+            store.close();
+            ContactStore reloaded = new ContactStore(csv, binary, storage);
+            reloaded.open();
+            reloaded.load(progress -> {
+            });
+            TreeMap<String, String> fromFiles = new TreeMap<>();
+            for (Contact contact : reloaded.values()) {
+                fromFiles.put(contact.getName(), contact.getPhone() + "," + contact.getEmail());
+            }
+            reloaded.close();
+            if (!fromFiles.equals(inMemory)) {
+                problems.add("reloaded store differs: " + fromFiles.size() + " contacts instead of " + inMemory.size());
+            }
+            //------------------report
+            System.out.print(store.metrics().report());
+            problems.stream().limit(20).forEach(System.out::println);
+            System.out.println(problems.isEmpty() ? "ok" : problems.size() + " problem(s)");
+            failed = !problems.isEmpty();
+        } finally {
+            ContactGenerator.delete(dir);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import benchmarks.ContactGenerator;
+import benchmarks.Workload;
+import java.nio.file.*;
+import java.util.*;
+
+public class StoreWorkload implements Workload {
+    //a loaded ContactStore (files in a scratch directory), and a plain treemap of the same contacts for the first version's scans
+    //inputs are picked from random rows once, then gone round in turn
+    //==========================INITIALIZE===============================================
+    private static final int INPUTS = 1024;//more prefixes than the store keeps cached completions for
+    private static final int COMPLETIONS = 10;
+    private static final int FUZZY_RESULTS = 50;
+    //the limits the UI asks for
+    private static final int BATCHES = 16;
+    private static final int BATCH = 100;//rows in one multi-row delete
+    private Path dir;
+    private ContactStore.Storage storage = ContactStore.Storage.MAPS;
+    private ContactStore store;
+    private final TreeMap<String, Contact> baseline = new TreeMap<>();
+    private final String[] nameQueries = new String[INPUTS];//3-4 letters from inside a last name
+    private final String[] phoneQueries = new String[INPUTS];//5 digits from inside a number
+    private final String[] typos = new String[INPUTS];//a full name with two letters swapped
+    private final String[] namePrefixes = new String[INPUTS];
+    private final String[] phonePrefixes = new String[INPUTS];
+    private final Contact[] duplicates = new Contact[INPUTS];//new name and email, but the phone of an existing contact
+    private final Contact[] existing = new Contact[INPUTS];//copies of existing contacts, for updates
+    private final String[][] batches = new String[BATCHES][BATCH];//distinct names in each batch, or the delete is refused
+    //----------------------------------- setup ------------------------
+    public void option(String name, String value) {
+        if (name.equals("storage")) {
+            storage = ContactStore.Storage.valueOf(value);
+        } else {
+            Workload.super.option(name, value);
+        }
+    }
+    public void setUp(int rows) throws Exception {
+        dir = ContactGenerator.workDir();
+        Path csv = Files.copy(ContactGenerator.csv(rows), dir.resolve("contacts.csv"));
+        store = new ContactStore(csv, dir.resolve("contacts.csv.bin"), storage);
+        store.open();
+        store.load(progress -> {
+        });
+        for (Contact contact : store.values()) {
+            baseline.put(contact.getName(), contact);
+        }
+        Random random = new Random(rows);
+        for (int q = 0; q < INPUTS; q++) {
+            int row = random.nextInt(rows);
+            String name = ContactGenerator.name(row);
+            String phone = ContactGenerator.phone(row);
+            String last = name.substring(name.indexOf(' ') + 1).toLowerCase(Locale.ROOT);
+            nameQueries[q] = last.substring(1, Math.min(last.length(), 5));
+            phoneQueries[q] = phone.substring(3, 8);
+            int swap = name.indexOf(' ') + 2;
+            typos[q] = name.substring(0, swap) + name.charAt(swap + 1) + name.charAt(swap) + name.substring(swap + 2);
+            namePrefixes[q] = name.substring(0, 2 + random.nextInt(5)).toLowerCase(Locale.ROOT);
+            phonePrefixes[q] = phone.substring(0, 4 + random.nextInt(4));
+            duplicates[q] = new Contact("Duplicate Contact " + q, phone, "duplicate" + q + "@example.com");
+            existing[q] = new Contact(name, phone, ContactGenerator.email(row));
+        }
+        for (int b = 0; b < BATCHES; b++) {
+            for (int j = 0; j < BATCH; j++) {
+                //7919 is prime, so stepping by it visits distinct rows
+                batches[b][j] = ContactGenerator.name((int) ((long) (b * BATCH + j) * 7919 % rows));
+            }
+        }
+    }
+    public void tearDown() throws Exception {
+        store.close();
+        ContactGenerator.delete(dir);
+    }
+    //============================================= OPERATIONS ===========================================================================================
+    public Operation operation(String name) {
+        switch (name) {
+            //------------------uniqueness
+            case "rejectDuplicate":
+                return i -> store.add(duplicates[i % INPUTS]);
+            case "rejectDuplicateBaseline":
+                return i -> {
+                    Contact contact = duplicates[i % INPUTS];
+                    return Baseline.duplicateOf(baseline, contact.getName(), contact.getPhone(), contact.getEmail());
+                };
+            case "addDelete":
+                return i -> {
+                    //numbers starting with 1 are never generated- no clash with the loaded contacts
+                    Contact contact = new Contact("Added Contact " + i, Integer.toString(1000000000 + i % 1000000000), "added" + i + "@example.com");
+                    store.add(contact);
+                    return store.delete(contact.getName());
+                };
+            case "update":
+                return i -> store.update(existing[i % INPUTS]);
+            case "deleteBatchUndo":
+                return i -> {
+                    //BATCH contacts deleted in one transaction, then put back by undo- one journal write and one listener call each
+                    ContactStore.Transaction transaction = store.transaction();
+                    for (String batchName : batches[i % BATCHES]) {
+                        transaction.delete(batchName);
+                    }
+                    transaction.commit();
+                    return store.undo();
+                };
+            case "get":
+                return i -> store.get(existing[i % INPUTS].getName());
+            //------------------search
+            case "searchName":
+                return i -> store.search(nameQueries[i % INPUTS]);
+            case "searchNameBaseline":
+                return i -> Baseline.searchByName(baseline, nameQueries[i % INPUTS]);
+            case "searchPhone":
+                return i -> store.search(phoneQueries[i % INPUTS]);
+            case "searchPhoneBaseline":
+                return i -> Baseline.searchByPhone(baseline, phoneQueries[i % INPUTS]);
+            case "fuzzySearch":
+                return i -> store.fuzzySearch(typos[i % INPUTS], FUZZY_RESULTS);
+            case "completeName":
+                return i -> store.completeName(namePrefixes[i % INPUTS], COMPLETIONS);
+            case "completePhone":
+                return i -> store.completePhone(phonePrefixes[i % INPUTS], COMPLETIONS);
+            default:
+                throw Workload.unknown(name);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import benchmarks.ContactGenerator;
+import benchmarks.Workload;
+import java.util.*;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+//observable lists work without a running JavaFX toolkit, so no window or headless platform is needed
+
+public class TableWorkload implements Workload {
+    //what the table costs: refreshing the list behind it, one edit, and reading the cells of a visible row
+    //both lists have a listener that walks every change, like the TableView does
+    //==========================INITIALIZE===============================================
+    private static final int INPUTS = 1024;
+    private static final int VISIBLE_ROWS = 40;//about one screen of rows
+    private final TreeMap<String, Contact> contacts = new TreeMap<>();
+    private final ContactListModel contactList = new ContactListModel();
+    private final ObservableList<Contact> baselineList = FXCollections.observableArrayList();//what the first version's table showed
+    private final Contact[] edits = new Contact[INPUTS];//new versions of existing contacts
+    private final Object[] cells = new Object[3];//where a row's cell values go, so reading them cannot be optimized away
+    private long changes;
+    private int firstVisible;
+    //----------------------------------- setup ------------------------
+    public void setUp(int rows) {
+        for (int i = 0; i < rows; i++) {
+            String name = ContactGenerator.name(i);
+            contacts.put(name, new Contact(name, ContactGenerator.phone(i), ContactGenerator.email(i)));
+        }
+        ListChangeListener<Contact> listener = change -> {
+            while (change.next()) {
+                changes++;
+            }
+        };
+        contactList.addListener(listener);
+        baselineList.addListener(listener);
+        contactList.reset(ContactListModel.prebuild(contacts.values()));
+        baselineList.setAll(contacts.values());
+        Random random = new Random(rows);
+        for (int q = 0; q < INPUTS; q++) {
+            int row = random.nextInt(rows);
+            edits[q] = new Contact(ContactGenerator.name(row), ContactGenerator.phone(row), "edited" + q + "@example.com");
+        }
+        firstVisible = rows / 2;
+    }
+    //============================================= OPERATIONS ===========================================================================================
+    public Operation operation(String name) {
+        switch (name) {
+            case "reset":
+                //all rows at once, as after loading or clearing a search- the tree is built off the UI thread in the application
+                return i -> {
+                    contactList.reset(ContactListModel.prebuild(contacts.values()));
+                    return contactList;
+                };
+            case "setAllBaseline":
+                //what the first version did after every add, update and delete
+                return i -> {
+                    baselineList.setAll(contacts.values());
+                    return baselineList;
+                };
+            case "put":
+                //one edited contact- one replace change at its row
+                return i -> {
+                    contactList.put(edits[i % INPUTS]);
+                    return contactList;
+                };
+            case "readRow":
+                //the cell value factories of one visible row, asked again on every layout pass while scrolling
+                return i -> {
+                    Contact contact = contactList.get(firstVisible + i % VISIBLE_ROWS);
+                    cells[0] = contact.nameProperty();
+                    cells[1] = contact.phoneProperty();
+                    cells[2] = contact.emailProperty();
+                    return cells;
+                };
+            case "readRowBaseline":
+                return i -> {
+                    Contact contact = baselineList.get(firstVisible + i % VISIBLE_ROWS);
+                    cells[0] = Baseline.nameProperty(contact);
+                    cells[1] = Baseline.phoneProperty(contact);
+                    cells[2] = Baseline.emailProperty(contact);
+                    return cells;
+                };
+            default:
+                throw Workload.unknown(name);
+        }
+    }
+    public long getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,53 @@
+import benchmarks.ContactGenerator;
+import benchmarks.Workload;
+import java.util.*;
+
+public class ValidatorWorkload implements Workload {
+    //checking what the user typed: a mix of canonical, formatted and invalid phone numbers and emails
+    //==========================INITIALIZE===============================================
+    private static final int INPUTS = 1024;
+    private final ContactValidator validator = new ContactValidator();
+    private final String[] phones = new String[INPUTS];
+    private final String[] emails = new String[INPUTS];
+    //----------------------------------- setup ------------------------
+    public void setUp(int rows) {
+        Random random = new Random(INPUTS);
+        for (int q = 0; q < INPUTS; q++) {
+            String phone = ContactGenerator.phone(q);
+            String email = ContactGenerator.email(q);
+            switch (q % 4) {
+                case 0:
+                case 1://as stored
+                    phones[q] = phone;
+                    emails[q] = email;
+                    break;
+                case 2://as typed
+                    phones[q] = "(" + phone.substring(0, 3) + ") " + phone.substring(3, 6) + "-" + phone.substring(6);
+                    emails[q] = email.toUpperCase(Locale.ROOT);
+                    break;
+                default://mistyped
+                    phones[q] = phone.substring(0, 4 + random.nextInt(5));
+                    emails[q] = email.replace('@', ' ');
+            }
+        }
+    }
+    //============================================= OPERATIONS ===========================================================================================
+    public Operation operation(String name) {
+        switch (name) {
+            case "phone":
+                return i -> validator.isValidPhoneNumber(phones[i % INPUTS]);
+            case "phoneBaseline":
+                return i -> Baseline.isValidPhoneNumber(phones[i % INPUTS]);
+            case "normalizePhone":
+                return i -> validator.normalizePhoneNumber(phones[i % INPUTS]);
+            case "email":
+                return i -> validator.isValidEmail(emails[i % INPUTS]);
+            case "emailBaseline":
+                return i -> Baseline.isValidEmail(emails[i % INPUTS]);
+            case "normalizeEmail":
+                return i -> validator.normalizeEmail(emails[i % INPUTS]);
+            default:
+                throw Workload.unknown(name);
+        }
+    }
+}
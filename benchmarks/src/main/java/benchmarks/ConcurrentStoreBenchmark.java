@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ConcurrentStoreBenchmark {
+    //readers searching and looking up while a writer updates, all on one store- reads should not slow down because of the writer
+    //more threads: -tg 6,2 (readers, writers)
+    @Param({"100000"})
+    int rows;
+    @Param({"MAPS"})
+    String storage;
+    private Workload workload;
+    @State(Scope.Thread)
+    public static class Caller {
+        //each thread goes round the inputs on its own
+        private int calls;
+        int next() {
+            return calls++ & Integer.MAX_VALUE;
+        }
+    }
+    private Workload.Operation searchName;
+    private Workload.Operation get;
+    private Workload.Operation update;
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create("StoreWorkload", rows, "storage=" + storage);
+        searchName = workload.operation("searchName");
+        get = workload.operation("get");
+        update = workload.operation("update");
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Object search(Caller caller) throws Exception {
+        return searchName.run(caller.next());
+    }
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Object get(Caller caller) throws Exception {
+        return get.run(caller.next());
+    }
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Object update(Caller caller) throws Exception {
+        return update.run(caller.next());
+    }
+}
@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public final class ContactGenerator {
+    //synthetic contacts for the benchmarks: row i is the same on every run and every machine, so results can be compared
+    //names, phones and emails are each unique up to 100M rows- any row can be added without a duplicate error
+    //names are made of random syllables ("Maren Tokavi"), so they have realistic lengths, shared prefixes and common trigrams
+    //==========================INITIALIZE===============================================
+    private static final int FIRST_NAMES = 2000;
+    private static final int LAST_NAMES = 50000;
+    private static final long NAMES = (long) FIRST_NAMES * LAST_NAMES;//100M combinations
+    private static final long NAME_STEP = 2654435761L;
+    private static final long PHONE_STEP = 1000000007L;
+    //odd and not a multiple of 5, so i * step modulo a power of ten (or NAMES) visits every value once- rows are spread
+    //over all first/last names and all numbers instead of counting up
+    private static final String[] DOMAINS = {"example.com", "example.org", "mail.example.net", "contacts.example.io"};
+    private static final String[] FIRST = names(FIRST_NAMES, 2, 2, 1);
+    private static final String[] LAST = names(LAST_NAMES, 2, 3, 2);
+    private static final Path DATA_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "contact-manager-benchmarks");
+    //generated csv files are kept here and reused by later runs- a 10M row file takes a while to write
+    private ContactGenerator() {
+    }
+    private static String[] names(int count, int minSyllables, int maxSyllables, long seed) {
+        String consonants = "bcdfghjklmnprstvz";
+        String vowels = "aeiou";
+        String endings = "nrls";
+        Random random = new Random(seed);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < count) {
+            StringBuilder name = new StringBuilder();
+            int syllables = minSyllables + random.nextInt(maxSyllables - minSyllables + 1);
+            for (int s = 0; s < syllables; s++) {
+                name.append(consonants.charAt(random.nextInt(consonants.length())));
+                name.append(vowels.charAt(random.nextInt(vowels.length())));
+                if (random.nextInt(4) == 0) {
+                    name.append(endings.charAt(random.nextInt(endings.length())));
+                }
+            }
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            names.add(name.toString());
+        }
+        return names.toArray(new String[0]);
+    }
+    //============================================= ROWS ===========================================================================================
+    public static String name(int i) {
+        long combination = i * NAME_STEP % NAMES;
+        return FIRST[(int) (combination % FIRST_NAMES)] + " " + LAST[(int) (combination / FIRST_NAMES)];
+    }
+    public static String phone(int i) {
+        //10 digits starting with 2- numbers starting with 1 are never generated, for the benchmarks to add
+        return "2" + String.format("%09d", i * PHONE_STEP % 1000000000L);
+    }
+    public static String email(int i) {
+        long combination = i * NAME_STEP % NAMES;
+        return FIRST[(int) (combination % FIRST_NAMES)].toLowerCase(Locale.ROOT) + "." + LAST[(int) (combination / FIRST_NAMES)].toLowerCase(Locale.ROOT)
+                + "@" + DOMAINS[(int) (combination % DOMAINS.length)];
+    }
+    //============================================= FILES ===========================================================================================
+    public static Path csv(int rows) throws IOException {
+        //contacts-<rows>.csv with rows 0 to rows-1, in the format the contact manager saves
+        Path file = DATA_DIR.resolve("contacts-" + rows + ".csv");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(DATA_DIR);
+        Path part = Files.createTempFile(DATA_DIR, "contacts-" + rows, ".part");
+        try (BufferedWriter out = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                out.write(name(i));
+                out.write(',');
+                out.write(phone(i));
+                out.write(',');
+                out.write(email(i));
+                out.write('\n');
+            }
+        }
+        //renamed when complete- a run that was killed halfway does not leave a short file behind for the next one
+        Files.move(part, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+    public static Path workDir() throws IOException {
+        //an empty directory for files a benchmark writes- remove it with delete()
+        Files.createDirectories(DATA_DIR);
+        return Files.createTempDirectory(DATA_DIR, "work");
+    }
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(files::add);
+        }
+        for (Path file : files) {
+            if (Files.isDirectory(file)) {
+                delete(file);
+            } else {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class LoadSaveBenchmark {
+    //the whole address book read or written once per iteration, like starting the application or saving everything
+    //*Baseline runs the first version's code (split() per line, FileWriter) on the same file
+    @Param({"10000", "100000", "1000000", "5000000"})
+    //5M rows: the loaded csv, a started store and the copies made while timing them need about 8GB of heap together
+    int rows;
+    private Workload workload;
+    private Workload.Operation loadCsv;
+    private Workload.Operation loadCsvBaseline;
+    private Workload.Operation loadSnapshot;
+    private Workload.Operation loadStore;
+    private Workload.Operation saveCsv;
+    private Workload.Operation saveCsvBaseline;
+    private Workload.Operation saveSnapshot;
+    private Workload.Operation export;
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create("FileWorkload", rows);
+        loadCsv = workload.operation("loadCsv");
+        loadCsvBaseline = workload.operation("loadCsvBaseline");
+        loadSnapshot = workload.operation("loadSnapshot");
+        loadStore = workload.operation("loadStore");
+        saveCsv = workload.operation("saveCsv");
+        saveCsvBaseline = workload.operation("saveCsvBaseline");
+        saveSnapshot = workload.operation("saveSnapshot");
+        export = workload.operation("export");
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+    //============================================= LOAD ===========================================================================================
+    @Benchmark
+    public Object loadCsv() throws Exception {
+        return loadCsv.run(0);
+    }
+    @Benchmark
+    public Object loadCsvBaseline() throws Exception {
+        return loadCsvBaseline.run(0);
+    }
+    @Benchmark
+    public Object loadSnapshot() throws Exception {
+        return loadSnapshot.run(0);
+    }
+    @Benchmark
+    public Object loadStore() throws Exception {
+        //snapshot, journal and every index- the full start up before the table is filled
+        return loadStore.run(0);
+    }
+    //============================================= SAVE ===========================================================================================
+    @Benchmark
+    public Object saveCsv() throws Exception {
+        return saveCsv.run(0);
+    }
+    @Benchmark
+    public Object saveCsvBaseline() throws Exception {
+        return saveCsvBaseline.run(0);
+    }
+    @Benchmark
+    public Object saveSnapshot() throws Exception {
+        return saveSnapshot.run(0);
+    }
+    @Benchmark
+    public Object export() throws Exception {
+        return export.run(0);
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class StoreBenchmark {
+    //single operations on a loaded store- their cost should stay flat as rows grow, while the *Baseline scans grow with it
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+    @Param({"MAPS"})
+    String storage;//-p storage=COMPACT,MAPS to compare the two
+    private Workload workload;
+    private Workload.Operation rejectDuplicate;
+    private Workload.Operation rejectDuplicateBaseline;
+    private Workload.Operation addDelete;
+    private Workload.Operation deleteBatchUndo;
+    private Workload.Operation searchName;
+    private Workload.Operation searchNameBaseline;
+    private Workload.Operation searchPhone;
+    private Workload.Operation searchPhoneBaseline;
+    private Workload.Operation fuzzySearch;
+    private Workload.Operation completeName;
+    private Workload.Operation completePhone;
+    private int calls;
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create("StoreWorkload", rows, "storage=" + storage);
+        rejectDuplicate = workload.operation("rejectDuplicate");
+        rejectDuplicateBaseline = workload.operation("rejectDuplicateBaseline");
+        addDelete = workload.operation("addDelete");
+        deleteBatchUndo = workload.operation("deleteBatchUndo");
+        searchName = workload.operation("searchName");
+        searchNameBaseline = workload.operation("searchNameBaseline");
+        searchPhone = workload.operation("searchPhone");
+        searchPhoneBaseline = workload.operation("searchPhoneBaseline");
+        fuzzySearch = workload.operation("fuzzySearch");
+        completeName = workload.operation("completeName");
+        completePhone = workload.operation("completePhone");
+    }
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+    private int next() {
+        return calls++ & Integer.MAX_VALUE;
+    }
+    //============================================= UNIQUENESS ===========================================================================================
+    @Benchmark
+    public Object rejectDuplicate() throws Exception {
+        //an add refused because the phone is taken
+        return rejectDuplicate.run(next());
+    }
+    @Benchmark
+    public Object rejectDuplicateBaseline() throws Exception {
+        return rejectDuplicateBaseline.run(next());
+    }
+    @Benchmark
+    public Object addDelete() throws Exception {
+        //a new contact added and deleted again- both journaled, all indexes updated
+        return addDelete.run(next());
+    }
+    @Benchmark
+    public Object deleteBatchUndo() throws Exception {
+        //100 contacts deleted in one transaction and restored by undo
+        return deleteBatchUndo.run(next());
+    }
+    //============================================= SEARCH ===========================================================================================
+    @Benchmark
+    public Object searchName() throws Exception {
+        return searchName.run(next());
+    }
+    @Benchmark
+    public Object searchNameBaseline() throws Exception {
+        return searchNameBaseline.run(next());
+    }
+    @Benchmark
+    public Object searchPhone() throws Exception {
+        return searchPhone.run(next());
+    }
+    @Benchmark
+    public Object searchPhoneBaseline() throws Exception {
+        return searchPhoneBaseline.run(next());
+    }
+    @Benchmark
+    public Object fuzzySearch() throws Exception {
+        return fuzzySearch.run(next());
+    }
+    @Benchmark
+    public Object completeName() throws Exception {
+        return completeName.run(next());
+    }
+    @Benchmark
+    public Object completePhone() throws Exception {
+        return completePhone.run(next());
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class TableBenchmark {
+    //the list behind the TableView- refreshing all rows, one edit, and the cells of a row while scrolling
+    //readRow is mostly about allocation: see gc.alloc.rate.norm (bytes per call) from the gc profiler
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+    private Workload workload;
+    private Workload.Operation reset;
+    private Workload.Operation setAllBaseline;
+    private Workload.Operation put;
+    private Workload.Operation readRow;
+    private Workload.Operation readRowBaseline;
+    private int calls;
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create("TableWorkload", rows);
+        reset = workload.operation("reset");
+        setAllBaseline = workload.operation("setAllBaseline");
+        put = workload.operation("put");
+        readRow = workload.operation("readRow");
+        readRowBaseline = workload.operation("readRowBaseline");
+    }
+    private int next() {
+        return calls++ & Integer.MAX_VALUE;
+    }
+    //============================================= REFRESH ===========================================================================================
+    @Benchmark
+    public Object reset() throws Exception {
+        return reset.run(next());
+    }
+    @Benchmark
+    public Object setAllBaseline() throws Exception {
+        //contactList.setAll(contacts.values())- the first version ran it after every edit
+        return setAllBaseline.run(next());
+    }
+    @Benchmark
+    public Object put() throws Exception {
+        return put.run(next());
+    }
+    //============================================= SCROLL ===========================================================================================
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object readRow() throws Exception {
+        return readRow.run(next());
+    }
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object readRowBaseline() throws Exception {
+        return readRowBaseline.run(next());
+    }
+}
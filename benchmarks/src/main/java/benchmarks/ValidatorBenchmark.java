@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+    //phone and email checks on a mix of stored, typed and mistyped values- the baseline is a regex and two contains()
+    private Workload workload;
+    private Workload.Operation phone;
+    private Workload.Operation phoneBaseline;
+    private Workload.Operation normalizePhone;
+    private Workload.Operation email;
+    private Workload.Operation emailBaseline;
+    private Workload.Operation normalizeEmail;
+    private int calls;
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create("ValidatorWorkload", 0);
+        phone = workload.operation("phone");
+        phoneBaseline = workload.operation("phoneBaseline");
+        normalizePhone = workload.operation("normalizePhone");
+        email = workload.operation("email");
+        emailBaseline = workload.operation("emailBaseline");
+        normalizeEmail = workload.operation("normalizeEmail");
+    }
+    private int next() {
+        return calls++ & Integer.MAX_VALUE;
+    }
+    @Benchmark
+    public Object phone() throws Exception {
+        return phone.run(next());
+    }
+    @Benchmark
+    public Object phoneBaseline() throws Exception {
+        return phoneBaseline.run(next());
+    }
+    @Benchmark
+    public Object normalizePhone() throws Exception {
+        return normalizePhone.run(next());
+    }
+    @Benchmark
+    public Object email() throws Exception {
+        return email.run(next());
+    }
+    @Benchmark
+    public Object emailBaseline() throws Exception {
+        return emailBaseline.run(next());
+    }
+    @Benchmark
+    public Object normalizeEmail() throws Exception {
+        return normalizeEmail.run(next());
+    }
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+public interface Workload {
+    //one part of the contact manager's data path, set up with a number of rows and ready to be timed
+    //the application classes are in the default package, which JMH cannot generate code for and which named packages
+    //cannot import- so the benchmark classes are in this package, and the code that calls the application is written in
+    //the default package behind this interface and found by class name
+    void setUp(int rows) throws Exception;
+    Operation operation(String name);
+    //looked up once during setup- a benchmark call is then a single interface call on a fixed target
+    default void tearDown() throws Exception {
+    }
+    default void option(String name, String value) {
+        //set before setUp- e.g. storage=COMPACT for the store workloads
+        throw new IllegalArgumentException("No such option: " + name);
+    }
+    interface Operation {
+        Object run(int i) throws Exception;
+        //i counts the calls- operations use it to go round their prepared inputs
+    }
+    static Workload create(String className, int rows, String... options) throws Exception {
+        //options are name=value
+        Workload workload = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        for (String option : options) {
+            int at = option.indexOf('=');
+            workload.option(option.substring(0, at), option.substring(at + 1));
+        }
+        workload.setUp(rows);
+        return workload;
+    }
+    static IllegalArgumentException unknown(String name) {
+        return new IllegalArgumentException("No such operation: " + name);
+    }
+}
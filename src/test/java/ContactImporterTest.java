@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactImporterTest {
+    @TempDir
+    Path directory;
+    //----------------------------------- helpers ------------------------
+    private ContactStore open(String name) throws IOException {
+        ContactStore store = new ContactStore(directory.resolve(name + ".csv"), null);
+        store.open();
+        store.load(done -> { });
+        return store;
+    }
+    private Path write(String name, String content) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    private static List<String> text(Collection<Contact> contacts) {
+        //contacts as "name|phone|email", to compare them by value
+        List<String> text = new ArrayList<>();
+        for (Contact contact : contacts) {
+            text.add(contact.getName() + "|" + contact.getPhone() + "|" + contact.getEmail());
+        }
+        return text;
+    }
+    private static List<String> lines(List<String> messages) {
+        //"line 3" of every message
+        List<String> lines = new ArrayList<>();
+        for (String message : messages) {
+            lines.add(message.substring(0, message.indexOf(':')));
+        }
+        return lines;
+    }
+    //============================================= IMPORT ===========================================================================================
+    @Test
+    public void importsCsvAndReportsEveryRejectedRow() throws IOException {
+        ContactStore store = open("contacts");
+        store.add(new Contact("Old", "5550000000", "old@example.com"));
+        Path file = write("import.csv", "Ann,(555) 000-0001,ann@example.com\n"
+                + "Bad Phone,12345,bad@example.com\n"
+                + "Bad Email,5550000002,no-at-sign\n"
+                + "Ann,5550000003,ann2@example.com\n"
+                + "Bob,555.000.0001,bob@example.com\n"
+                + "Old,5550000004,old2@example.com\n"
+                + "Cy,5550000000,cy@example.com\n"
+                + "only,two\n"
+                + "Dee,5550000005,dee@example.com\n");
+        ContactImporter.Report report = ContactImporter.importFile(store, new ContactValidator(), file, done -> { });
+        assertEquals(9, report.rows);
+        assertEquals(2, report.imported);
+        assertEquals(Arrays.asList("line 8", "line 2", "line 3", "line 4", "line 5", "line 6", "line 7"), lines(report.rejected));
+        assertEquals(Arrays.asList("Ann|5550000001|ann@example.com", "Dee|5550000005|dee@example.com", "Old|5550000000|old@example.com"),
+                text(store.values()));
+        //the rejected rows as a file, one per line
+        Path rejected = directory.resolve("rejected.txt");
+        report.write(rejected);
+        assertEquals(report.rejected, Files.readAllLines(rejected, StandardCharsets.UTF_8));
+        store.close();
+    }
+    @Test
+    public void importsWhatItExports() throws IOException {
+        ContactStore store = open("contacts");
+        store.add(new Contact("Lee, Ann", "5550000001", "ann@example.com"));
+        store.add(new Contact("O'Brien; \\Jr", "5550000002", "ob@example.com"));
+        store.add(new Contact("Zoë Ådahl", "5550000003", "zoe@example.se"));
+        for (String name : new String[] {"export.csv", "export.vcf"}) {
+            Path file = directory.resolve(name);
+            assertEquals(3, ContactExporter.export(file, store.values()));
+            ContactStore copy = open(name);
+            ContactImporter.Report report = ContactImporter.importFile(copy, new ContactValidator(), file, done -> { });
+            assertEquals(Collections.emptyList(), report.rejected, name);
+            assertEquals(3, report.imported);
+            assertEquals(text(store.values()), text(copy.values()), name);
+            copy.close();
+        }
+        store.close();
+    }
+    @Test
+    public void reportsBrokenVCards() throws IOException {
+        ContactStore store = open("contacts");
+        Path file = write("import.vcf", "BEGIN:VCARD\r\nVERSION:3.0\r\nFN:Ann\r\nTEL:5550000001\r\nEMAIL:ann@example.com\r\nEND:VCARD\r\n"
+                + "BEGIN:VCARD\r\nFN:No Phone\r\nEMAIL:np@example.com\r\nEND:VCARD\r\n"
+                + "BEGIN:VCARD\r\nFN:Cut Off\r\nTEL:5550000002\r\n");
+        ContactImporter.Report report = ContactImporter.importFile(store, new ContactValidator(), file, done -> { });
+        assertEquals(3, report.rows);
+        assertEquals(1, report.imported);
+        assertEquals(Arrays.asList("line 7", "line 11"), lines(report.rejected));
+        store.close();
+    }
+    @Test
+    public void refusesLineBreaksInNames() throws IOException {
+        ContactStore store = open("contacts");
+        //a quoted csv field may hold a line break, but a name may not- the row after it is still read, from its own line
+        Path file = write("import.csv", "\"Jane\nDoe\",5550000001,jane@example.com\n"
+                + "\"Tab\tName\",5550000002,tab@example.com\n"
+                + "Ann,5550000003,ann@example.com\n");
+        ContactImporter.Report report = ContactImporter.importFile(store, new ContactValidator(), file, done -> { });
+        assertEquals(3, report.rows);
+        assertEquals(1, report.imported);
+        assertEquals(Arrays.asList("line 1", "line 3"), lines(report.rejected));
+        //vCard values are single-line- an escaped \n there becomes a space
+        file = write("import.vcf", "BEGIN:VCARD\r\nFN:Jane\\nDoe\r\nTEL:5550000004\r\nEMAIL:jane@example.com\r\nEND:VCARD\r\n");
+        report = ContactImporter.importFile(store, new ContactValidator(), file, done -> { });
+        assertEquals(1, report.imported);
+        assertEquals(Arrays.asList("Ann|5550000003|ann@example.com", "Jane Doe|5550000004|jane@example.com"), text(store.values()));
+        store.close();
+    }
+}
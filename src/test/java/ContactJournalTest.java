@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactJournalTest {
+    @TempDir
+    Path directory;
+    private static final int ANN_RECORD = 8 + 1 + 5 + 3 + 10;
+    //bytes of the first record in these tests: length and crc, the type, and "Ann", "1", "ann@x.io" as writeUTF writes them
+    //----------------------------------- helpers ------------------------
+    private Path csv() {
+        return directory.resolve("contacts.csv");
+    }
+    private Path journalFile(long generation) {
+        return directory.resolve("contacts.csv.journal." + generation);
+    }
+    private ContactJournal session() throws IOException {
+        //a session as the application starts one: replay what is on disk, then open the next generation
+        ContactJournal journal = new ContactJournal(csv());
+        journal.replay((name, contact) -> { });
+        journal.open();
+        return journal;
+    }
+    private List<String> replay() throws IOException {
+        //every change as "name=phone" or "name deleted", in replay order
+        List<String> changes = new ArrayList<>();
+        new ContactJournal(csv()).replay((name, contact) -> changes.add(contact == null ? name + " deleted" : name + "=" + contact.getPhone()));
+        return changes;
+    }
+    private static Contact contact(String name, String phone) {
+        return new Contact(name, phone, name.toLowerCase(Locale.ROOT) + "@x.io");
+    }
+    private static Map<String, Contact> changes(Object... pairs) {
+        Map<String, Contact> changes = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            changes.put((String) pairs[i], (Contact) pairs[i + 1]);
+        }
+        return changes;
+    }
+    //============================================= REPLAY ===========================================================================================
+    @Test
+    public void replaysPutsAndDeletesInOrder() throws IOException {
+        ContactJournal journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.put(contact("Bob", "2"));
+        journal.put(contact("Ann", "3"));
+        journal.delete("Bob");
+        journal.close();
+        assertEquals(Arrays.asList("Ann=1", "Bob=2", "Ann=3", "Bob deleted"), replay());
+        //a second session writes the next generation, replayed after the first
+        journal = session();
+        journal.put(contact("Cy", "4"));
+        journal.close();
+        assertEquals(Arrays.asList("Ann=1", "Bob=2", "Ann=3", "Bob deleted", "Cy=4"), replay());
+        assertTrue(Files.exists(journalFile(1)));
+        assertTrue(Files.exists(journalFile(2)));
+    }
+    @Test
+    public void stopsAtATornTail() throws IOException {
+        ContactJournal journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.put(contact("Bob", "2"));
+        journal.close();
+        //a crash in the middle of the last record- every cut of it loses only that record
+        byte[] whole = Files.readAllBytes(journalFile(1));
+        int last = whole.length - ANN_RECORD;
+        for (int cut = 1; cut <= last; cut++) {
+            Files.write(journalFile(1), Arrays.copyOf(whole, whole.length - cut));
+            assertEquals(Collections.singletonList("Ann=1"), replay(), "cut " + cut);
+        }
+        Files.write(journalFile(1), Arrays.copyOf(whole, ANN_RECORD - 1));
+        assertEquals(Collections.emptyList(), replay());
+    }
+    @Test
+    public void stopsAtADamagedRecordButReadsLaterGenerations() throws IOException {
+        ContactJournal journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.put(contact("Bob", "2"));
+        journal.put(contact("Cy", "3"));
+        journal.close();
+        journal = session();
+        journal.put(contact("Dee", "4"));
+        journal.close();
+        //flip a bit in Bob's phone- the crc no longer matches, so Bob and everything after it in that file is dropped
+        byte[] content = Files.readAllBytes(journalFile(1));
+        content[ANN_RECORD + 8 + 1 + 5 + 2] ^= 1;
+        Files.write(journalFile(1), content);
+        assertEquals(Arrays.asList("Ann=1", "Dee=4"), replay());
+    }
+    @Test
+    public void replaysCommittedTransactionsWhole() throws IOException {
+        ContactJournal journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.transaction(changes("Ann", contact("Ann", "2"), "Bob", contact("Bob", "1"), "Old", null));
+        journal.put(contact("Cy", "3"));
+        journal.close();
+        assertEquals(Arrays.asList("Ann=1", "Ann=2", "Bob=1", "Old deleted", "Cy=3"), replay());
+    }
+    @Test
+    public void dropsATransactionWithoutItsCommit() throws IOException {
+        ContactJournal journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.transaction(changes("Ann", contact("Ann", "2"), "Bob", contact("Bob", "1")));
+        journal.close();
+        //the COMMIT record is 9 bytes (header and type)- without it, or cut anywhere inside the transaction, none of it is applied
+        byte[] whole = Files.readAllBytes(journalFile(1));
+        for (int cut = 1; cut <= whole.length - ANN_RECORD; cut++) {
+            Files.write(journalFile(1), Arrays.copyOf(whole, whole.length - cut));
+            assertEquals(Collections.singletonList("Ann=1"), replay(), "cut " + cut);
+        }
+        //a later session's records still count, the torn transaction is not continued by them
+        Files.write(journalFile(1), Arrays.copyOf(whole, whole.length - 9));
+        journal = session();
+        journal.put(contact("Cy", "3"));
+        journal.close();
+        assertEquals(Arrays.asList("Ann=1", "Cy=3"), replay());
+    }
+    @Test
+    public void openStartsAfterTheNewestGeneration() throws IOException {
+        //without a replay first- the generations on disk are enough
+        for (int i = 1; i <= 3; i++) {
+            ContactJournal journal = new ContactJournal(csv());
+            journal.open();
+            journal.put(contact("Ann", Integer.toString(i)));
+            journal.close();
+            assertTrue(Files.exists(journalFile(i)));
+        }
+        assertEquals(Arrays.asList("Ann=1", "Ann=2", "Ann=3"), replay());
+    }
+    @Test
+    public void openDropsEmptyGenerations() throws IOException {
+        ContactJournal journal = session();
+        journal.close();
+        assertTrue(Files.exists(journalFile(1)));
+        journal = session();
+        journal.put(contact("Ann", "1"));
+        journal.close();
+        assertFalse(Files.exists(journalFile(1)));
+        assertEquals(Collections.singletonList("Ann=1"), replay());
+    }
+    //============================================= FAILURES ===========================================================================================
+    @Test
+    public void refusesRecordsWhenNotOpen() throws IOException {
+        ContactJournal journal = new ContactJournal(csv());
+        IOException refused = assertThrows(IOException.class, () -> journal.put(contact("Ann", "1")));
+        assertEquals("contact journal is not open", refused.getMessage());
+        assertThrows(IOException.class, () -> journal.transaction(changes("Ann", contact("Ann", "1"))));
+        journal.compact(new ReentrantLock(), () -> Collections.singletonList(contact("Ann", "1")));//nothing to fold- the files are left alone
+        journal.close();
+        assertFalse(Files.exists(csv()));
+        //after close() too- nothing would flush the record any more
+        ContactJournal closed = session();
+        closed.put(contact("Ann", "1"));
+        closed.close();
+        assertThrows(IOException.class, () -> closed.delete("Ann"));
+        assertEquals(Collections.singletonList("Ann=1"), replay());
+    }
+    @Test
+    public void failedFlushKeepsTheRecordsAndRefusesEditsUntilAFlushSucceeds() throws Exception {
+        ContactJournal journal = session();
+        //stop the group commit thread, so this test decides when flushes happen
+        ExecutorService flusher = (ExecutorService) field("flusher").get(journal);
+        flusher.shutdownNow();
+        assertTrue(flusher.awaitTermination(10, TimeUnit.SECONDS));
+        journal.put(contact("Ann", "1"));
+        flush(journal);
+        journal.put(contact("Bob", "2"));
+        ((FileChannel) field("channel").get(journal)).close();//the next write fails
+        IOException failed = assertThrows(IOException.class, () -> flush(journal));
+        IOException refused = assertThrows(IOException.class, () -> journal.put(contact("Cy", "3")));
+        assertTrue(refused.getMessage().startsWith("contact journal cannot be written"), refused.getMessage());
+        assertSame(failed, refused.getCause());
+        assertThrows(IOException.class, () -> journal.transaction(changes("Cy", contact("Cy", "3"))));
+        //the failed write moved the journal to a new file- the retry writes Bob there and edits are accepted again
+        flush(journal);
+        journal.put(contact("Cy", "3"));
+        journal.close();
+        assertEquals(Arrays.asList("Ann=1", "Bob=2", "Cy=3"), replay());
+        assertTrue(Files.exists(journalFile(2)));
+    }
+    //============================================= COMPACTION ===========================================================================================
+    @Test
+    public void compactionWritesTheSnapshotAndDropsFoldedJournals() throws IOException {
+        ContactJournal journal = new ContactJournal(csv(), directory.resolve("contacts.bin"));
+        journal.replay((name, contact) -> { });
+        journal.open();
+        //edits as the store makes them: journaled and applied under the read side of a lock whose write side compaction takes
+        ReentrantReadWriteLock edits = new ReentrantReadWriteLock();
+        TreeMap<String, Contact> contacts = new TreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            Contact contact = contact(String.format("name %03d", i), Integer.toString(i));
+            journal.put(contact);
+            contacts.put(contact.getName(), contact);
+        }
+        assertFalse(journal.needsCompaction());
+        edits.readLock().lock();
+        try {
+            //returns at once- the generation moves on and the contacts are copied on the compaction thread, once edits is free
+            journal.compact(edits.writeLock(), () -> {
+                synchronized (contacts) {
+                    return new ArrayList<>(contacts.values());
+                }
+            });
+            journal.put(contact("zed", "999"));
+            synchronized (contacts) {
+                contacts.put("zed", contact("zed", "999"));
+            }
+        } finally {
+            edits.readLock().unlock();
+        }
+        edits.readLock().lock();
+        try {
+            journal.put(contact("zoe", "998"));//before or after the new generation started- either way it is kept
+            synchronized (contacts) {
+                contacts.put("zoe", contact("zoe", "998"));
+            }
+        } finally {
+            edits.readLock().unlock();
+        }
+        journal.close();//waits for the snapshot
+        TreeMap<String, Contact> written = CsvContactLoader.load(csv()).contacts;
+        assertTrue(written.containsKey("zed"));
+        assertEquals(written, ContactSnapshot.load(directory.resolve("contacts.bin")));
+        assertFalse(Files.exists(journalFile(1)));
+        new ContactJournal(csv()).replay((name, contact) -> written.put(name, contact));
+        assertEquals(contacts, written);
+    }
+    private static Field field(String name) throws NoSuchFieldException {
+        Field field = ContactJournal.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+    private static void flush(ContactJournal journal) throws Exception {
+        Method flush = ContactJournal.class.getDeclaredMethod("flush");
+        flush.setAccessible(true);
+        try {
+            flush.invoke(journal);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+}
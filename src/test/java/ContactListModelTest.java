@@ -0,0 +1,72 @@
+import java.util.*;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactListModelTest {
+    //the model against a TreeMap of the same contacts, and its change events replayed onto a plain list- a table that
+    //only follows the events must end up showing exactly the model
+    private static List<Contact> mirror(ContactListModel model, int[] events) {
+        List<Contact> mirror = new ArrayList<>(model);
+        model.addListener((ListChangeListener<Contact>) change -> {
+            events[0]++;
+            while (change.next()) {
+                assertFalse(change.wasPermutated());
+                mirror.subList(change.getFrom(), change.getFrom() + change.getRemovedSize()).clear();
+                mirror.addAll(change.getFrom(), change.getAddedSubList());
+            }
+        });
+        return mirror;
+    }
+    @Test
+    public void putsAndRemovesMatchATreeMap() {
+        Random random = new Random(12);
+        ContactListModel model = new ContactListModel();
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.put("name " + i, new Contact("name " + i, Integer.toString(i), i + "@x.io"));
+        }
+        model.reset(ContactListModel.prebuild(expected.values()));
+        int[] events = new int[1];
+        List<Contact> mirror = mirror(model, events);
+        for (int step = 0; step < 20000; step++) {
+            String name = "name " + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                model.remove(name);
+                expected.remove(name);
+            } else {
+                Contact contact = new Contact(name, Integer.toString(step), step + "@x.io");
+                model.put(contact);
+                expected.put(name, contact);
+            }
+            if (step % 2000 == 0) {
+                assertModel(expected, model);
+            }
+        }
+        assertModel(expected, model);
+        assertEquals(new ArrayList<>(model), mirror);
+        assertTrue(events[0] <= 20000);//one event per edit at most- removes of missing names fire none
+        assertEquals(-1, model.indexOfName("nobody"));
+        assertThrows(IndexOutOfBoundsException.class, () -> model.get(model.size()));
+    }
+    @Test
+    public void replacesEverythingInOneChange() {
+        ContactListModel model = new ContactListModel();
+        model.put(new Contact("b", "1", "b@x.io"));
+        int[] events = new int[1];
+        List<Contact> mirror = mirror(model, events);
+        model.reset(ContactListModel.prebuild(Arrays.asList(new Contact("a", "2", "a@x.io"), new Contact("c", "3", "c@x.io"))));
+        assertEquals(1, events[0]);
+        assertEquals(new ArrayList<>(model), mirror);
+        assertEquals(Arrays.asList("a", "c"), Arrays.asList(model.get(0).getName(), model.get(1).getName()));
+    }
+    private static void assertModel(TreeMap<String, Contact> expected, ContactListModel model) {
+        assertEquals(expected.size(), model.size());
+        int index = 0;
+        for (Contact contact : expected.values()) {
+            assertSame(contact, model.get(index));
+            assertEquals(index, model.indexOfName(contact.getName()));
+            index++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactRowsTest {
+    //both ContactRows against a TreeMap of the same contacts- MapRows is the reference for lookups,
+    //ContactTable's open addressing, pages and row orders are what this mostly exercises
+    static Stream<IntFunction<ContactRows.Builder>> builders() {
+        return Stream.of(MapRows::builder, ContactTable::builder);
+    }
+    private static final String[] FIRST = {"anna", "Anna", "ANNA", "bob", "Bo", "zoë", "Émile", "chen", "o'brien", "mary-jane"};
+    private static Contact contact(Random random, int serial) {
+        String name = FIRST[random.nextInt(FIRST.length)] + " " + random.nextInt(3000);
+        String domain = random.nextBoolean() ? "example.com" : "mail" + random.nextInt(20) + ".org";
+        return new Contact(name, Integer.toString(5550000 + serial), "user" + serial + "@" + domain);
+    }
+    private static ContactRows build(IntFunction<ContactRows.Builder> builder, Collection<Contact> sorted) {
+        ContactRows.Builder rows = builder.apply(sorted.size());
+        for (Contact contact : sorted) {
+            rows.add(contact);
+        }
+        return rows.build();
+    }
+    @ParameterizedTest
+    @MethodSource("builders")
+    public void putsAndRemovesMatchATreeMap(IntFunction<ContactRows.Builder> builder) {
+        Random random = new Random(4);
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        int serial = 0;
+        for (int i = 0; i < 2000; i++) {
+            Contact contact = contact(random, serial++);
+            expected.putIfAbsent(contact.getName(), contact);
+        }
+        ContactRows rows = build(builder, expected.values());
+        assertRows(expected, rows);
+        //enough new contacts to grow the hash tables and the row orders several times
+        for (int step = 0; step < 30000; step++) {
+            Contact contact = contact(random, serial++);
+            Contact old = expected.get(contact.getName());
+            if (old != null && random.nextInt(3) == 0) {
+                rows.remove(old);
+                expected.remove(old.getName());
+            } else {
+                assertEquals(contact, rows.put(old, contact));
+                expected.put(contact.getName(), contact);
+            }
+            if (step % 5000 == 0) {
+                assertRows(expected, rows);
+            }
+        }
+        assertRows(expected, rows);
+    }
+    @ParameterizedTest
+    @MethodSource("builders")
+    public void searchMatchesAScan(IntFunction<ContactRows.Builder> builder) {
+        Random random = new Random(5);
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        for (int i = 0; i < 3000; i++) {
+            Contact contact = contact(random, i);
+            expected.putIfAbsent(contact.getName(), contact);
+        }
+        ContactRows rows = build(builder, expected.values());
+        String[] queries = {"anna", "ANNA 1", "zoë", "ZOË", "émile", "555001", "@example", "r12@mail", "mail1", ".org", "o'b", "a", "xyz", "  bob 2  "};
+        for (String query : queries) {
+            assertEquals(scan(expected.values(), query), rows.search(query), query);
+        }
+        assertTrue(rows.search("   ").isEmpty());
+    }
+    @ParameterizedTest
+    @MethodSource("builders")
+    public void startingWithKeepsNameOrder(IntFunction<ContactRows.Builder> builder) {
+        Random random = new Random(6);
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        for (int i = 0; i < 3000; i++) {
+            Contact contact = contact(random, i);
+            expected.putIfAbsent(contact.getName(), contact);
+        }
+        ContactRows rows = build(builder, expected.values());
+        //a few changes, so the orders are not only the ones built while loading
+        rows.put(null, new Contact("ANNA", "1", "x@y.io"));
+        expected.put("ANNA", new Contact("ANNA", "1", "x@y.io"));
+        rows.put(null, new Contact("anna", "2", "z@y.io"));
+        expected.put("anna", new Contact("anna", "2", "z@y.io"));
+        TreeMap<String, Contact> folded = new TreeMap<>(ContactRows.FOLDED_ORDER);
+        folded.putAll(expected);
+        for (String prefix : new String[] {"anna", "ANNA", "Anna 1", "bo", "BO", "zoë", "ÉMILE", "", "q"}) {
+            for (int limit : new int[] {1, 5, 10000}) {
+                assertEquals(prefixed(expected.values(), prefix, false, limit), rows.startingWith(prefix, false, limit), prefix);
+                assertEquals(prefixed(folded.values(), prefix, true, limit), rows.startingWith(prefix, true, limit), prefix);
+            }
+        }
+    }
+    @ParameterizedTest
+    @MethodSource("builders")
+    public void snapshotIsNotChangedByLaterEdits(IntFunction<ContactRows.Builder> builder) {
+        ContactRows rows = build(builder, Arrays.asList(new Contact("a", "1", "a@x.io"), new Contact("b", "2", "b@x.io")));
+        Collection<Contact> snapshot = rows.snapshot();
+        rows.put(null, new Contact("c", "3", "c@x.io"));
+        rows.put(rows.get("a"), new Contact("a", "4", "a@x.io"));
+        rows.remove(rows.get("b"));
+        assertEquals(Arrays.asList(new Contact("a", "1", "a@x.io"), new Contact("b", "2", "b@x.io")), new ArrayList<>(snapshot));
+        assertEquals(Arrays.asList(new Contact("a", "4", "a@x.io"), new Contact("c", "3", "c@x.io")), new ArrayList<>(rows.values()));
+        assertNull(rows.getByPhone("1"));
+        assertNull(rows.getByPhone("2"));
+        assertNull(rows.getByEmail("b@x.io"));
+        assertEquals("a", rows.getByPhone("4").getName());
+    }
+    private static void assertRows(TreeMap<String, Contact> expected, ContactRows rows) {
+        assertEquals(expected.size(), rows.size());
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(rows.values()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(rows.snapshot()));
+        for (Contact contact : expected.values()) {
+            assertEquals(contact, rows.get(contact.getName()));
+            assertEquals(contact, rows.getByPhone(contact.getPhone()));
+            assertEquals(contact, rows.getByEmail(contact.getEmail()));
+        }
+        assertNull(rows.get("nobody"));
+        assertNull(rows.getByPhone("0"));
+        assertNull(rows.getByEmail("nobody@example.com"));
+    }
+    private static List<Contact> scan(Collection<Contact> contacts, String query) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        List<Contact> results = new ArrayList<>();
+        for (Contact contact : contacts) {
+            if (contact.getName().toLowerCase(Locale.ROOT).contains(q) || contact.getPhone().contains(q)
+                    || contact.getEmail().toLowerCase(Locale.ROOT).contains(q)) {
+                results.add(contact);
+            }
+        }
+        return results;
+    }
+    private static List<Contact> prefixed(Collection<Contact> contacts, String prefix, boolean ignoreCase, int limit) {
+        List<Contact> results = new ArrayList<>();
+        for (Contact contact : contacts) {
+            if (results.size() < limit && contact.getName().regionMatches(ignoreCase, 0, prefix, 0, prefix.length())) {
+                results.add(contact);
+            }
+        }
+        return results;
+    }
+}
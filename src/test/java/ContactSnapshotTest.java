@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactSnapshotTest {
+    @TempDir
+    Path directory;
+    private static List<String> text(Collection<Contact> contacts) {
+        //contacts as "name|phone|email", to compare them by value
+        List<String> text = new ArrayList<>();
+        for (Contact contact : contacts) {
+            text.add(contact.getName() + "|" + contact.getPhone() + "|" + contact.getEmail());
+        }
+        return text;
+    }
+    @Test
+    public void readsBackWhatItWrites() throws IOException {
+        List<Contact> contacts = Arrays.asList(
+                new Contact("\"Doc\" Brown", "555-0100", "doc@example.com"),
+                new Contact("Lee, Ann", "+44 20 7946 0000", "ann@example.co.uk"),
+                new Contact("Zoë Ådahl", "5550102", "zoë@exämple.se"),
+                new Contact("陈 伟", "5550103", "chen@example.cn"));
+        Path file = directory.resolve("contacts.bin");
+        ContactSnapshot.write(file, contacts);
+        assertEquals(text(contacts), text(ContactSnapshot.load(file).values()));
+        ContactSnapshot.write(file, Collections.emptyList());
+        assertTrue(ContactSnapshot.load(file).isEmpty());
+    }
+    @Test
+    public void refusesADamagedOrUnsortedSnapshot() throws IOException {
+        Path file = directory.resolve("contacts.bin");
+        ContactSnapshot.write(file, Arrays.asList(new Contact("Ann", "1", "ann@x.io"), new Contact("Bob", "2", "bob@x.io")));
+        byte[] content = Files.readAllBytes(file);
+        for (int i = 0; i < content.length; i++) {
+            //every flipped bit is caught, by the checksum or by the checks around it
+            content[i] ^= 0x10;
+            Files.write(file, content);
+            assertThrows(IOException.class, () -> ContactSnapshot.load(file), "byte " + i);
+            content[i] ^= 0x10;
+        }
+        Files.write(file, Arrays.copyOf(content, 10));
+        assertThrows(IOException.class, () -> ContactSnapshot.load(file));
+        ContactSnapshot.write(file, Arrays.asList(new Contact("Bob", "2", "bob@x.io"), new Contact("Ann", "1", "ann@x.io")));
+        assertThrows(IOException.class, () -> ContactSnapshot.load(file));
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactStoreConcurrencyTest {
+    //writers adding, updating, deleting, swapping and undoing on a small set of names, phones and emails (so they clash all
+    //the time) while readers search and complete, and one of them compacts- then checks what the store promises:
+    //  - no two contacts share a name, a phone or an email
+    //  - every contact is found by get, search and both completions, and the listener saw every change
+    //  - the store read back from its files (snapshot + journal) equals the store in memory
+    //a short version of benchmarks' StoreStressTest, run with every build
+    @TempDir
+    Path directory;
+    private static final int KEYS = 300;//names, phones and emails the writers pick from
+    private static final int WRITERS = 4;
+    private static final int READERS = 2;
+    private static final int EDITS = 3000;//per writer
+    //----------------------------------- helpers ------------------------
+    private ContactStore open(ContactStore.Storage storage) throws IOException {
+        ContactStore store = new ContactStore(directory.resolve("contacts.csv"), directory.resolve("contacts.bin"), storage);
+        store.open();
+        store.load(done -> { });
+        return store;
+    }
+    private static Contact contact(Random random) {
+        int key = random.nextInt(KEYS);
+        return new Contact("Stress " + key, Integer.toString(1000000 + random.nextInt(KEYS)), "stress" + random.nextInt(KEYS) + "@example.com");
+    }
+    private static TreeMap<String, Contact> toMap(List<Contact> contacts) {
+        TreeMap<String, Contact> map = new TreeMap<>();
+        for (Contact contact : contacts) {
+            map.put(contact.getName(), contact);
+        }
+        return map;
+    }
+    //============================================= WRITERS AND READERS ===========================================================================================
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void keepsItsGuaranteesUnderConcurrentEdits(ContactStore.Storage storage) throws Exception {
+        ContactStore store = open(storage);
+        for (int i = 0; i < 1000; i++) {
+            store.add(new Contact(String.format("name %04d", i), Integer.toString(2000000 + i), "name" + i + "@example.com"));
+        }
+        //what the listener was told, name by name- changes to one name reach it in order, so the last one is the contact now
+        Map<String, Contact> heard = new ConcurrentHashMap<>();
+        for (Contact contact : store.values()) {
+            heard.put(contact.getName(), contact);
+        }
+        store.addListener(changes -> {
+            for (ContactStore.Change change : changes) {
+                if (change.getAfter() != null) {
+                    heard.put(change.getName(), change.getAfter());
+                } else {
+                    heard.remove(change.getName());
+                }
+            }
+        });
+        //------------------run
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(WRITERS);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            long seed = w;
+            tasks.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                try {
+                    for (int i = 0; i < EDITS; i++) {
+                        int op = random.nextInt(20);
+                        if (op < 7) {
+                            store.add(contact(random));
+                        } else if (op < 13) {
+                            store.update(contact(random));
+                        } else if (op < 16) {
+                            store.delete("Stress " + random.nextInt(KEYS));
+                        } else if (op < 18) {
+                            store.transaction().delete("Stress " + random.nextInt(KEYS)).add(contact(random)).update(contact(random)).commit();
+                        } else if (op < 19) {
+                            store.undo();
+                        } else {
+                            store.redo();
+                        }
+                    }
+                } finally {
+                    writing.countDown();
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            long seed = -1 - r;
+            boolean compacts = r == 0;
+            tasks.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; writing.getCount() > 0; i++) {
+                    int key = random.nextInt(KEYS);
+                    store.get("Stress " + key);
+                    store.search("stress " + key);
+                    store.completeName("Stress " + key, 10);
+                    store.completePhone(Integer.toString(1000000 + key).substring(0, 5), 10);
+                    store.fuzzySearch("strss " + key, 5);
+                    if (compacts && i % 500 == 0) {
+                        store.compact();//folds the journal in while the writers go on
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get(2, TimeUnit.MINUTES);//rethrows anything a thread threw
+        }
+        pool.shutdown();
+        //------------------check
+        Set<String> names = new HashSet<>();
+        Set<String> phones = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<Contact> inMemory = new ArrayList<>(store.values());
+        for (Contact contact : inMemory) {
+            assertTrue(names.add(contact.getName()), "name used twice: " + contact.getName());
+            assertTrue(phones.add(contact.getPhone()), "phone used twice: " + contact.getPhone());
+            assertTrue(emails.add(contact.getEmail()), "email used twice: " + contact.getEmail());
+            assertEquals(contact, store.get(contact.getName()));
+            assertTrue(store.search(contact.getName()).contains(contact), "not found by search: " + contact.getName());
+            assertTrue(store.completeName(contact.getName(), KEYS).contains(contact), "not completed by name: " + contact.getName());
+            assertTrue(store.completePhone(contact.getPhone(), KEYS).contains(contact), "not completed by phone: " + contact.getPhone());
+        }
+        assertEquals(inMemory.size(), store.size());
+        assertEquals(toMap(inMemory), new TreeMap<>(heard));
+        store.close();
+        ContactStore reloaded = open(storage);
+        assertEquals(inMemory, new ArrayList<>(reloaded.values()));
+        reloaded.close();
+    }
+}
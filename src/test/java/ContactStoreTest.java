@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactStoreTest {
+    @TempDir
+    Path directory;
+    //----------------------------------- helpers ------------------------
+    private ContactStore open(ContactStore.Storage storage) throws IOException {
+        ContactStore store = new ContactStore(directory.resolve("contacts.csv"), directory.resolve("contacts.bin"), storage);
+        store.open();
+        store.load(done -> { });
+        return store;
+    }
+    private static Contact contact(String name, String phone) {
+        return new Contact(name, phone, name.toLowerCase(Locale.ROOT).replace(' ', '.') + "@example.com");
+    }
+    private static List<String> text(Collection<Contact> contacts) {
+        //contacts as "name|phone|email", to compare them by value
+        List<String> text = new ArrayList<>();
+        for (Contact contact : contacts) {
+            text.add(contact.getName() + "|" + contact.getPhone() + "|" + contact.getEmail());
+        }
+        return text;
+    }
+    private static List<String> text(Contact... contacts) {
+        return text(Arrays.asList(contacts));
+    }
+    private static List<String> names(Collection<Contact> contacts) {
+        List<String> names = new ArrayList<>();
+        for (Contact contact : contacts) {
+            names.add(contact.getName());
+        }
+        return names;
+    }
+    //============================================= EDITS ===========================================================================================
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void editsReportDuplicatesAndMissingNames(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        assertEquals(ContactStore.Status.OK, store.add(contact("Ann", "5550001")));
+        assertEquals(ContactStore.Status.DUPLICATE_NAME, store.add(contact("Ann", "5550002")));
+        assertEquals(ContactStore.Status.DUPLICATE_PHONE, store.add(contact("Bob", "5550001")));
+        assertEquals(ContactStore.Status.DUPLICATE_EMAIL, store.add(new Contact("Bob", "5550002", "ann@example.com")));
+        assertEquals(ContactStore.Status.OK, store.add(contact("Bob", "5550002")));
+        assertEquals(ContactStore.Status.DUPLICATE_PHONE, store.update(contact("Bob", "5550001")));
+        assertEquals(ContactStore.Status.OK, store.update(contact("Bob", "5550003")));
+        assertEquals(ContactStore.Status.NOT_FOUND, store.update(contact("Cy", "5550004")));
+        assertEquals(ContactStore.Status.NOT_FOUND, store.delete("Cy"));
+        assertEquals(ContactStore.Status.OK, store.delete("Ann"));
+        assertEquals(text(contact("Bob", "5550003")), text(store.values()));
+        //the old phone and email are free again
+        assertEquals(ContactStore.Status.OK, store.add(contact("Cy", "5550002")));
+        assertEquals(ContactStore.Status.OK, store.add(new Contact("Dee", "5550001", "ann@example.com")));
+        assertEquals(Arrays.asList("Bob", "Cy", "Dee"), names(store.search("55500")));
+        assertEquals(Arrays.asList("Dee"), names(store.search("ANN@")));
+        store.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void transactionsApplyAllOrNothing(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("Ann", "1"));
+        store.add(contact("Bob", "2"));
+        List<List<ContactStore.Change>> heard = new ArrayList<>();
+        store.addListener(heard::add);
+        //two contacts swap phones- only a clash once the whole transaction is applied counts
+        ContactStore.Status[] statuses = store.transaction().update(contact("Ann", "2")).update(contact("Bob", "1")).add(contact("Cy", "3")).commit();
+        assertArrayEquals(new ContactStore.Status[] {ContactStore.Status.OK, ContactStore.Status.OK, ContactStore.Status.OK}, statuses);
+        assertEquals("2", store.get("Ann").getPhone());
+        assertEquals("1", store.get("Bob").getPhone());
+        assertEquals(1, heard.size());
+        assertEquals(3, heard.get(0).size());
+        //one bad edit and none of them happen
+        statuses = store.transaction().delete("Cy").add(contact("Dee", "4")).add(contact("Eve", "4")).commit();
+        assertArrayEquals(new ContactStore.Status[] {ContactStore.Status.OK, ContactStore.Status.OK, ContactStore.Status.DUPLICATE_PHONE}, statuses);
+        statuses = store.transaction().delete("Nobody").add(contact("Dee", "4")).commit();
+        assertEquals(ContactStore.Status.NOT_FOUND, statuses[0]);
+        assertEquals(Arrays.asList("Ann", "Bob", "Cy"), names(store.values()));
+        assertEquals(1, heard.size());
+        store.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void fuzzySearchFollowsTheEdits(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("John Smith", "1"));
+        store.add(contact("Catherine Jones", "2"));
+        assertEquals(Arrays.asList("John Smith"), names(store.fuzzySearch("jon smyth", 5)));
+        assertEquals(Arrays.asList("Catherine Jones"), names(store.fuzzySearch("kathryn", 5)));
+        store.update(contact("John Smith", "3"));
+        assertEquals("3", store.fuzzySearch("john", 5).get(0).getPhone());
+        store.delete("John Smith");
+        assertTrue(store.fuzzySearch("jon smyth", 5).isEmpty());
+        store.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void completionsFollowTheEdits(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("John", "5551234"));
+        store.add(contact("joanna", "5559999"));
+        store.add(contact("ANNA", "4441234"));
+        assertEquals(Arrays.asList("joanna", "John"), names(store.completeName("jo", 5)));
+        assertEquals(Arrays.asList("John"), names(store.completeName("Jo", 5)));
+        assertEquals(Arrays.asList("ANNA"), names(store.completeName("anna", 5)));
+        assertEquals(Arrays.asList("John", "joanna"), names(store.completePhone("(555) ", 5)));
+        assertEquals(Arrays.asList("John"), names(store.completePhone("555 12", 1)));
+        //a cached completion must not outlive an edit
+        store.delete("John");
+        store.add(contact("Jody", "5550000"));
+        assertEquals(Arrays.asList("joanna", "Jody"), names(store.completeName("jo", 5)));
+        assertEquals(Arrays.asList("Jody", "joanna"), names(store.completePhone("555", 5)));
+        store.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void searchFindsPhonesHoweverTheyAreTyped(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("Ann", "5551234"));
+        store.add(contact("Bob", "+15559876"));
+        store.add(contact("Cy 555", "5550000"));
+        assertEquals(Arrays.asList("Ann"), names(store.search("555-1234")));
+        assertEquals(Arrays.asList("Ann"), names(store.search("(555) 12")));
+        assertEquals(Arrays.asList("Bob"), names(store.search("+1 555 98")));
+        assertEquals(Arrays.asList("Ann", "Bob", "Cy 555"), names(store.search("555")));
+        assertEquals(Arrays.asList("Cy 555"), names(store.search("cy 5")));
+        assertEquals(Arrays.asList("Ann"), names(store.fuzzySearch("an", 5)));
+        store.close();
+    }
+    @Test
+    public void refusesEditsBeforeLoading() throws IOException {
+        ContactStore store = new ContactStore(directory.resolve("contacts.csv"), null);
+        store.open();
+        assertThrows(IllegalStateException.class, () -> store.add(contact("Ann", "1")));
+        assertThrows(IllegalStateException.class, () -> store.update(contact("Ann", "1")));
+        assertThrows(IllegalStateException.class, () -> store.delete("Ann"));
+        assertThrows(IllegalStateException.class, () -> store.addAll(Collections.singletonList(contact("Ann", "1"))));
+        assertThrows(IllegalStateException.class, () -> store.transaction().add(contact("Ann", "1")).commit());
+        assertThrows(IllegalStateException.class, () -> store.undo());
+        assertThrows(IllegalStateException.class, () -> store.redo());
+        store.load(done -> { });
+        assertEquals(ContactStore.Status.OK, store.add(contact("Ann", "1")));
+        store.close();
+    }
+    //============================================= UNDO / REDO ===========================================================================================
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void undoAndRedoWalkTheHistory(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        assertFalse(store.canUndo());
+        assertEquals(ContactStore.Status.NOT_FOUND, store.undo());
+        store.add(contact("Ann", "1"));
+        store.update(contact("Ann", "2"));
+        store.transaction().add(contact("Bob", "3")).delete("Ann").commit();
+        assertEquals(Arrays.asList(contact("Bob", "3")), new ArrayList<>(store.values()));
+        assertEquals(ContactStore.Status.OK, store.undo());//the transaction, as one step
+        assertEquals(Arrays.asList(contact("Ann", "2")), new ArrayList<>(store.values()));
+        assertEquals(ContactStore.Status.OK, store.undo());
+        assertEquals(contact("Ann", "1"), store.get("Ann"));
+        assertEquals(ContactStore.Status.OK, store.undo());
+        assertEquals(0, store.size());
+        assertFalse(store.canUndo());
+        assertTrue(store.canRedo());
+        assertEquals(ContactStore.Status.OK, store.redo());
+        assertEquals(ContactStore.Status.OK, store.redo());
+        assertEquals(ContactStore.Status.OK, store.redo());
+        assertEquals(Arrays.asList(contact("Bob", "3")), new ArrayList<>(store.values()));
+        assertEquals(ContactStore.Status.NOT_FOUND, store.redo());
+        //the undone phone and trie entries are back as they were
+        assertEquals(Arrays.asList("Bob"), names(store.completePhone("3", 10)));
+        assertTrue(store.completePhone("2", 10).isEmpty());
+        //a new edit drops what could be redone
+        store.undo();
+        assertTrue(store.canRedo());
+        store.add(contact("Cy", "4"));
+        assertFalse(store.canRedo());
+        store.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void keepsARefusedUndoInTheHistory(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("Ann", "1"));
+        store.delete("Ann");
+        //Bob takes the phone through addAll, which is not in the history- undoing the delete would clash with him
+        assertArrayEquals(new ContactStore.Status[] {ContactStore.Status.OK}, store.addAll(Collections.singletonList(new Contact("Bob", "1", "bob@example.com"))));
+        assertEquals(ContactStore.Status.DUPLICATE_PHONE, store.undo());
+        assertTrue(store.canUndo());
+        assertFalse(store.canRedo());
+        assertNull(store.get("Ann"));
+        assertEquals(new Contact("Bob", "1", "bob@example.com"), store.get("Bob"));
+        //newer edits are undone as usual, the refused one is still next after them
+        store.delete("Bob");
+        assertEquals(ContactStore.Status.OK, store.undo());
+        assertEquals(ContactStore.Status.DUPLICATE_PHONE, store.undo());
+        assertTrue(store.canRedo());
+        store.close();
+    }
+    @Test
+    public void forgetsTheOldestEditsPastTheLimit() throws IOException {
+        ContactStore store = open(ContactStore.Storage.MAPS);
+        for (int i = 0; i < 150; i++) {
+            store.add(contact(String.format("name %03d", i), Integer.toString(i)));
+        }
+        int undone = 0;
+        while (store.undo() == ContactStore.Status.OK) {
+            undone++;
+        }
+        assertEquals(100, undone);
+        assertEquals(50, store.size());
+        assertEquals("name 049", names(store.values()).get(49));
+        store.close();
+    }
+    //============================================= FILES AND LISTENERS ===========================================================================================
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void keepsEditsAcrossARestart(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        store.add(contact("Ann", "1"));
+        store.add(contact("Bob", "2"));
+        store.update(contact("Ann", "3"));
+        store.transaction().delete("Bob").add(contact("Cy", "2")).commit();
+        store.undo();
+        store.close();
+        //replayed from the journal
+        ContactStore reopened = open(storage);
+        assertEquals(Arrays.asList(contact("Ann", "3"), contact("Bob", "2")), new ArrayList<>(reopened.values()));
+        reopened.add(contact("Dee", "4"));
+        reopened.close();
+        //loading folded the journal into the files- Dee is in them too if the compaction thread got to it after the add
+        Map<String, Contact> written = CsvContactLoader.load(directory.resolve("contacts.csv")).contacts;
+        assertEquals(contact("Ann", "3"), written.get("Ann"));
+        assertEquals(contact("Bob", "2"), written.get("Bob"));
+        reopened = open(storage);
+        assertEquals(Arrays.asList(contact("Ann", "3"), contact("Bob", "2"), contact("Dee", "4")), new ArrayList<>(reopened.values()));
+        //the phone trie and the fuzzy index are built from what was loaded (with COMPACT storage on first use)
+        assertEquals(Arrays.asList("Dee"), names(reopened.completePhone("4", 5)));
+        assertEquals(Arrays.asList("Bob"), names(reopened.fuzzySearch("bobb", 5)));
+        reopened.close();
+    }
+    @ParameterizedTest
+    @EnumSource(ContactStore.Storage.class)
+    public void listModelFollowsTheChanges(ContactStore.Storage storage) throws IOException {
+        ContactStore store = open(storage);
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            store.add(contact("name " + i, Integer.toString(i)));
+        }
+        ContactListModel model = new ContactListModel();
+        model.reset(ContactListModel.prebuild(store.rows()));
+        store.addListener(model::apply);
+        for (int step = 0; step < 2000; step++) {
+            String name = "name " + random.nextInt(300);
+            switch (random.nextInt(5)) {
+                case 0:
+                    store.add(contact(name, Integer.toString(1000 + step)));
+                    break;
+                case 1:
+                    store.update(contact(name, Integer.toString(1000 + step)));
+                    break;
+                case 2:
+                    store.delete(name);
+                    break;
+                case 3:
+                    store.transaction().delete(name).add(contact(name + " b", Integer.toString(1000 + step))).commit();
+                    break;
+                default:
+                    store.undo();
+            }
+        }
+        assertEquals(new ArrayList<>(store.values()), new ArrayList<>(model));
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(i, model.indexOfName(model.get(i).getName()));
+        }
+        store.close();
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactValidatorTest {
+    private final ContactValidator national = new ContactValidator();
+    private final ContactValidator international = new ContactValidator(ContactValidator.PhoneFormat.E164, "44");
+    @Test
+    public void namesWithoutControlCharacters() {
+        assertTrue(national.isValidName("Zoë O'Brien-Smith, Jr."));
+        assertTrue(national.isValidName("陈伟"));
+        assertFalse(national.isValidName("Jane\nDoe"));
+        assertFalse(national.isValidName("Jane\tDoe"));
+        assertFalse(national.isValidName("Jane\rDoe"));
+        assertFalse(national.isValidName("Jane\u2028Doe"));
+        assertFalse(national.isValidName("Jane\u0000"));
+    }
+    @Test
+    public void phones() {
+        assertEquals("5551234567", national.normalizePhoneNumber("(555) 123-4567"));
+        assertEquals("5551234567", national.normalizePhoneNumber("5551234567"));
+        assertNull(national.normalizePhoneNumber("555123456"));
+        assertNull(national.normalizePhoneNumber("+1 555 123 4567"));
+        assertNull(national.normalizePhoneNumber("555-CALL-NOW"));
+        assertEquals("+442079460958", international.normalizePhoneNumber("+44 20 7946 0958"));
+        assertEquals("+442079460958", international.normalizePhoneNumber("0044 20 7946 0958"));
+        assertEquals("+442079460958", international.normalizePhoneNumber("020 7946 0958"));//national trunk 0 dropped
+        assertEquals("+15551234567", international.normalizePhoneNumber("+1 (555) 123-4567"));
+        assertNull(international.normalizePhoneNumber("+0 555 123 4567"));
+        assertNull(international.normalizePhoneNumber("555+1234"));
+        assertNull(international.normalizePhoneNumber("+1 2345"));
+        assertThrows(IllegalArgumentException.class, () -> new ContactValidator(ContactValidator.PhoneFormat.E164, "0"));
+    }
+    @Test
+    public void phoneQueries() {
+        assertEquals("5551234", ContactValidator.phoneQuery("555-1234"));
+        assertEquals("55512", ContactValidator.phoneQuery("(555) 12"));
+        assertEquals("+4420", ContactValidator.phoneQuery("+44 20"));
+        assertEquals("555", ContactValidator.phoneQuery("555"));
+        assertNull(ContactValidator.phoneQuery("55+5"));
+        assertNull(ContactValidator.phoneQuery("ann 555"));
+        assertNull(ContactValidator.phoneQuery("- ()"));
+        assertNull(ContactValidator.phoneQuery(""));
+    }
+    @Test
+    public void emails() {
+        assertTrue(national.isValidEmail("first.last+tag@mail.example.com"));
+        assertTrue(national.isValidEmail("zoë@exämple.se"));
+        assertFalse(national.isValidEmail("first..last@example.com"));
+        assertFalse(national.isValidEmail(".first@example.com"));
+        assertFalse(national.isValidEmail("first@example"));
+        assertFalse(national.isValidEmail("first@-example.com"));
+        assertFalse(national.isValidEmail("first@example.123"));
+        assertFalse(national.isValidEmail("a@b@example.com"));
+        assertFalse(national.isValidEmail("jane\u0085doe@example.com"));
+        assertEquals("Jane.Doe@example.com", national.normalizeEmail("Jane.Doe@EXAMPLE.com"));
+        assertNull(national.normalizeEmail("not an email"));
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvContactLoaderTest {
+    @TempDir
+    Path directory;
+    //----------------------------------- helpers ------------------------
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("contacts.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    //============================================= ROUND TRIP ===========================================================================================
+    @Test
+    public void readsBackWhatTheJournalWrites() throws IOException {
+        List<Contact> contacts = Arrays.asList(
+                new Contact("\"Doc\" Brown", "555-0100", "doc@example.com"),
+                new Contact("Lee, Ann", "+44 20 7946 0000", "ann@example.co.uk"),
+                new Contact("Multi\nLine\r\nName", "5550101", "\"quoted\"@example.com"),
+                new Contact("Zoë Ådahl", "5550102", "zoë@exämple.se"),
+                new Contact("陈 伟", "5550103", "chen@example.cn"));
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        for (Contact contact : contacts) {
+            expected.put(contact.getName(), contact);
+        }
+        Path file = directory.resolve("contacts.csv");
+        ContactJournal.writeSnapshot(file, expected.values());
+        CsvContactLoader.Result result = CsvContactLoader.load(file);
+        assertEquals(Collections.emptyList(), result.errors);
+        assertEquals(expected, result.contacts);
+        assertEquals(5, result.rows);
+    }
+    //============================================= READ ===========================================================================================
+    @Test
+    public void readsLargeFilesAcrossPieces() throws IOException {
+        //well over one 4MB piece, with quoted line breaks everywhere, so some of them straddle a piece boundary
+        Random random = new Random(10);
+        TreeMap<String, Contact> expected = new TreeMap<>();
+        for (int i = 0; expected.size() < 200000; i++) {
+            String name = "name " + i + (random.nextInt(3) == 0 ? "\nsecond line, with a comma" : "");
+            expected.put(name, new Contact(name, Integer.toString(1000000 + i), "\"e" + i + "\"@example.com"));
+        }
+        Path file = directory.resolve("contacts.csv");
+        ContactJournal.writeSnapshot(file, expected.values());
+        assertTrue(Files.size(file) > 8 * 1024 * 1024);
+        CsvContactLoader.Result result = CsvContactLoader.load(file);
+        assertEquals(Collections.emptyList(), result.errors);
+        assertEquals(expected, result.contacts);
+        //a bad row at the very end still gets its real line number, counting the quoted line breaks
+        int lines = 0;
+        for (String name : expected.keySet()) {
+            lines += name.contains("\n") ? 2 : 1;
+        }
+        Files.write(file, "only,two\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        result = CsvContactLoader.load(file);
+        assertEquals(Collections.singletonList("line " + (lines + 1) + ": expected 3 fields (name,phone,email) but found 2"), result.errors);
+    }
+    //============================================= BAD INPUT ===========================================================================================
+    @Test
+    public void reportsBadRowsWithTheirLines() throws IOException {
+        Path file = write("Ann,1,ann@x.io\n"
+                + "\n"
+                + "only,two\n"
+                + "\"multi\nline\",2,m@x.io\n"
+                + "a,b,c,d\n"
+                + ",3,empty@x.io\n"
+                + "Bob,4,bob@x.io\n"
+                + "\"open,5,o@x.io\n");
+        CsvContactLoader.Result result = CsvContactLoader.load(file);
+        assertEquals(Arrays.asList(
+                "line 3: expected 3 fields (name,phone,email) but found 2",
+                "line 6: expected 3 fields (name,phone,email) but found 4",
+                "line 7: empty name, phone or email",
+                "line 9: unterminated quote"), result.errors);
+        assertEquals(Arrays.asList("Ann", "Bob", "multi\nline"), new ArrayList<>(result.contacts.keySet()));
+        assertEquals(7, result.rows);
+    }
+    @Test
+    public void skipsAByteOrderMarkAndWindowsLineEnds() throws IOException {
+        Path file = write("\uFEFFAnn,1,ann@x.io\r\nBob,2,bob@x.io\r\n\"Cy\r\nDee\",3,cy@x.io\r\n");
+        CsvContactLoader.Result result = CsvContactLoader.load(file);
+        assertEquals(Collections.emptyList(), result.errors);
+        assertEquals(new Contact("Ann", "1", "ann@x.io"), result.contacts.get("Ann"));
+        assertEquals(new Contact("Bob", "2", "bob@x.io"), result.contacts.get("Bob"));
+        assertEquals(new Contact("Cy\r\nDee", "3", "cy@x.io"), result.contacts.get("Cy\r\nDee"));
+    }
+    @Test
+    public void keepsTheLaterOfTwoRowsWithTheSameName() throws IOException {
+        Path file = write("Ann,1,a1@x.io\nBob,2,bob@x.io\nAnn,3,a3@x.io\n");
+        CsvContactLoader.Result result = CsvContactLoader.load(file);
+        assertEquals(new Contact("Ann", "3", "a3@x.io"), result.contacts.get("Ann"));
+        assertEquals(Collections.singletonList("duplicate name \"Ann\": the later row was kept"), result.errors);
+        assertEquals(3, result.rows);
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzyNameIndexTest {
+    private static FuzzyNameIndex index(String... names) {
+        FuzzyNameIndex index = new FuzzyNameIndex();
+        for (String name : names) {
+            index.add(name, name);
+        }
+        return index;
+    }
+    @Test
+    public void findsTyposSwapsAndSoundAlikes() {
+        FuzzyNameIndex index = index("John Smith", "Catherine Jones", "Philip Grant", "Mary Ann", "Bob Stone");
+        assertEquals("John Smith", index.search("jon smyth", 5).get(0));
+        assertEquals("John Smith", index.search("jhon smtih", 5).get(0));//two swapped letters
+        assertEquals("Catherine Jones", index.search("kathryn", 5).get(0));
+        assertEquals("Philip Grant", index.search("filip", 5).get(0));
+        assertEquals("Philip Grant", index.search("gra", 5).get(0));//start of a word
+        assertTrue(index.search("xqzv", 5).isEmpty());
+        assertTrue(index.search("", 5).isEmpty());
+        assertTrue(index.search("john", 0).isEmpty());
+    }
+    @Test
+    public void ranksExactMatchesFirstAndKeepsTheLimit() {
+        FuzzyNameIndex index = index("Jon Doe", "John Doe", "Johan Doe", "Joan Doe", "Jonas Doe");
+        List<String> found = index.search("john doe", 10);
+        assertEquals("John Doe", found.get(0));
+        assertEquals(new HashSet<>(found).size(), found.size());
+        assertEquals(2, index.search("john doe", 2).size());
+        assertEquals(Collections.singletonList("John Doe"), index.search("john doe", 1));
+    }
+    @Test
+    public void forgetsRemovedNames() throws InterruptedException {
+        FuzzyNameIndex index = new FuzzyNameIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.add("name" + i, "Person" + i + " Smith");
+        }
+        index.add("Anna", "Anna Karenina");
+        for (int i = 0; i < 3000; i++) {
+            index.remove("name" + i);//enough to rebuild, in the background
+        }
+        //edits while it may still run must survive the swap
+        index.add("Zed", "Zed Smith");
+        index.add("Anna", "Anna Karenina Smith");
+        index.remove("name5");
+        assertEquals(Collections.singletonList("Anna"), index.search("smith anna", 10));
+        assertEquals(Arrays.asList("Zed", "Anna"), index.search("smith", 10));
+        while (index.rebuilding()) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("Anna"), index.search("smith anna", 10));
+        assertEquals(Arrays.asList("Zed", "Anna"), index.search("smith", 10));
+        assertEquals("Anna", index.search("karenina", 10).get(0));
+        assertEquals(Collections.singletonList("Zed"), index.search("zed", 10));
+        assertTrue(index.search("person5", 10).isEmpty());
+        index.clear();
+        assertTrue(index.search("anna", 10).isEmpty());
+    }
+    @Test
+    public void textHelpers() {
+        assertEquals(Arrays.asList("o", "brien", "zoë", "42"), FuzzyNameIndex.tokenize("O'Brien, ZOË-42"));
+        assertTrue(FuzzyNameIndex.tokenize(" -- ").isEmpty());
+        assertEquals(0, FuzzyNameIndex.distance("smith", "smith", 2));
+        assertEquals(1, FuzzyNameIndex.distance("smith", "smyth", 2));
+        assertEquals(1, FuzzyNameIndex.distance("john", "jhon", 2));//a swap is one edit
+        assertEquals(1, FuzzyNameIndex.distance("jon", "john", 2));
+        assertEquals(3, FuzzyNameIndex.distance("kitten", "sitting", 2));//over the limit: limit + 1
+        assertEquals(3, FuzzyNameIndex.distance("a", "abcdef", 2));
+        assertEquals("6163", FuzzyNameIndex.soundex("robert"));//a first consonant is kept as its digit
+        assertEquals("6163", FuzzyNameIndex.soundex("rupert"));
+        assertEquals(FuzzyNameIndex.soundex("catherine"), FuzzyNameIndex.soundex("kathryn"));
+        assertEquals(FuzzyNameIndex.soundex("philip"), FuzzyNameIndex.soundex("filip"));
+        assertEquals("A000", FuzzyNameIndex.soundex("a"));
+        assertNull(FuzzyNameIndex.soundex("42"));
+        assertNull(FuzzyNameIndex.soundex(""));
+    }
+}
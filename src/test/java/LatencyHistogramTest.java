@@ -0,0 +1,68 @@
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void percentilesAreWithinThreePercent() {
+        Random random = new Random(9);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        long total = 0;
+        for (int i = 0; i < values.length; i++) {
+            //log-uniform from nanoseconds to about a minute
+            values[i] = (long) Math.pow(10, random.nextDouble() * 11);
+            histogram.record(values[i]);
+            total += values[i];
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] {0, 1, 25, 50, 90, 99, 99.9, 99.99, 100}) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * values.length));
+            long exact = values[(int) rank - 1];
+            long read = histogram.getPercentile(percentile);
+            //the highest value of the exact one's bucket- never below it
+            assertTrue(read >= exact && read <= exact + exact / 32 + 1, percentile + ": " + read + " for " + exact);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+        assertEquals((double) total / values.length, histogram.getMean(), 1e-6);
+    }
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+        for (int value = 0; value < 64; value++) {
+            assertEquals(value, histogram.getPercentile((value + 1) * 100.0 / 64));
+        }
+    }
+    @Test
+    public void bucketEdges() {
+        //every power of two from 64 up, and its neighbours, comes back within one bucket
+        for (int bit = 6; bit < 62; bit++) {
+            for (long value : new long[] {(1L << bit) - 1, 1L << bit, (1L << bit) + 1}) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                histogram.record(value);
+                histogram.record(Long.MAX_VALUE / 2);
+                long read = histogram.getPercentile(50);
+                assertTrue(read >= value && read - value <= value / 32, value + " read as " + read);
+            }
+        }
+    }
+    @Test
+    public void resetAndEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMean());
+        histogram.record(1000);
+        histogram.record(-5);//counted as 0
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
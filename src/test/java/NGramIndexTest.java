@@ -0,0 +1,107 @@
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NGramIndexTest {
+    //the index must find exactly what a scan of every document finds, also after removes and re-adds
+    private static final String LETTERS = "abcdeéÖ ";
+    @Test
+    public void searchMatchesAScan() {
+        Random random = new Random(8);
+        NGramIndex index = new NGramIndex();
+        Map<String, String[]> documents = new HashMap<>();
+        for (int step = 0; step < 30000; step++) {
+            String key = "k" + random.nextInt(8000);
+            if (documents.containsKey(key) && random.nextInt(3) == 0) {
+                index.remove(key);
+                documents.remove(key);
+            } else {
+                //adding a key again replaces its fields
+                String[] fields = {word(random, 12), word(random, 6), "k" + step + "@Example.com"};
+                index.add(key, fields);
+                documents.put(key, fields);
+            }
+            if (step % 10000 == 9999) {
+                assertSearches(random, index, documents);
+            }
+        }
+        index.clear();
+        assertTrue(index.search("abc").isEmpty());
+    }
+    @Test
+    public void keepsEditsMadeWhileRebuilding() throws InterruptedException {
+        //removing more than are left starts a rebuild in the background- edits made meanwhile must survive the swap
+        Random random = new Random(9);
+        NGramIndex index = new NGramIndex();
+        Map<String, String[]> documents = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            String[] fields = {word(random, 12), "k" + i + "@example.com"};
+            index.add("k" + i, fields);
+            documents.put("k" + i, fields);
+        }
+        for (int i = 0; i < 2000; i++) {
+            index.remove("k" + i);
+            documents.remove("k" + i);
+        }
+        for (int i = 1500; i < 2500; i++) {
+            //re-adds, replacements and removes, on both sides of what was copied for the rebuild
+            if (i % 3 == 0) {
+                index.remove("k" + i);
+                documents.remove("k" + i);
+            } else {
+                String[] fields = {word(random, 12), "k" + i + "@example.org"};
+                index.add("k" + i, fields);
+                documents.put("k" + i, fields);
+            }
+        }
+        assertSearches(random, index, documents);
+        while (index.rebuilding()) {
+            Thread.sleep(10);
+        }
+        assertSearches(random, index, documents);
+    }
+    @Test
+    public void shortAndEmptyQueries() {
+        NGramIndex index = new NGramIndex();
+        index.add("John", "John Smith", "5551234", "john@example.com");
+        index.add("Ann", "Ann Lee", "5559876", "ann@example.org");
+        assertEquals(Collections.singletonList("John"), index.search("j"));
+        assertEquals(Collections.singletonList("Ann"), index.search(" .ORG "));
+        assertEquals(2, index.search("55").size());
+        assertTrue(index.search("").isEmpty());
+        assertTrue(index.search("   ").isEmpty());
+        assertTrue(index.search("zzz").isEmpty());
+        index.remove("John");
+        index.remove("nobody");
+        assertTrue(index.search("smith").isEmpty());
+    }
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        int n = 1 + random.nextInt(length);
+        for (int i = 0; i < n; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString().trim().isEmpty() ? "a" : word.toString().trim();
+    }
+    private static void assertSearches(Random random, NGramIndex index, Map<String, String[]> documents) {
+        for (int i = 0; i < 300; i++) {
+            String query = random.nextInt(5) == 0 ? "k" + random.nextInt(30000) : word(random, 5);
+            if (random.nextBoolean()) {
+                query = query.toUpperCase(Locale.ROOT);
+            }
+            String q = query.trim().toLowerCase(Locale.ROOT);
+            Set<String> expected = new HashSet<>();
+            for (Map.Entry<String, String[]> document : documents.entrySet()) {
+                for (String field : document.getValue()) {
+                    if (field.toLowerCase(Locale.ROOT).contains(q)) {
+                        expected.add(document.getKey());
+                        break;
+                    }
+                }
+            }
+            List<String> found = index.search(query);
+            assertEquals(expected, new HashSet<>(found), query);
+            assertEquals(expected.size(), found.size(), query);//no key twice
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhoneTrieTest {
+    //completions against sorting the matching numbers by their digits- complete() walks the trie in digit order,
+    //so its results are the numbers in lexicographic order of their digits, a number before the longer ones it starts
+    @Test
+    public void completeMatchesASortedScan() {
+        Random random = new Random(7);
+        PhoneTrie trie = new PhoneTrie();
+        Set<String> phones = new HashSet<>();
+        //short numbers from a few digits, so labels are split often and nodes get more than four children
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder phone = new StringBuilder();
+            int length = 1 + random.nextInt(9);
+            for (int d = 0; d < length; d++) {
+                phone.append((char) ('0' + random.nextInt(random.nextBoolean() ? 10 : 3)));
+            }
+            trie.add(phone.toString());
+            phones.add(phone.toString());
+        }
+        assertCompletions(random, trie, phones);
+        //remove most of them- past half removed the trie is rebuilt
+        for (Iterator<String> it = phones.iterator(); it.hasNext();) {
+            String phone = it.next();
+            if (random.nextInt(4) != 0) {
+                trie.remove(phone);
+                it.remove();
+            }
+        }
+        assertCompletions(random, trie, phones);
+        trie.clear();
+        assertTrue(trie.complete("1", 10).isEmpty());
+    }
+    @Test
+    public void splitsLabelsWherePhonesPart() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.add("5551234567");
+        trie.add("5551239999");
+        trie.add("555");
+        trie.add("5559");
+        assertEquals(Arrays.asList("555", "5551234567", "5551239999", "5559"), trie.complete("5", 10));
+        assertEquals(Arrays.asList("5551234567", "5551239999"), trie.complete("555123", 10));
+        assertEquals(Arrays.asList("5551239999"), trie.complete("5551239", 10));
+        assertTrue(trie.complete("55512345678", 10).isEmpty());
+        assertTrue(trie.complete("556", 10).isEmpty());
+        assertEquals(Arrays.asList("555"), trie.complete("5", 1));
+    }
+    @Test
+    public void promotesCrowdedNodesToBlocks() {
+        PhoneTrie trie = new PhoneTrie();
+        //ten children under "7", added out of order- past four the children move to a block
+        for (int digit : new int[] {9, 3, 0, 7, 1, 5, 8, 2, 6, 4}) {
+            trie.add("7" + digit + "00");
+            trie.add("7" + digit + "11");
+        }
+        List<String> expected = new ArrayList<>();
+        for (int digit = 0; digit < 10; digit++) {
+            expected.add("7" + digit + "00");
+            expected.add("7" + digit + "11");
+        }
+        assertEquals(expected, trie.complete("7", 100));
+        assertEquals(Arrays.asList("7500", "7511"), trie.complete("75", 100));
+        trie.remove("7500");
+        assertEquals(Arrays.asList("7511"), trie.complete("75", 100));
+    }
+    @Test
+    public void ignoresSeparators() {
+        PhoneTrie trie = new PhoneTrie();
+        trie.add("(555) 123-4567");
+        trie.add("5551234567");
+        trie.add("+1 555 000");
+        List<String> found = trie.complete("555 12", 10);
+        assertEquals(new HashSet<>(Arrays.asList("(555) 123-4567", "5551234567")), new HashSet<>(found));
+        assertEquals(2, found.size());
+        assertEquals(Arrays.asList("+1 555 000"), trie.complete("+1-5", 10));
+        assertTrue(trie.complete("-() ", 10).isEmpty());
+        assertTrue(trie.complete("", 10).isEmpty());
+        //removing one spelling keeps the other with the same digits
+        trie.remove("(555) 123-4567");
+        assertEquals(Arrays.asList("5551234567"), trie.complete("555", 10));
+        trie.remove("nothing");
+        trie.remove("999");
+        assertEquals(Arrays.asList("5551234567"), trie.complete("555", 10));
+    }
+    private static void assertCompletions(Random random, PhoneTrie trie, Set<String> phones) {
+        List<String> sorted = new ArrayList<>(phones);
+        Collections.sort(sorted);//digits only, so string order is the trie's order
+        for (int i = 0; i < 500; i++) {
+            String prefix = sorted.isEmpty() ? "1" : sorted.get(random.nextInt(sorted.size()));
+            prefix = prefix.substring(0, 1 + random.nextInt(prefix.length()));
+            int limit = random.nextBoolean() ? 10 : Integer.MAX_VALUE;
+            List<String> expected = new ArrayList<>();
+            for (String phone : sorted) {
+                if (expected.size() < limit && phone.startsWith(prefix)) {
+                    expected.add(phone);
+                }
+            }
+            assertEquals(expected, trie.complete(prefix, limit), prefix);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowOrderTest {
+    //RowOrder against a plain list of the same ints, through enough inserts and removes to split, fill and empty blocks
+    @Test
+    public void insertsAndRemovesMatchAList() {
+        Random random = new Random(1);
+        RowOrder order = new RowOrder();
+        List<Integer> expected = new ArrayList<>();
+        for (int step = 0; step < 200000; step++) {
+            int op = random.nextInt(10);
+            if (op < 6 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                order.insert(index, step);
+                expected.add(index, step);
+            } else if (op < 9) {
+                int index = random.nextInt(expected.size());
+                assertEquals((int) expected.remove(index), order.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                order.set(index, -step);
+                expected.set(index, -step);
+            }
+            if (step % 20000 == 0) {
+                assertSame(expected, order);
+            }
+        }
+        assertSame(expected, order);
+        //remove everything, from the front
+        while (!expected.isEmpty()) {
+            assertEquals((int) expected.remove(0), order.remove(0));
+        }
+        assertEquals(0, order.size());
+    }
+    @Test
+    public void startsFromSortedRows() {
+        int[] rows = new int[5000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i * 2;
+        }
+        RowOrder order = new RowOrder(rows, 4000);//only the first count rows are taken
+        assertEquals(4000, order.size());
+        assertArrayEquals(Arrays.copyOf(rows, 4000), order.toArray());
+        order.insert(0, -1);
+        order.insert(4001, 99999);
+        assertEquals(-1, order.get(0));
+        assertEquals(99999, order.get(4001));
+        assertEquals(0, order.get(1));
+    }
+    @Test
+    public void lowerBoundFindsTheFirstRowNotBefore() {
+        //rows are their own sort keys here
+        RowOrder order = new RowOrder();
+        for (int i = 0; i < 10000; i++) {
+            order.insert(i, i * 3);
+        }
+        for (int target = -2; target < 30005; target += 7) {
+            int t = target;
+            int expected = Math.max(0, Math.min(10000, (target + 2) / 3));
+            assertEquals(expected, order.lowerBound(row -> Integer.compare(row, t)), "target " + target);
+        }
+    }
+    @Test
+    public void copiesFromAnIndex() {
+        RowOrder order = new RowOrder();
+        for (int i = 0; i < 3000; i++) {
+            order.insert(i, i);
+        }
+        int[] into = new int[500];
+        assertEquals(500, order.copy(1000, into));
+        assertEquals(1000, into[0]);
+        assertEquals(1499, into[499]);
+        assertEquals(100, order.copy(2900, into));
+        assertEquals(2999, into[99]);
+    }
+    @Test
+    public void rejectsIndexesOutOfRange() {
+        RowOrder order = new RowOrder();
+        order.insert(0, 5);
+        assertThrows(IndexOutOfBoundsException.class, () -> order.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> order.get(-1));
+    }
+    private static void assertSame(List<Integer> expected, RowOrder order) {
+        assertEquals(expected.size(), order.size());
+        int[] rows = order.toArray();
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals((int) expected.get(i), rows[i], "index " + i);
+            assertEquals(rows[i], order.get(i));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedContactsTest {
+    private static TreeMap<String, Contact> randomContacts(Random random, int count) {
+        TreeMap<String, Contact> contacts = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = "k" + random.nextInt(count * 4);
+            contacts.put(name, new Contact(name, Integer.toString(i), "e" + i + "@example.com"));
+        }
+        return contacts;
+    }
+    @Test
+    public void behavesLikeATreeMap() {
+        Random random = new Random(2);
+        TreeMap<String, Contact> expected = randomContacts(random, 500);
+        SortedMap<String, Contact> map = new SortedContacts(new ArrayList<>(expected.values()));
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(expected.firstKey(), map.firstKey());
+        assertEquals(expected.lastKey(), map.lastKey());
+        for (int i = 0; i < 2000; i++) {
+            String from = "k" + random.nextInt(2000);
+            String to = "k" + random.nextInt(2000);
+            if (from.compareTo(to) > 0) {
+                String swap = from;
+                from = to;
+                to = swap;
+            }
+            assertEquals(expected.get(from), map.get(from));
+            assertEquals(expected.containsKey(to), map.containsKey(to));
+            assertEquals(expected.subMap(from, to), map.subMap(from, to));
+            assertEquals(new ArrayList<>(expected.subMap(from, to).keySet()), new ArrayList<>(map.subMap(from, to).keySet()));
+            assertEquals(expected.headMap(to), map.headMap(to));
+            assertEquals(expected.tailMap(from), map.tailMap(from));
+            assertEquals(expected.tailMap(from).headMap(to), map.tailMap(from).headMap(to));
+        }
+    }
+    @Test
+    public void subMapsKeepTheirBounds() {
+        SortedMap<String, Contact> map = new SortedContacts(Arrays.asList(
+                new Contact("a", "1", "a@x.io"), new Contact("c", "2", "c@x.io"), new Contact("e", "3", "e@x.io")));
+        SortedMap<String, Contact> sub = map.subMap("b", "d");
+        assertEquals(Collections.singleton("c"), sub.keySet());
+        assertNull(sub.get("a"));
+        assertThrows(IllegalArgumentException.class, () -> sub.headMap("a"));
+        assertThrows(IllegalArgumentException.class, () -> sub.tailMap("e"));
+        assertThrows(IllegalArgumentException.class, () -> map.subMap("d", "b"));
+        assertTrue(map.subMap("f", "g").isEmpty());
+        assertThrows(NoSuchElementException.class, () -> map.subMap("f", "g").firstKey());
+    }
+    @Test
+    public void isReadOnly() {
+        SortedMap<String, Contact> map = new SortedContacts(Collections.singletonList(new Contact("a", "1", "a@x.io")));
+        assertThrows(UnsupportedOperationException.class, () -> map.put("b", new Contact("b", "2", "b@x.io")));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("a"));
+    }
+    @Test
+    public void rejectsUnsortedOrRepeatedNames() {
+        Contact b = new Contact("b", "1", "b@x.io");
+        Contact a = new Contact("a", "2", "a@x.io");
+        assertThrows(IllegalArgumentException.class, () -> new SortedContacts(Arrays.asList(b, a)));
+        assertThrows(IllegalArgumentException.class, () -> new SortedContacts(Arrays.asList(a, a)));
+    }
+    @Test
+    public void buildsMapsWithTheGivenOrder() {
+        TreeMap<String, Contact> expected = randomContacts(new Random(3), 1000);
+        assertEquals(expected, SortedContacts.treeMap(new ArrayList<>(expected.values())));
+        List<Contact> folded = Arrays.asList(new Contact("anna", "1", "a@x.io"), new Contact("Bob", "2", "b@x.io"), new Contact("carl", "3", "c@x.io"));
+        ConcurrentSkipListMap<String, Contact> map = SortedContacts.skipListMap(folded, ContactRows.FOLDED_ORDER);
+        assertEquals(Arrays.asList("anna", "Bob", "carl"), new ArrayList<>(map.keySet()));
+        assertSame(ContactRows.FOLDED_ORDER, map.comparator());
+    }
+}